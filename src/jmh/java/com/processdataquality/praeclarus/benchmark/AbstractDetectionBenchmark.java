@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.benchmark;
+
+import com.processdataquality.praeclarus.pattern.AbstractDistortedLabel;
+import com.processdataquality.praeclarus.plugin.Options;
+import org.openjdk.jmh.annotations.*;
+import tech.tablesaw.api.Table;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times a full detection over a synthetic column of labels, across numbers of rows,
+ * numbers of distinct labels and worker threads. Throughput is reported in detections
+ * per minute; add '-prof gc' to the JMH arguments for the allocation rate. The default
+ * parameters cover the whole range and take many hours with no index, so narrow them
+ * with '-p', e.g. '-p rows=1000000 -p distinctLabels=10000'.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public abstract class AbstractDetectionBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"100", "10000", "200000"})
+    public int distinctLabels;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private Table table;
+    private AbstractDistortedLabel pattern;
+
+
+    /**
+     * @return the pattern to benchmark, with its algorithm-specific options set
+     */
+    protected abstract AbstractDistortedLabel createPattern();
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        table = SyntheticLabels.table(rows, distinctLabels, 42);
+        pattern = createPattern();
+        Options options = pattern.getOptions();
+        options.add("Column Name", SyntheticLabels.COLUMN_NAME);
+        options.add("Parallelism", parallelism);
+        pattern.setOptions(options);
+    }
+
+
+    @Benchmark
+    public Table detect() {
+        return pattern.detect(table);
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.benchmark;
+
+import com.processdataquality.praeclarus.pattern.AbstractDistortedLabel;
+import com.processdataquality.praeclarus.pattern.DistortedLabelLevenshtein;
+import com.processdataquality.praeclarus.plugin.Options;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Detection with the Levenshtein plugin, for a range of thresholds and label indexes
+ */
+public class LevenshteinBenchmark extends AbstractDetectionBenchmark {
+
+    @Param({"1", "2", "3"})
+    public int threshold;
+
+    @Param({"BK-tree", "Symmetric Delete", "Q-gram"})
+    public String index;
+
+
+    @Override
+    protected AbstractDistortedLabel createPattern() {
+        DistortedLabelLevenshtein pattern = new DistortedLabelLevenshtein();
+        Options options = pattern.getOptions();
+        options.add("Threshold", threshold);
+        options.add("Index", index);
+        return pattern;
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.benchmark;
+
+import com.processdataquality.praeclarus.pattern.SimilarityKernel;
+import com.processdataquality.praeclarus.pattern.SimilarityKernels;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the similarity backends on one label against many, the inner loop of a
+ * detection without an index. Before timing, checks that every backend
+ * returns exactly the same distances and scores, and fails the trial if not.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimilarityKernelBenchmark {
+
+    private static final int LABEL_COUNT = 10000;
+
+    @Param({"scalar", "bit-parallel"})
+    public String kernel;
+
+    @Param({"2"})
+    public int threshold;
+
+    private SimilarityKernel similarity;
+    private char[][] labels;
+    private int[] distances;
+    private int query;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] values = SyntheticLabels.labels(LABEL_COUNT, 7);
+        labels = new char[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            labels[i] = values[i].toCharArray();
+        }
+        distances = new int[labels.length];
+        similarity = SimilarityKernels.get(kernel);
+        checkBackendsAgree();
+    }
+
+
+    /**
+     * One label against all others by edit distance, as a batch
+     */
+    @Benchmark
+    public int[] distances() {
+        query = (query + 1) % labels.length;
+        similarity.distances(labels[query], labels, 0, labels.length, threshold, distances);
+        return distances;
+    }
+
+
+    /**
+     * One label against all others by Jaro-Winkler similarity
+     */
+    @Benchmark
+    public void jaroWinkler(Blackhole blackhole) {
+        query = (query + 1) % labels.length;
+        char[] s1 = labels[query];
+        for (char[] s2 : labels) {
+            blackhole.consume(similarity.jaroWinkler(s1, s2));
+        }
+    }
+
+
+    // compares a sample of queries against all labels with every backend
+    private void checkBackendsAgree() {
+        List<SimilarityKernel> kernels = SimilarityKernels.getAll();
+        SimilarityKernel reference = SimilarityKernels.get("scalar");
+        int[] expected = new int[labels.length];
+        int[] actual = new int[labels.length];
+        for (int q = 0; q < labels.length; q += 97) {
+            for (int t : new int[] { threshold, Integer.MAX_VALUE }) {
+                reference.distances(labels[q], labels, 0, labels.length, t, expected);
+                for (SimilarityKernel other : kernels) {
+                    other.distances(labels[q], labels, 0, labels.length, t, actual);
+                    for (int j = 0; j < labels.length; j++) {
+                        if (actual[j] != expected[j] ||
+                                other.distance(labels[q], labels[j], t) != expected[j]) {
+                            throw new IllegalStateException(mismatch(other, q, j));
+                        }
+                    }
+                }
+            }
+            for (int j = 0; j < labels.length; j++) {
+                double score = reference.jaroWinkler(labels[q], labels[j]);
+                for (SimilarityKernel other : kernels) {
+                    if (Double.compare(other.jaroWinkler(labels[q], labels[j]), score) != 0) {
+                        throw new IllegalStateException(mismatch(other, q, j));
+                    }
+                }
+            }
+        }
+    }
+
+
+    private String mismatch(SimilarityKernel kernel, int i, int j) {
+        return "Similarity kernel '" + kernel.getName() + "' disagrees with the scalar " +
+                "kernel comparing '" + new String(labels[i]) + "' and '" +
+                new String(labels[j]) + "'";
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.benchmark;
+
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Builds reproducible tables of activity labels for the benchmarks. A set of distinct
+ * base labels is made from random words, about one in ten of which are then distorted
+ * by a single character edit. Rows draw labels with a skewed frequency, so that a few
+ * labels are common and most are rare, as in real event logs.
+ */
+public final class SyntheticLabels {
+
+    public static final String COLUMN_NAME = "Activity";
+
+    private static final String[] WORDS = {
+            "register", "check", "approve", "reject", "send", "receive", "invoice",
+            "payment", "order", "ticket", "review", "assess", "notify", "customer",
+            "request", "close", "open", "escalate", "archive", "update", "create",
+            "cancel", "confirm", "schedule", "deliver", "return", "refund", "verify"
+    };
+
+    private static final char[] ALPHABET = "abcdefghijklmnopqrstuvwxyz ".toCharArray();
+
+    private SyntheticLabels() { }
+
+
+    /**
+     * @param count the number of distinct labels wanted
+     * @param seed the seed for the random choices
+     * @return count distinct labels
+     */
+    public static String[] labels(int count, long seed) {
+        Random random = new Random(seed);
+        String[] labels = new String[count];
+        Set<String> seen = new HashSet<>();
+        int i = 0;
+        while (i < count) {
+            String label = random.nextInt(10) == 0 && i > 0 ?
+                    distort(labels[random.nextInt(i)], random) : phrase(random);
+            if (seen.add(label)) {
+                labels[i++] = label;
+            }
+        }
+        return labels;
+    }
+
+
+    /**
+     * @param rows the number of rows
+     * @param distinct the number of distinct labels, no more than rows
+     * @param seed the seed for the random choices
+     * @return a table with a single column of labels
+     */
+    public static Table table(int rows, int distinct, long seed) {
+        String[] labels = labels(Math.min(rows, distinct), seed);
+        Random random = new Random(seed);
+        StringColumn column = StringColumn.create(COLUMN_NAME);
+        for (int i = 0; i < labels.length; i++) {          // each label at least once
+            column.append(labels[i]);
+        }
+        for (int i = labels.length; i < rows; i++) {
+            double skewed = Math.pow(random.nextDouble(), 3);
+            column.append(labels[(int) (skewed * labels.length)]);
+        }
+        return Table.create("Labels").addColumns(column);
+    }
+
+
+    // two to four words, with a number for variety
+    private static String phrase(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int words = 2 + random.nextInt(3);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) sb.append(' ');
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.append(' ').append(random.nextInt(1000)).toString();
+    }
+
+
+    // the label with one character inserted, deleted or substituted
+    private static String distort(String label, Random random) {
+        StringBuilder sb = new StringBuilder(label);
+        int pos = random.nextInt(label.length());
+        char c = ALPHABET[random.nextInt(ALPHABET.length)];
+        switch (random.nextInt(3)) {
+            case 0 : sb.insert(pos, c); break;
+            case 1 : sb.deleteCharAt(pos); break;
+            default: sb.setCharAt(pos, c);
+        }
+        return sb.toString();
+    }
+
+}
@@ -1,9 +1,13 @@
 package com.processdataquality.praeclarus.action;
 
 import com.processdataquality.praeclarus.annotations.Plugin;
+import com.processdataquality.praeclarus.pattern.CancellationToken;
+import com.processdataquality.praeclarus.pattern.DetectionEstimate;
+import com.processdataquality.praeclarus.pattern.DetectionListener;
 import com.processdataquality.praeclarus.pattern.ImperfectionPattern;
 import com.processdataquality.praeclarus.plugin.Options;
 import com.processdataquality.praeclarus.workspace.node.Node;
+import com.processdataquality.praeclarus.workspace.node.PatternNode;
 import tech.tablesaw.api.Table;
 
 import java.util.HashMap;
@@ -27,18 +31,75 @@ public class FastDetect implements Action{
 
     private Set<Node> _detectNodes = new HashSet<>();
 
+    private final HashMap<Node, DetectionEstimate> _estimates = new HashMap<>();
+
+    public FastDetect() {
+        options.addDefault("Estimate", false);
+        options.addDefault("Sample Size", 1000);
+        options.addDefault("Exact After Estimate", false);
+    }
+
     @Override
     public HashMap<Node, Table> run(List<Table> inputSet) {
+        return run(inputSet, new CancellationToken());
+    }
+
+    /**
+     * Runs the detections, stopping early once the token is cancelled
+     * @param inputSet the table to check
+     * @param cancellation the token of the run this action is part of
+     * @return each pattern node's detection results
+     */
+    public HashMap<Node, Table> run(List<Table> inputSet, CancellationToken cancellation) {
         HashMap<Node, Table> fastDetect = new HashMap<>();
+        _estimates.clear();
+        if (options.get("Estimate").asBoolean()) {
+            estimate(inputSet.get(0), cancellation);
+            if (!options.get("Exact After Estimate").asBoolean()) {
+                return fastDetect;
+            }
+        }
         for (Node node : _detectNodes) {
+            if (cancellation.isStopRequested()) break;
             if (node.getPlugin() instanceof ImperfectionPattern) {
-                Table nodeDetect = ((ImperfectionPattern) node.getPlugin()).detect(inputSet.get(0));
+                DetectionListener listener = node instanceof PatternNode ?
+                        ((PatternNode) node).getDetectionForwarder() : DetectionListener.NONE;
+                Table nodeDetect = ((ImperfectionPattern) node.getPlugin()).detect(
+                        inputSet.get(0), listener, cancellation);
                 fastDetect.put(node,nodeDetect);
             }
         }
         return fastDetect;
     }
 
+    /**
+     * Estimates the extent of each pattern that supports it from a sample of rows,
+     * which gives a quick overview of a large log. The estimates are kept apart from
+     * the detection results, since they aren't results that can be repaired.
+     * @param input the table to check
+     * @param cancellation the token of the run this action is part of
+     */
+    private void estimate(Table input, CancellationToken cancellation) {
+        int sampleSize = options.get("Sample Size").asInt();
+        for (Node node : _detectNodes) {
+            if (cancellation.isStopRequested()) break;
+            if (node.getPlugin() instanceof ImperfectionPattern) {
+                ImperfectionPattern pattern = (ImperfectionPattern) node.getPlugin();
+                DetectionEstimate estimate = pattern.canEstimate() ?
+                        pattern.estimate(input, sampleSize) : null;
+                if (estimate != null) {
+                    _estimates.put(node, estimate);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the estimates made by the last run, if the 'Estimate' option was set,
+     * for the patterns that can make them
+     */
+    public HashMap<Node, DetectionEstimate> getEstimates() { return _estimates; }
+
     @Override
     public Options getOptions() {
         return options;
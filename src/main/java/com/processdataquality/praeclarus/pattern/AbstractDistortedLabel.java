@@ -18,23 +18,46 @@ package com.processdataquality.praeclarus.pattern;
 
 import com.processdataquality.praeclarus.plugin.Option;
 import com.processdataquality.praeclarus.plugin.Options;
-import tech.tablesaw.api.IntColumn;
-import tech.tablesaw.api.Row;
 import tech.tablesaw.api.StringColumn;
 import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 /**
- * A base class for distorted label plugins
+ * A base class for distorted label plugins. The state of each detection is held in a
+ * {@link DetectionRun} that is passed to the subclass's hooks, so that one plugin
+ * may run several detections at once.
  * @author Michael Adams
  * @date 11/5/21
  */
 public abstract class AbstractDistortedLabel implements ImperfectionPattern {
 
-    // The table that will contain the results of the pattern detection
-    private final Table result = createResultTable();
+    // Values of the 'Index' option handled by this class
+    protected static final String NO_INDEX = "None";
+    protected static final String QGRAM_INDEX = "Q-gram";
+    protected static final String MINHASH_INDEX = "MinHash LSH";
+
+    // The distinct labels of the columns and cases checked by the last detection,
+    // which a detection in appended rows adds to, or null if there is nothing to add to
+    private volatile LabelVocabulary vocabulary;
+
+    // The counts found by the most recent detection, the work it did, and whether it
+    // was cut short
+    private volatile DetectionMetrics metrics = new DetectionMetrics(0, 0, -1, -1);
+    private volatile DetectionStatistics statistics = new DetectionStatistics();
+    private volatile boolean partial;
+
+    // The detection whose block of comparisons is running on this thread, which
+    // results added through the string-based detect hook belong to
+    private final ThreadLocal<DetectionRun> currentRun = new ThreadLocal<>();
 
     // The set of parameters used by this plugin
     private Options options;
@@ -47,53 +70,673 @@ public abstract class AbstractDistortedLabel implements ImperfectionPattern {
 
 
     /**
-     * Basic implementation of the interface method
+     * Detects distortion between two distinct labels identified by their codes. By
+     * default, compares the labels as strings with
+     * {@link #detect(StringColumn, String, String)}. Subclasses comparing label
+     * characters may override this to use {@link DetectionRun#getChars(int)}, and
+     * should then add what they find with {@link DetectionRun#addResult}.
+     * @param run the detection
+     * @param code1 the code of the first label
+     * @param code2 the code of the second label
+     */
+    protected void detect(DetectionRun run, int code1, int code2) {
+        LabelDictionary labels = run.getLabels();
+        detect(run.getColumn(), labels.getLabel(code1), labels.getLabel(code2));
+    }
+
+
+    /**
+     * Basic implementation of the interface method. Where several columns are named in
+     * the options, all are read in one pass and each is checked in turn.
      * @param table a table containing values to check for the pattern
      * @return a table where each row contains values detected using the pattern
      */
     @Override
     public Table detect(Table table) {
-        StringColumn column = getSelectedColumn(table);
-        List<String> tested = new ArrayList<>();    // cache of strings already tested
-        List<String> compared = new ArrayList<>();  // cache of strings already compared to
-        for (int i = 0; i < column.size(); i++) {
-            String testValue = column.getString(i);
-            if (testValue == null || tested.contains(testValue)) continue;
-            tested.add(testValue);
-            compared.clear();
-            for (int j = i+1; j < column.size(); j++) {
-                String compValue = column.getString(j);
-                if (compValue == null || compared.contains(compValue)) continue;
-                compared.add(compValue);
-                detect(column, testValue, compValue);    // call method in subclass
+        return detect(table, DetectionListener.NONE);
+    }
+
+
+    /**
+     * Detects the pattern, passing the results to a listener as they are found. Rows
+     * are passed on as each block of comparisons completes, except where the results
+     * are rearranged once all are found (when clustering, normalizing or detecting in
+     * appended rows), in which case each column's rows are passed on when it is done.
+     * @param table a table containing values to check for the pattern
+     * @param listener receives batches of results, and the progress of the detection
+     * @return a table where each row contains values detected using the pattern
+     */
+    @Override
+    public Table detect(Table table, DetectionListener listener) {
+        return detect(table, listener, new CancellationToken());
+    }
+
+
+    /**
+     * Detects the pattern, passing the results to a listener as they are found, and
+     * stopping early if the token is cancelled or the 'Time Budget (s)' option runs out.
+     * A detection cut short returns the results found so far, in a table named
+     * 'Result (partial)', and {@link #isPartial()} returns true.
+     * @param table a table containing values to check for the pattern
+     * @param listener receives batches of results, and the progress of the detection
+     * @param token says when to stop the detection early
+     * @return a table where each row contains values detected using the pattern
+     */
+    @Override
+    public Table detect(Table table, DetectionListener listener, CancellationToken token) {
+        List<StringColumn> columns = getSelectedColumns(table);
+        Column<?> caseColumn = getCaseColumn(table);
+        LabelVocabulary vocabulary = new LabelVocabulary(columns, createNormalizer(),
+                caseColumn != null);
+        vocabulary.add(columns, caseColumn);             // one pass to get distinct values
+        return detect(vocabulary, columns, new int[columns.size()], listener, token);
+    }
+
+
+    /**
+     * Detects the pattern in rows appended to the table checked by the previous
+     * detection, comparing only the labels that first appear in the new rows. The
+     * distinct labels and results of the previous detection are kept, so the options
+     * should not be changed between the two.
+     * @param appended a table holding only the newly appended rows
+     * @return a table of the results for the previous and appended rows together, the
+     * same as a detection over the combined table would give, with updated counts
+     */
+    public Table detectAppended(Table appended) {
+        return detectAppended(appended, DetectionListener.NONE);
+    }
+
+
+    /**
+     * Detects the pattern in rows appended to the table checked by the previous
+     * detection, passing the results to a listener
+     * @param appended a table holding only the newly appended rows
+     * @param listener receives batches of results, and the progress of the detection
+     * @return a table of the results for the previous and appended rows together
+     */
+    public Table detectAppended(Table appended, DetectionListener listener) {
+        return detectAppended(appended, listener, new CancellationToken());
+    }
+
+
+    /**
+     * Detects the pattern in rows appended to the table checked by the previous
+     * detection, stopping early if asked to. If the previous detection was cut short,
+     * there is nothing to add to, so the appended rows are checked on their own.
+     * Since this adds to the labels kept by the previous detection, detections in
+     * appended rows should not run at the same time as each other.
+     * @param appended a table holding only the newly appended rows
+     * @param listener receives batches of results, and the progress of the detection
+     * @param token says when to stop the detection early
+     * @return a table of the results for the previous and appended rows together
+     */
+    public Table detectAppended(Table appended, DetectionListener listener,
+                                CancellationToken token) {
+        LabelVocabulary vocabulary = this.vocabulary;
+        List<StringColumn> columns = getSelectedColumns(appended);
+        int[] firstNew = new int[columns.size()];
+        for (int c = 0; c < columns.size(); c++) {
+            ColumnLabels state = vocabulary != null ? vocabulary.get(columns.get(c).name()) : null;
+            if (state == null) {
+                return detect(appended, listener, token);   // nothing to add to yet
+            }
+            firstNew[c] = state.forms.size();
+        }
+        vocabulary.add(columns, getCaseColumn(appended));
+        return detect(vocabulary, columns, firstNew, listener, token);
+    }
+
+
+    /**
+     * The distorted label plugins can estimate how many rows hold a label similar to
+     * another label
+     * @return true
+     */
+    @Override
+    public boolean canEstimate() { return true; }
+
+
+    /**
+     * Estimates how many rows hold a label that is similar to some other label, without
+     * comparing every pair of labels. While the distinct labels are gathered, a uniform
+     * sample of rows is taken. The labels are then indexed as for a detection, and
+     * only the sample's distinct labels are compared, each with the candidates the
+     * index proposes (or with every other label, if there is no index). The
+     * proportion of sampled rows found affected is extrapolated to the whole column.
+     * Where several columns are selected, their estimates are summed.
+     * @param table a table containing values to check for the pattern
+     * @param sampleSize the number of rows to sample from each column
+     * @return the estimate, with a 95% confidence interval
+     */
+    @Override
+    public DetectionEstimate estimate(Table table, int sampleSize) {
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("Sample size must be at least 1");
+        }
+        LabelNormalizer normalizer = createNormalizer();
+        Random random = new Random();
+        DetectionEstimate total = null;
+        for (StringColumn column : getSelectedColumns(table)) {
+            ColumnLabels state = new ColumnLabels(!normalizer.isIdentity());
+            int[] sample = new int[Math.min(sampleSize, column.size())];
+            int rowCount = 0;
+            for (int i = 0; i < column.size(); i++) {       // reservoir sample of rows
+                int code = state.add(column.get(i), normalizer);
+                if (code < 0) continue;
+                if (rowCount < sample.length) {
+                    sample[rowCount] = code;
+                }
+                else {
+                    int slot = random.nextInt(rowCount + 1);
+                    if (slot < sample.length) sample[slot] = code;
+                }
+                rowCount++;
+            }
+            int sampled = Math.min(rowCount, sample.length);
+            int[] memberCounts = state.getMemberCounts();
+            Map<Integer, Boolean> affected = new HashMap<>();
+            int sampleAffected = 0;
+            DetectionRun run = new DetectionRun(DetectionListener.NONE,
+                    new CancellationToken(), null);
+            run.startColumn(column, state, 0);
+            prepare(run);
+            CandidateIndex candidateIndex = run.getIndex(CandidateIndex.class);
+            CandidateIndex.Searcher searcher = candidateIndex != null ?
+                    candidateIndex.newSearcher() : null;
+            for (int i = 0; i < sampled; i++) {
+                int form = state.getForm(sample[i]);
+                if (affected.computeIfAbsent(form, f -> memberCounts[f] > 1 ||
+                        hasSimilarLabel(run, f, searcher != null ?
+                                searcher.candidates(f, 0) : findCandidates(run, f)))) {
+                    sampleAffected++;
+                }
+            }
+            DetectionEstimate estimate = DetectionEstimate.fromSample(rowCount, sampled,
+                    sampleAffected);
+            total = total == null ? estimate : total.add(estimate);
+        }
+        return total;
+    }
+
+
+    // true if the subclass finds the label with this code similar to any of the
+    // candidates, or to any other label if the candidates are null
+    private boolean hasSimilarLabel(DetectionRun run, int code, int[] candidates) {
+        int count = candidates != null ? candidates.length : run.getLabels().size();
+        List<String> found = new ArrayList<>(2);
+        startBlock(run, found);                    // catches what the subclass finds
+        try {
+            for (int k = 0; k < count; k++) {
+                int other = candidates != null ? candidates[k] : k;
+                if (other < code) {
+                    detect(run, other, code);
+                }
+                else if (other > code) {
+                    detect(run, code, other);
+                }
+                if (!found.isEmpty()) return true;
+            }
+            return false;
+        }
+        finally {
+            endBlock(run);
+        }
+    }
+
+
+    /**
+     * Gets the labels that may be similar to a label, from an index built by
+     * {@link #prepare}, so that an estimate need not compare the label with every
+     * other. Candidates from a q-gram or MinHash index are found without calling this.
+     * @param run the detection, holding the distinct labels and any index
+     * @param code the code of the label
+     * @return the codes of the candidates, which may include the label itself, or
+     * null if every other label is a candidate, as it is by default
+     */
+    protected int[] findCandidates(DetectionRun run, int code) { return null; }
+
+
+    // the column of case identifiers named by the 'Case Column' option, or null if the
+    // table doesn't have it
+    private Column<?> getCaseColumn(Table table) {
+        String colName = getStringOption("Case Column");
+        if (colName == null || !table.columnNames().contains(colName)) {
+            return null;
+        }
+        return table.column(colName);
+    }
+
+
+    // counts the events whose label in a column is one of the similar pairs, and
+    // marks the cases holding them
+    private long countAffected(ColumnLabels state, long[] hits, LabelDictionary cases,
+                               BitSet affectedCases) {
+        boolean[] affected = new boolean[state.labels.size()];
+        for (long pair : hits) {
+            affected[(int) (pair >>> 32)] = true;
+            affected[(int) pair] = true;
+        }
+        long affectedEvents = 0;
+        for (int code = 0; code < affected.length; code++) {
+            if (affected[code]) affectedEvents += state.labels.getCount(code);
+        }
+        if (cases != null) {
+            state.caseLabels.forEach(caseLabel -> {
+                if (affected[(int) caseLabel]) {
+                    affectedCases.set((int) (caseLabel >>> 32));
+                }
+            });
+        }
+        return affectedEvents;
+    }
+
+
+    // checks each column in turn, and combines their results and statistics
+    private Table detect(LabelVocabulary vocabulary, List<StringColumn> columns,
+                         int[] firstNew, DetectionListener listener, CancellationToken token) {
+        Table combined = DetectionRun.createResultTable();
+        DetectionStatistics totals = new DetectionStatistics();
+        LabelDictionary cases = vocabulary.getCases();
+        BitSet affectedCases = new BitSet();
+        long affectedEvents = 0;
+        long totalEvents = 0;
+        DetectionRun run;
+
+        // a failure to write the cache is added to any failure of the detection
+        try (SimilarityCache cache = SimilarityCache.open(getStringOption("Cache File"),
+                getIntOption("Cache Size", 1000000))) {
+            run = new DetectionRun(listener,
+                    token.withBudget(getIntOption("Time Budget (s)", 0) * 1000L), cache);
+            for (int c = 0; c < columns.size() && !run.isStopping(); c++) {
+                StringColumn column = columns.get(c);
+                ColumnLabels state = vocabulary.get(column.name());
+                run.setProgressRange((double) c / columns.size(), 1.0 / columns.size());
+                long[] hits = detect(run, column, state, firstNew[c]);
+                combined.append(run.getResult());
+                affectedEvents += countAffected(state, hits, cases, affectedCases);
+                totalEvents += state.getRowCount();
+                for (Map.Entry<String, Long> entry : run.getStatistics().getAll().entrySet()) {
+                    totals.add(entry.getKey(), entry.getValue());
+                }
+            }
+            if (cache != null) {
+                cache.recordStatistics(totals);
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Unable to write the similarity cache file: "
+                    + e.getMessage(), e);
+        }
+        listener.progressChanged(1.0);
+        DetectionMetrics found = new DetectionMetrics(affectedEvents, totalEvents,
+                cases != null ? affectedCases.cardinality() : -1,
+                cases != null ? cases.size() : -1);
+        totals.set("Affected events", found.getAffectedEvents());
+        if (found.hasCases()) {
+            totals.set("Affected cases", found.getAffectedCases());
+        }
+        if (run.isPartial()) {
+            combined.setName("Result (partial)");
+            totals.set("Partial", 1);
+        }
+        totals.set("Results", combined.rowCount());
+        this.vocabulary = run.isPartial() ? null : vocabulary;     // can't be added to later
+        metrics = found;
+        statistics = totals;
+        partial = run.isPartial();
+        return combined;
+    }
+
+
+    // compares every pair of distinct (normalized) labels of a column where at least
+    // one has a code of firstNew or more, and merges the results with those previously
+    // found. The run is left holding the column's results, and the code pairs of its
+    // similar labels are returned.
+    private long[] detect(DetectionRun run, StringColumn column, ColumnLabels state,
+                          int firstNew) {
+        run.startColumn(column, state, firstNew);
+        DetectionStatistics statistics = run.getStatistics();
+        if (firstNew > 0) {
+            statistics.set("New labels", state.forms.size() - firstNew);
+        }
+        statistics.set("Distinct labels", state.labels.size());
+        if (state.isNormalizing()) {
+            statistics.set("Normalized labels", state.forms.size());
+        }
+        prepare(run);
+        int parallelism = isParallelisable() ? getParallelism() : 1;
+        boolean streaming = firstNew == 0 && !state.isNormalizing() && !isClustering();
+        comparePairs(run, parallelism, streaming);
+        CandidateIndex candidateIndex = run.getIndex(CandidateIndex.class);
+        if (candidateIndex != null) {
+            CandidateIndexes.reportStatistics(candidateIndex, run);
+        }
+        finish(run);
+        run.endComparisons();
+        long[] hits = mergeHits(run, state.hits, firstNew > 0);
+        state.hits = hits;
+        if (state.isNormalizing()) {                  // back to the original labels
+            run.setLabels(state.labels);
+            hits = expandHits(run, state, hits);
+            rebuildResult(run, hits);
+        }
+        if (isClustering()) {
+            clusterHits(run, hits);
+        }
+        if (!streaming && run.getResult().rowCount() > 0) {
+            run.getListener().resultsFound(run.getResult());
+        }
+        return hits;
+    }
+
+
+    // replaces the result rows of similar pairs with one row for each label that is
+    // similar to another, mapping it to the most frequent label of its cluster
+    private void clusterHits(DetectionRun run, long[] hits) {
+        LabelDictionary labels = run.getLabels();
+        int n = labels.size();
+        UnionFind clusters = new UnionFind(n);
+        for (long pair : hits) {
+            clusters.union((int) (pair >>> 32), (int) pair);
+        }
+
+        // the canonical label of each cluster: the most frequent, then the first seen
+        int[] canonical = new int[n];
+        Arrays.fill(canonical, -1);
+        for (int i = 0; i < n; i++) {
+            int root = clusters.find(i);
+            int best = canonical[root];
+            if (best < 0 || labels.getCount(i) > labels.getCount(best)) {
+                canonical[root] = i;
+            }
+        }
+
+        run.setResult(DetectionRun.createResultTable());
+        long clusterCount = 0;
+        for (int i = 0; i < n; i++) {
+            int root = clusters.find(i);
+            if (clusters.size(root) == 1) continue;
+            int target = canonical[root];
+            if (target == i) {
+                clusterCount++;
+            }
+            else {
+                run.appendResult(labels.getLabel(target), labels.getLabel(i));
+            }
+        }
+        run.getStatistics().set("Similar pairs", hits.length);
+        run.getStatistics().set("Clusters", clusterCount);
+    }
+
+
+    // gets the code pairs of the results found, added to those of an earlier detection
+    // if there was one, in which case the result table is rebuilt from both in
+    // first-appearance order
+    private long[] mergeHits(DetectionRun run, long[] previous, boolean incremental) {
+        Table result = run.getResult();
+        LabelDictionary labels = run.getLabels();
+        int found = result.rowCount();
+        long[] pairs = Arrays.copyOf(previous, incremental ? previous.length + found : found);
+        int offset = pairs.length - found;
+        for (int i = 0; i < found; i++) {
+            long code1 = labels.getCode(result.stringColumn(0).get(i));
+            long code2 = labels.getCode(result.stringColumn(2).get(i));
+            pairs[offset + i] = code1 << 32 | code2;
+        }
+        Arrays.sort(pairs);
+        if (incremental) {
+            rebuildResult(run, pairs);
+        }
+        return pairs;
+    }
+
+
+    // refills the result table from the code pairs of the results
+    private void rebuildResult(DetectionRun run, long[] hits) {
+        LabelDictionary labels = run.getLabels();
+        run.setResult(DetectionRun.createResultTable());
+        for (long pair : hits) {
+            run.appendResult(labels.getLabel((int) (pair >>> 32)), labels.getLabel((int) pair));
+        }
+    }
+
+
+    // the code pairs of the distinct labels whose normalized forms are either the
+    // same, or were found similar
+    private long[] expandHits(DetectionRun run, ColumnLabels state, long[] hits) {
+        int[][] members = state.getMembers();
+        long[] pairs = new long[hits.length];
+        int count = 0;
+        for (int[] group : members) {                 // same form, found for free
+            for (int i = 0; i < group.length; i++) {
+                for (int j = i + 1; j < group.length; j++) {
+                    if (count == pairs.length) pairs = Arrays.copyOf(pairs, count * 2 + 16);
+                    pairs[count++] = (long) group[i] << 32 | group[j];
+                }
+            }
+        }
+        for (long hit : hits) {
+            for (long code1 : members[(int) (hit >>> 32)]) {
+                for (long code2 : members[(int) hit]) {
+                    if (count == pairs.length) pairs = Arrays.copyOf(pairs, count * 2 + 16);
+                    pairs[count++] = code1 < code2 ? code1 << 32 | code2 : code2 << 32 | code1;
+                }
+            }
+        }
+        pairs = Arrays.copyOf(pairs, count);
+        Arrays.sort(pairs);
+        run.getStatistics().set("Pairs grouped by normalization", count - hits.length);
+        return pairs;
+    }
+
+
+    /**
+     * Called once per column, after all pairs have been compared, to report on any
+     * structures built by {@link #prepare}. Does nothing by default.
+     * @param run the detection
+     */
+    protected void finish(DetectionRun run) { }
+
+
+    /**
+     * @return the similarity backend to compare label characters with
+     */
+    protected SimilarityKernel getKernel() { return SimilarityKernels.getDefault(); }
+
+
+    /**
+     * Gets the name under which this plugin's scores are cached. Scores from different
+     * algorithms, or computed with parameters that change them, must not share a name.
+     * The detection threshold need not be included, since cached bounds are checked
+     * against it when read. Entries should hold exact scores, or lower bounds where a
+     * score was only bounded.
+     * @return the simple class name by default
+     */
+    protected String getCacheKey() { return getClass().getSimpleName(); }
+
+
+    /**
+     * Called once per column, before any pairs are compared, to build any structures
+     * needed from the distinct labels and keep them with {@link DetectionRun#setIndex}.
+     * Here, builds a q-gram or MinHash index if the 'Index' option asks for one.
+     * Subclasses overriding this should call it for any 'Index' values they don't
+     * handle themselves.
+     * @param run the detection, holding the column and its distinct labels
+     */
+    protected void prepare(DetectionRun run) {
+        run.setIndex(CandidateIndexes.create(this, run));
+    }
+
+
+    /**
+     * Compares each distinct label with a code in [from, to) against every label
+     * with a higher code, so that over the full range each unordered pair is compared
+     * once, in order of first appearance. Subclasses with a faster way to find similar
+     * pairs may override this, but should report the pairs they find in the same order.
+     * @param run the detection, holding the column and its distinct labels
+     * @param from the code of the first label to compare (inclusive)
+     * @param to the code of the last label to compare (exclusive)
+     */
+    protected void detectPairs(DetectionRun run, int from, int to) {
+        CandidateIndex candidateIndex = run.getIndex(CandidateIndex.class);
+        if (candidateIndex != null) {
+            CandidateIndexes.detectPairs(this, candidateIndex, run, from, to);
+            return;
+        }
+        int n = run.getLabels().size();
+        long compared = 0;
+        for (int i = from; i < to && !run.isStopping(); i++) {
+            int first = Math.max(i+1, run.getFirstNewCode());
+            for (int j = first; j < n; j++) {
+                detect(run, i, j);                                // call method in subclass
             }
+            compared += n - first;
         }
-        return result;
+        run.getStatistics().add("Pairs compared", compared);
+    }
+
+
+    /**
+     * @return true if the most recent detection was cut short, so that its results
+     * are incomplete
+     */
+    @Override
+    public boolean isPartial() { return partial; }
+
+
+    /**
+     * @param run the detection
+     * @return true if candidate pairs for the detection are being found through a
+     * q-gram or MinHash index
+     */
+    protected boolean usesCandidateIndex(DetectionRun run) {
+        return run.getIndex(CandidateIndex.class) != null;
     }
 
 
     /**
-     * Repair instances of an imperfection pattern found within a table
+     * @return the length of the q-grams to index when the 'Index' option is 'Q-gram'
+     */
+    protected int getGramSize() { return 2; }
+
+
+    /**
+     * Gets the minimum number of padded q-grams two labels must share for the pair to
+     * possibly be detected by this plugin. By default, returns 0 (every pair is a
+     * candidate); subclasses should override this with the count filter for their
+     * similarity measure and threshold.
+     * @param length1 the length of one label
+     * @param length2 the length of the other label
+     * @return the minimum number of shared q-grams
+     */
+    protected int getMinSharedGrams(int length1, int length2) { return 0; }
+
+
+    /**
+     * Subclasses whose comparisons may safely run on several threads at once can
+     * override this to return true, allowing the 'Parallelism' option to take effect
+     * @return false by default
+     */
+    protected boolean isParallelisable() { return false; }
+
+
+    /**
+     * Splits the pairs to compare into blocks and runs them on a pool of threads (or
+     * in turn, if there is only one). Each block collects its results separately, and
+     * they are added to the result table in block order, giving the same table as a
+     * sequential run. As each block is added, progress is reported to the listener,
+     * along with the block's rows if they will not be rearranged later.
+     */
+    private void comparePairs(DetectionRun run, int parallelism, boolean streaming) {
+        int n = run.getLabels().size();
+        double totalPairs = Math.max(1.0, (double) n * (n - 1) / 2);
+        long[] pairsDone = new long[1];
+        PairBlockScheduler scheduler = new PairBlockScheduler(parallelism);
+        scheduler.run(n, (from, to) -> {
+            List<String> found = new ArrayList<>();
+            startBlock(run, found);
+            try {
+                detectPairs(run, from, to);
+            }
+            finally {
+                endBlock(run);
+            }
+            return found;
+        }, (found, from, to) -> {
+            Table result = run.getResult();
+            int firstRow = result.rowCount();
+            for (int i = 0; i < found.size(); i += 2) {
+                run.appendResult(found.get(i), found.get(i + 1));
+            }
+            if (streaming && result.rowCount() > firstRow) {
+                run.getListener().resultsFound(run.copyRows(firstRow, result.rowCount()));
+            }
+            pairsDone[0] += (long) (to - from) * (2L * n - from - to - 1) / 2;
+            run.reportProgress(pairsDone[0] / totalPairs);
+        });
+    }
+
+
+    // starts a block of comparisons on this thread, whose results are collected in a
+    // list, including those added through the string-based detect hook
+    private void startBlock(DetectionRun run, List<String> found) {
+        run.startBlock(found);
+        currentRun.set(run);
+    }
+
+
+    private void endBlock(DetectionRun run) {
+        currentRun.remove();
+        run.endBlock();
+    }
+
+
+    /**
+     * Repair instances of an imperfection pattern found within a table. The changes
+     * are resolved into one map of labels to their final replacements, which is then
+     * applied to each repaired column in a single pass, in place.
      * @param master the original table containing pattern instances
      * @param changes a table of two columns containing rows of keys (strings to find)
      *                and values (strings to replace them with) to use to make
-     *                the necessary changes to repair the pattern instances found
+     *                the necessary changes to repair the pattern instances found. If it
+     *                also has a 'Column' column, each change applies only to the column
+     *                it names, otherwise to every column selected in the options.
      * @return        a table of the original data with the repairs done
      */
     @Override
     public Table repair(Table master, Table changes) {
-        String colName = options.get("Column Name").asString();
-        StringColumn repaired = (StringColumn) master.column(colName);
-        for (Row row : changes) {
-            repaired = repaired.replaceAll(
-                    row.getString(0), row.getString(1));
-        }
-        repaired.setName(colName);
-        master.replaceColumn(colName, repaired);
-        return master;
+        return LabelRepair.repair(master, changes, this::getColumnNames);
     }
 
 
+    /**
+     * @return the number of events (rows) found affected by the most recent detection
+     */
+    @Override
+    public int imperfektionDetected() {
+        return (int) Math.min(Integer.MAX_VALUE, metrics.getAffectedEvents());
+    }
+
+
+    /**
+     * @return the fraction of affected events at which the overview shows the log as
+     * half degraded, from the 'Critical Fraction' option
+     */
+    @Override
+    public double criticalDetections() {
+        Option option = getOptions().get("Critical Fraction");
+        return option != null ? option.asDouble() : 0.1;
+    }
+
+
+    /**
+     * @return the events and cases found affected by the most recent detection. Where
+     * several columns are checked, an event is counted once for each column affected.
+     */
+    @Override
+    public DetectionMetrics getMetrics() { return metrics; }
+
+
     /**
      * By default subclasses can detect, but they can override this as required
      * @return true (this plugin can detect an imperfection pattern)
@@ -131,6 +774,21 @@ public abstract class AbstractDistortedLabel implements ImperfectionPattern {
         if (options == null) {
             options = new Options();
             options.addDefault("Column Name", "");
+            options.addDefault("Parallelism", 1);
+            options.addDefault("Index", getDefaultIndex());
+            options.addDefault("LSH Bands", 16);
+            options.addDefault("LSH Rows", 4);
+            options.addDefault("Shingle Size", 2);
+            options.addDefault("Unicode Normalization", false);
+            options.addDefault("Ignore Case", false);
+            options.addDefault("Strip Punctuation", false);
+            options.addDefault("Collapse Whitespace", false);
+            options.addDefault("Cluster Results", false);
+            options.addDefault("Case Column", "Case ID");
+            options.addDefault("Critical Fraction", 0.1);
+            options.addDefault("Time Budget (s)", 0);
+            options.addDefault("Cache File", "");
+            options.addDefault("Cache Size", 1000000);
         }
         return options;
     }
@@ -146,49 +804,122 @@ public abstract class AbstractDistortedLabel implements ImperfectionPattern {
 
 
     /**
-     * Gets the column specified in the plugins parameters
+     * @return the counters collected during the most recent detection
+     */
+    public DetectionStatistics getStatistics() { return statistics; }
+
+
+    /**
+     * @return the value of the 'Index' option for a new set of options
+     */
+    protected String getDefaultIndex() { return NO_INDEX; }
+
+
+    /**
+     * @return the way of indexing labels to find candidate pairs
+     */
+    protected String getIndex() {
+        Option option = getOptions().get("Index");
+        return option != null ? option.asString() : getDefaultIndex();
+    }
+
+
+    // the value of an integer option, or a default if it has not been set
+    int getIntOption(String key, int defaultValue) {
+        Option option = getOptions().get(key);
+        return option != null ? option.asInt() : defaultValue;
+    }
+
+
+    // the value of a text option, or null if it has not been set
+    private String getStringOption(String key) {
+        Option option = getOptions().get(key);
+        return option != null ? option.asString() : null;
+    }
+
+
+    /**
+     * @return true if the results should map each label to the most frequent label of
+     * its cluster of similar labels, rather than list each similar pair
+     */
+    protected boolean isClustering() {
+        return getBooleanOption("Cluster Results");
+    }
+
+
+    // the normalization steps enabled in the options
+    private LabelNormalizer createNormalizer() {
+        return new LabelNormalizer(getBooleanOption("Unicode Normalization"),
+                getBooleanOption("Ignore Case"), getBooleanOption("Strip Punctuation"),
+                getBooleanOption("Collapse Whitespace"));
+    }
+
+
+    // the value of a boolean option, or false if it has not been set
+    private boolean getBooleanOption(String key) {
+        Option option = getOptions().get(key);
+        return option != null && option.asBoolean();
+    }
+
+
+    /**
+     * @return the number of threads to use when comparing labels, 1 by default
+     */
+    protected int getParallelism() {
+        return Math.max(1, getIntOption("Parallelism", 1));
+    }
+
+
+    /**
+     * Gets the columns specified in the plugins parameters
      * @param table the table containing columns of data
-     * @return the specified column
+     * @return the specified columns
      */
-    protected StringColumn getSelectedColumn(Table table) {
-        Option option = options.get("Column Name");
-        if (option != null) {
-            String colName = option.asString();
-            if (colName != null) {
-                return (StringColumn) table.column(colName);
-            }
+    protected List<StringColumn> getSelectedColumns(Table table) {
+        List<StringColumn> columns = new ArrayList<>();
+        for (String colName : getColumnNames()) {
+            columns.add((StringColumn) table.column(colName));
         }
-        throw new IllegalArgumentException("A value must be provided for the 'Column Name' property");
+        return columns;
     }
 
 
     /**
-     * Creates the table that will receive the imperfect values detected
-     * @return the empty table
+     * @return the names of the columns specified in the plugins parameters, where
+     * the 'Column Name' property may hold a comma-separated list
      */
-    private Table createResultTable() {
-        return Table.create("Result").addColumns(
-                StringColumn.create("Label1"),
-                IntColumn.create("Count1"),
-                StringColumn.create("Label2"),
-                IntColumn.create("Count2")
-        );
+    protected List<String> getColumnNames() {
+        Option option = options.get("Column Name");
+        if (option != null && option.asString() != null) {
+            List<String> colNames = new ArrayList<>();
+            for (String colName : option.asString().split(",")) {
+                if (!colName.trim().isEmpty()) {
+                    colNames.add(colName.trim());
+                }
+            }
+            if (!colNames.isEmpty()) {
+                return colNames;
+            }
+        }
+        throw new IllegalArgumentException("A value must be provided for the 'Column Name' property");
     }
 
+
     /**
-     * Adds a key-value pair to the results table, as well as the frequency of each value
-     * as contained in the master table
-     * @param column the column from the master table to count frequencies
+     * Adds a key-value pair to the results of the block of comparisons running on this
+     * thread, as well as the frequency of each value, for subclasses comparing labels
+     * through {@link #detect(StringColumn, String, String)}
+     * @param column the column being checked
      * @param s1 the label
      * @param s2 the distorted label
+     * @throws IllegalStateException if no detection is in progress on this thread
      */
     protected void addResult(StringColumn column, String s1, String s2) {
-        int c1 = column.countOccurrences(s1);
-        int c2 = column.countOccurrences(s2);
-        result.stringColumn(0).append(s1);
-        result.intColumn(1).append(c1);
-        result.stringColumn(2).append(s2);
-        result.intColumn(3).append(c2);
+        DetectionRun run = currentRun.get();
+        if (run == null) {
+            throw new IllegalStateException("Results can only be added during a detection");
+        }
+        run.addResult(s1, s2);
     }
 
 }
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import com.processdataquality.praeclarus.plugin.Option;
+import com.processdataquality.praeclarus.plugin.Options;
+import tech.tablesaw.api.Table;
+
+/**
+ * Base for the patterns that look at the events of each case of a log, rather than
+ * at the values of a single column. Holds the options naming the log's case,
+ * timestamp and activity columns, and the counts and statistics of the most recent
+ * detection. The state of a detection in progress is held in an
+ * {@link EventDetectionRun} passed to {@link #find}, so that one plugin may run
+ * several detections at once. Detections may be cut short by a cancellation token or
+ * the 'Time Budget (s)' option, in which case the results found so far are returned
+ * in a table named "Result (partial)".
+ */
+public abstract class AbstractEventPattern implements ImperfectionPattern {
+
+    // The counts found by the most recent detection, the work it did, and whether it
+    // was cut short
+    private volatile DetectionMetrics metrics = new DetectionMetrics(0, 0, -1, -1);
+    private volatile DetectionStatistics statistics = new DetectionStatistics();
+    private volatile boolean partial;
+
+    // The set of parameters used by this plugin
+    private Options options;
+
+
+    protected AbstractEventPattern() { }
+
+
+    /**
+     * To be implemented by subclasses to find the pattern in a table. Long loops
+     * should stop when {@link EventDetectionRun#isStopping()} returns true, and the
+     * counts found should be passed to {@link EventDetectionRun#setMetrics}.
+     * @param run the state of this detection
+     * @param table the event log
+     * @return a table where each row describes a detection
+     */
+    protected abstract Table find(EventDetectionRun run, Table table);
+
+
+    @Override
+    public Table detect(Table table) {
+        return detect(table, DetectionListener.NONE, new CancellationToken());
+    }
+
+
+    @Override
+    public Table detect(Table table, DetectionListener listener) {
+        return detect(table, listener, new CancellationToken());
+    }
+
+
+    /**
+     * Finds the pattern in a table, stopping early if asked to
+     * @param table the event log
+     * @param listener receives the results, and the progress of the detection
+     * @param token says when to stop early
+     * @return a table where each row describes a detection
+     */
+    @Override
+    public Table detect(Table table, DetectionListener listener, CancellationToken token) {
+        EventDetectionRun run = new EventDetectionRun(
+                token.withBudget(getIntOption("Time Budget (s)", 0) * 1000L), table.rowCount());
+        Table result = find(run, table);
+        DetectionMetrics metrics = run.getMetrics();
+        DetectionStatistics statistics = run.getStatistics();
+        if (run.isPartial()) {
+            result.setName("Result (partial)");
+            statistics.set("Partial", 1);
+        }
+        statistics.set("Affected events", metrics.getAffectedEvents());
+        if (metrics.hasCases()) {
+            statistics.set("Affected cases", metrics.getAffectedCases());
+        }
+        statistics.set("Results", result.rowCount());
+        this.metrics = metrics;
+        this.statistics = statistics;
+        partial = run.isPartial();
+        if (result.rowCount() > 0) {
+            listener.resultsFound(result);
+        }
+        listener.progressChanged(1.0);
+        return result;
+    }
+
+
+    /**
+     * Builds a case-grouped index of a table from the case and timestamp columns
+     * named in the options, recording the time taken
+     * @param run the state of the detection
+     * @param table the event log
+     * @param timeOrdered true to order each case's events by timestamp
+     * @return the index
+     */
+    protected CaseIndex buildCaseIndex(EventDetectionRun run, Table table, boolean timeOrdered) {
+        long start = System.nanoTime();
+        CaseIndex index = new CaseIndex(table, getStringOption("Case Column"),
+                getStringOption("Timestamp Column"), timeOrdered, getParallelism());
+        DetectionStatistics statistics = run.getStatistics();
+        statistics.set("Cases", index.getCaseCount());
+        statistics.set("Events", index.getEventCount());
+        statistics.set("Case index build (ns)", System.nanoTime() - start);
+        return index;
+    }
+
+
+    /**
+     * @return the counters describing the work done by the most recent detection
+     */
+    public DetectionStatistics getStatistics() { return statistics; }
+
+
+    /**
+     * @return the events and cases found affected by the most recent detection
+     */
+    @Override
+    public DetectionMetrics getMetrics() { return metrics; }
+
+
+    /**
+     * @return true if the most recent detection was cut short, so that its results
+     * are incomplete
+     */
+    @Override
+    public boolean isPartial() { return partial; }
+
+
+    /**
+     * @return the number of events found affected by the most recent detection
+     */
+    @Override
+    public int imperfektionDetected() {
+        return (int) Math.min(Integer.MAX_VALUE, metrics.getAffectedEvents());
+    }
+
+
+    /**
+     * @return the fraction of affected events at which the overview shows the log as
+     * half degraded, from the 'Critical Fraction' option
+     */
+    @Override
+    public double criticalDetections() {
+        Option option = getOptions().get("Critical Fraction");
+        return option != null ? option.asDouble() : 0.1;
+    }
+
+
+    @Override
+    public boolean canDetect() { return true; }
+
+
+    /**
+     * These patterns only detect; the events found are left for the user to review
+     */
+    @Override
+    public boolean canRepair() { return false; }
+
+
+    /**
+     * @return the master table unchanged
+     */
+    @Override
+    public Table repair(Table master, Table changes) { return master; }
+
+
+    @Override
+    public int getMaxInputs() { return 1; }
+
+    @Override
+    public int getMaxOutputs() { return 1; }
+
+
+    @Override
+    public Options getOptions() {
+        if (options == null) {
+            options = new Options();
+            options.addDefault("Case Column", "Case ID");
+            options.addDefault("Timestamp Column", "time:timestamp");
+            options.addDefault("Activity Column", "concept:name");
+            options.addDefault("Parallelism", 1);
+            options.addDefault("Critical Fraction", 0.1);
+            options.addDefault("Time Budget (s)", 0);
+        }
+        return options;
+    }
+
+
+    public void setOptions(Options options) {
+        this.options = options;
+    }
+
+
+    /**
+     * @return the number of threads to process cases with, from the 'Parallelism' option
+     */
+    protected int getParallelism() {
+        return Math.max(1, getIntOption("Parallelism", 1));
+    }
+
+
+    protected String getStringOption(String key) {
+        Option option = getOptions().get(key);
+        return option != null ? option.asString() : null;
+    }
+
+
+    protected int getIntOption(String key, int defaultValue) {
+        Option option = getOptions().get(key);
+        return option != null ? option.asInt() : defaultValue;
+    }
+
+
+    protected double getDoubleOption(String key, double defaultValue) {
+        Option option = getOptions().get(key);
+        return option != null ? option.asDouble() : defaultValue;
+    }
+
+}
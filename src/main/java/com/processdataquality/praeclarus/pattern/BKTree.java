@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * A Burkhard-Keller tree: a metric tree over a set of labels that, for a query
+ * label and a maximum distance, visits only those subtrees whose members could be
+ * within that distance (via the triangle inequality). Labels are identified by their
+ * codes in a label dictionary, so the distance function can work on whatever form of
+ * the labels it holds by code. It must be a true metric, such as Levenshtein
+ * distance. Once built, the tree may be queried from several threads at once, and
+ * labels may later be added to it, though not while it is being queried.
+ */
+public class BKTree {
+
+    private IntBinaryOperator metric;
+    private Node root;
+    private int size;
+    private long buildComparisons;
+    private final LongAdder queryComparisons = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+
+
+    /**
+     * @param metric the distance between the labels with two codes
+     */
+    public BKTree(IntBinaryOperator metric) {
+        this.metric = metric;
+    }
+
+
+    /**
+     * Replaces the distance function, such as when the tree is kept for a later
+     * detection whose labels are held elsewhere. The distances it gives between the
+     * labels already in the tree must not change.
+     * @param metric the distance between the labels with two codes
+     */
+    public void setMetric(IntBinaryOperator metric) {
+        this.metric = metric;
+    }
+
+
+    /**
+     * Adds a label to the tree
+     * @param code the code of the label to add, returned by queries
+     */
+    public void add(int code) {
+        if (root == null) {
+            root = new Node(code);
+            size++;
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int distance = metric.applyAsInt(code, node.code);
+            buildComparisons++;
+            if (distance == 0) return;                   // already present
+            Node child = node.children.get(distance);
+            if (child == null) {
+                node.children.put(distance, new Node(code));
+                size++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+
+    /**
+     * Finds all labels within a distance of a label
+     * @param code the code of the label to match, which need not be in the tree
+     * @param maxDistance the maximum distance (inclusive) of matching labels
+     * @return the codes of all labels within maxDistance of the label, in no
+     * particular order
+     */
+    public List<Integer> query(int code, int maxDistance) {
+        List<Integer> matches = new ArrayList<>();
+        queries.increment();
+        if (root == null) return matches;
+        Deque<Node> pending = new ArrayDeque<>();
+        long comparisons = 0;
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = metric.applyAsInt(code, node.code);
+            comparisons++;
+            if (distance <= maxDistance) {
+                matches.add(node.code);
+            }
+            for (Map.Entry<Integer, Node> entry : node.children.entrySet()) {
+                int edge = entry.getKey();
+                if (edge >= distance - maxDistance && edge <= distance + maxDistance) {
+                    pending.push(entry.getValue());
+                }
+            }
+        }
+        queryComparisons.add(comparisons);
+        return matches;
+    }
+
+
+    public int size() { return size; }
+
+    public long getBuildComparisons() { return buildComparisons; }
+
+    public long getQueryComparisons() { return queryComparisons.sum(); }
+
+    public long getQueries() { return queries.sum(); }
+
+
+    /**
+     * Clears the counts of comparisons and queries made, so that the work done on
+     * a tree kept from an earlier detection can be counted separately
+     */
+    public void resetCounts() {
+        buildComparisons = 0;
+        queryComparisons.reset();
+        queries.reset();
+    }
+
+
+    private static class Node {
+        final int code;
+        final Map<Integer, Node> children = new HashMap<>(4);
+
+        Node(int code) {
+            this.code = code;
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+/**
+ * The default similarity backend, which calculates the edit distance of labels of up
+ * to 64 characters a whole matrix column at a time using the bit-parallel algorithm
+ * of Myers. When one label is compared with many, its bitmasks are built only once.
+ */
+public class BitParallelSimilarityKernel extends ScalarSimilarityKernel {
+
+    public static final String NAME = "bit-parallel";
+
+
+    @Override
+    public String getName() { return NAME; }
+
+
+    @Override
+    public int distance(char[] s1, char[] s2, int threshold) {
+        return EditDistance.distance(s1, s2, threshold);
+    }
+
+
+    @Override
+    public void distances(char[] query, char[][] candidates, int from, int to,
+                          int threshold, int[] out) {
+        EditDistance.distances(query, candidates, from, to, threshold, out);
+    }
+
+}
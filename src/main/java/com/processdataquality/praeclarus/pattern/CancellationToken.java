@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+/**
+ * Lets a running detection be stopped early, either on request or when a time budget
+ * runs out. Detections check the token regularly from their inner loops, and when
+ * it says to stop, return the results found so far, marked as partial.
+ */
+public class CancellationToken {
+
+    private final CancellationToken parent;
+    private final long deadline;                       // System.nanoTime(), or 0 if none
+    private volatile boolean cancelled;
+
+
+    /**
+     * Creates a token with no time budget
+     */
+    public CancellationToken() {
+        this(null, 0);
+    }
+
+
+    private CancellationToken(CancellationToken parent, long deadline) {
+        this.parent = parent;
+        this.deadline = deadline;
+    }
+
+
+    /**
+     * Gets a token that says to stop when this one does, or once a time budget from
+     * now has passed, whichever comes first
+     * @param millis the time budget, in milliseconds. If zero or less, there is no budget.
+     * @return the new token
+     */
+    public CancellationToken withBudget(long millis) {
+        if (millis <= 0) return this;
+        long end = System.nanoTime() + millis * 1000000L;
+        return new CancellationToken(this, end == 0 ? 1 : end);
+    }
+
+
+    /**
+     * Asks the detection using this token to stop
+     */
+    public void cancel() { cancelled = true; }
+
+
+    /**
+     * @return true if the token has been cancelled, or its time budget has run out
+     */
+    public boolean isStopRequested() {
+        return cancelled || (deadline != 0 && System.nanoTime() - deadline > 0)
+                || (parent != null && parent.isStopRequested());
+    }
+
+}
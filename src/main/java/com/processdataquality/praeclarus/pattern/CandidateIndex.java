@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+/**
+ * An index over the distinct labels of a column that, for each label, proposes the
+ * other labels that may be similar to it, so that only those pairs need be compared
+ * with the plugin's exact measure
+ */
+public interface CandidateIndex {
+
+    /**
+     * Adds the labels added to the dictionary since the index was built, or since
+     * this was last called, so that an index kept from an earlier detection can be
+     * reused once more rows are appended
+     */
+    void addNewLabels();
+
+
+    /**
+     * @return a new searcher for this index. Searchers may hold working storage, so
+     * each thread querying the index should use its own.
+     */
+    Searcher newSearcher();
+
+
+    interface Searcher {
+
+        /**
+         * Gets the labels that may be similar to a label. Only labels with higher codes
+         * are returned, so that searching for each label in turn yields each candidate
+         * pair once.
+         * @param code the code of the label to search for
+         * @return the codes of the candidates, in ascending order
+         */
+        default int[] candidates(int code) { return candidates(code, code + 1); }
+
+
+        /**
+         * Gets the labels that may be similar to a label, from those with a code of at
+         * least some lowest code. Searching from code 0 gives every label that may be
+         * similar, such as when only the pairs including a new label are wanted.
+         * @param code the code of the label to search for
+         * @param lowest the lowest code of a candidate
+         * @return the codes of the candidates, other than the label itself, in
+         * ascending order
+         */
+        int[] candidates(int code, int lowest);
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+/**
+ * Builds the q-gram and MinHash indexes that the distorted label plugins can use to
+ * find candidate pairs of labels (or adds the new labels to those kept from an
+ * earlier detection), compares the pairs they propose, and reports how much
+ * comparing they saved
+ */
+final class CandidateIndexes {
+
+    private CandidateIndexes() { }
+
+
+    /**
+     * Builds the index named by a plugin's 'Index' option over the labels being
+     * compared, recording its size and build time. If the run holds an index of that
+     * kind kept from the previous detection of the labels, only the new labels are
+     * added to it.
+     * @param plugin the plugin, whose options configure the index
+     * @param run the detection, holding the labels
+     * @return the index, or null if the option is 'None'
+     * @throws IllegalArgumentException if the option names an unknown index
+     */
+    static CandidateIndex create(AbstractDistortedLabel plugin, DetectionRun run) {
+        String index = plugin.getIndex();
+        LabelDictionary labels = run.getLabels();
+        DetectionStatistics statistics = run.getStatistics();
+        long start = System.nanoTime();
+        CandidateIndex candidateIndex;
+        if (AbstractDistortedLabel.QGRAM_INDEX.equalsIgnoreCase(index)) {
+            QGramIndex gramIndex = run.getIndex(QGramIndex.class);
+            if (gramIndex != null) {
+                gramIndex.addNewLabels();
+            }
+            else {
+                gramIndex = new QGramIndex(labels, plugin.getGramSize(),
+                        plugin::getMinSharedGrams);
+            }
+            statistics.set("Q-gram index size", gramIndex.getGramCount());
+            candidateIndex = gramIndex;
+        }
+        else if (AbstractDistortedLabel.MINHASH_INDEX.equalsIgnoreCase(index)) {
+            MinHashIndex minHashIndex = run.getIndex(MinHashIndex.class);
+            if (minHashIndex != null) {
+                minHashIndex.addNewLabels();
+            }
+            else {
+                minHashIndex = new MinHashIndex(labels, plugin.getIntOption("LSH Bands", 16),
+                        plugin.getIntOption("LSH Rows", 4), plugin.getIntOption("Shingle Size", 2));
+            }
+            statistics.set("LSH buckets", minHashIndex.getBucketCount());
+            candidateIndex = minHashIndex;
+        }
+        else if (AbstractDistortedLabel.NO_INDEX.equalsIgnoreCase(index)) {
+            return null;
+        }
+        else {
+            throw new IllegalArgumentException("Unknown value for the 'Index' property: " + index);
+        }
+        statistics.set("Index build (ns)", System.nanoTime() - start);
+        return candidateIndex;
+    }
+
+
+    /**
+     * Compares each distinct label with a code in [from, to) against only those labels
+     * with higher codes that the index proposes. Where only pairs including a new
+     * label are needed, only the new labels are searched for, and a candidate that is
+     * an earlier label is compared with the earlier label first.
+     * @param plugin the plugin making the comparisons
+     * @param index the index
+     * @param run the detection
+     * @param from the code of the first label to compare (inclusive)
+     * @param to the code of the last label to compare (exclusive)
+     */
+    static void detectPairs(AbstractDistortedLabel plugin, CandidateIndex index,
+                            DetectionRun run, int from, int to) {
+        CandidateIndex.Searcher searcher = index.newSearcher();
+        int firstNewCode = run.getFirstNewCode();
+        long candidates = 0;
+        long searchTime = 0;
+        long verifyTime = 0;
+        for (int i = Math.max(from, firstNewCode); i < to && !run.isStopping(); i++) {
+            long start = System.nanoTime();
+            int[] found = firstNewCode > 0 ? searcher.candidates(i, 0) : searcher.candidates(i);
+            long searched = System.nanoTime();
+            for (int j : found) {
+                if (j < firstNewCode) {
+                    plugin.detect(run, j, i);                     // call method in subclass
+                    candidates++;
+                }
+                else if (j > i) {
+                    plugin.detect(run, i, j);
+                    candidates++;
+                }
+            }
+            verifyTime += System.nanoTime() - searched;
+            searchTime += searched - start;
+        }
+        DetectionStatistics statistics = run.getStatistics();
+        statistics.add("Candidates", candidates);
+        statistics.add("Candidate search (ns)", searchTime);
+        statistics.add("Candidate verification (ns)", verifyTime);
+    }
+
+
+    /**
+     * Records the pairs the index avoided comparing, and roughly what that saved
+     * @param index the index
+     * @param run the detection, once all the column's pairs have been compared
+     */
+    static void reportStatistics(CandidateIndex index, DetectionRun run) {
+        DetectionStatistics statistics = run.getStatistics();
+        long n = run.getLabels().size();
+        long compared = run.getFirstNewCode();
+        long candidates = statistics.get("Candidates");
+        long skipped = n * (n - 1) / 2 - compared * (compared - 1) / 2 - candidates;
+        statistics.set("Pairs skipped by index", skipped);
+        if (index instanceof MinHashIndex) {
+            statistics.set("LSH pairs proposed", candidates);
+            statistics.set("LSH pairs verified", run.getResult().rowCount());
+        }
+        if (candidates > 0) {
+            double nanosPerPair = (double) statistics.get("Candidate verification (ns)") / candidates;
+            long overhead = statistics.get("Index build (ns)")
+                    + statistics.get("Candidate search (ns)");
+            statistics.set("Estimated time saved (ms)",
+                    (long) (nanosPerPair * skipped - overhead) / 1000000);
+        }
+    }
+
+}
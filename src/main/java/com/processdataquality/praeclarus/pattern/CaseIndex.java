@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import tech.tablesaw.api.DateTimeColumn;
+import tech.tablesaw.api.LongColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * A case-grouped view of an event log, held in primitive arrays. The rows of each
+ * case are placed together, in log order or, if asked, in timestamp order, alongside
+ * each row's timestamp in epoch milliseconds. Grouping is a counting sort over the
+ * case codes, so it takes linear time; ordering by timestamp sorts each case
+ * separately, in parallel. Rows without a case are left out.
+ * <p>
+ * Positions run from 0 to {@link #getEventCount()} - 1, with case c holding the
+ * positions [{@link #getStart(int) getStart(c)}, {@link #getEnd(int) getEnd(c)}).
+ */
+public class CaseIndex {
+
+    /** The timestamp of an event that has none */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    // Ranges shorter than this are sorted by insertion
+    private static final int INSERTION_SORT_LIMIT = 32;
+
+    private final LabelDictionary cases = new LabelDictionary();
+    private final int[] caseStarts;                 // one more than the number of cases
+    private final int[] rows;                       // the table row at each position
+    private final long[] times;                     // the timestamp at each position
+    private final boolean timeOrdered;
+
+
+    /**
+     * Builds an index of the cases of a table
+     * @param table the event log
+     * @param caseColumn the name of the column of case identifiers
+     * @param timeColumn the name of the column of timestamps, which must hold
+     *                   date-times or epoch milliseconds
+     * @param timeOrdered true to order each case's events by timestamp, false to keep
+     *                    them in log order. Events with equal timestamps stay in log
+     *                    order, and those with none come first.
+     * @param parallelism the number of threads to sort cases with
+     */
+    public CaseIndex(Table table, String caseColumn, String timeColumn,
+                     boolean timeOrdered, int parallelism) {
+        Column<?> caseIds = getColumn(table, caseColumn);
+        long[] rowTimes = readTimes(getColumn(table, timeColumn));
+        int rowCount = table.rowCount();
+
+        int[] caseOf = new int[rowCount];
+        int[] counts = new int[16];
+        int eventCount = 0;
+        for (int i = 0; i < rowCount; i++) {
+            int code = caseIds.isMissing(i) ? -1 : cases.add(caseIds.getString(i));
+            caseOf[i] = code;
+            if (code < 0) continue;
+            if (code == counts.length) {
+                counts = Arrays.copyOf(counts, counts.length * 2);
+            }
+            counts[code]++;
+            eventCount++;
+        }
+
+        caseStarts = new int[cases.size() + 1];
+        for (int c = 0; c < cases.size(); c++) {
+            caseStarts[c + 1] = caseStarts[c] + counts[c];
+        }
+        int[] next = counts;                        // reused as each case's next position
+        System.arraycopy(caseStarts, 0, next, 0, cases.size());
+        rows = new int[eventCount];
+        times = new long[eventCount];
+        for (int i = 0; i < rowCount; i++) {
+            int code = caseOf[i];
+            if (code < 0) continue;
+            int pos = next[code]++;
+            rows[pos] = i;
+            times[pos] = rowTimes[i];
+        }
+
+        this.timeOrdered = timeOrdered;
+        if (timeOrdered) {
+            new CaseScheduler(Math.max(1, parallelism)).run(caseStarts, this::sortCases);
+        }
+    }
+
+
+    /**
+     * Reads a column of timestamps as epoch milliseconds, without creating a row
+     * object per value. Date-times without a zone are treated as UTC.
+     * @param column a column of date-times, or of epoch milliseconds
+     * @return the timestamp of each row, or NO_TIME where missing
+     */
+    public static long[] readTimes(Column<?> column) {
+        long[] times = new long[column.size()];
+        if (column instanceof DateTimeColumn) {
+            DateTimeColumn dateTimes = (DateTimeColumn) column;
+            for (int i = 0; i < times.length; i++) {
+                LocalDateTime dateTime = dateTimes.get(i);
+                times[i] = dateTime == null ? NO_TIME :
+                        dateTime.toLocalDate().toEpochDay() * 86_400_000L +
+                                dateTime.toLocalTime().toNanoOfDay() / 1_000_000L;
+            }
+        }
+        else if (column instanceof LongColumn) {
+            LongColumn longs = (LongColumn) column;
+            for (int i = 0; i < times.length; i++) {
+                times[i] = longs.isMissing(i) ? NO_TIME : longs.getLong(i);
+            }
+        }
+        else {
+            throw new IllegalArgumentException("Column '" + column.name() +
+                    "' must hold date-times or epoch milliseconds to be read as timestamps");
+        }
+        return times;
+    }
+
+
+    /**
+     * @param table a table
+     * @param name the name of a column
+     * @return the column
+     * @throws IllegalArgumentException if the table has no such column
+     */
+    public static Column<?> getColumn(Table table, String name) {
+        if (name == null || !table.columnNames().contains(name)) {
+            throw new IllegalArgumentException("Table has no column named '" + name + "'");
+        }
+        return table.column(name);
+    }
+
+
+    /**
+     * @return the number of distinct cases
+     */
+    public int getCaseCount() { return cases.size(); }
+
+
+    /**
+     * @return the number of events with a case
+     */
+    public int getEventCount() { return rows.length; }
+
+
+    /**
+     * @param c a case code
+     * @return the case identifier
+     */
+    public String getCaseId(int c) { return cases.getLabel(c); }
+
+
+    /**
+     * @param c a case code
+     * @return the position of the case's first event
+     */
+    public int getStart(int c) { return caseStarts[c]; }
+
+
+    /**
+     * @param c a case code
+     * @return one past the position of the case's last event
+     */
+    public int getEnd(int c) { return caseStarts[c + 1]; }
+
+
+    /**
+     * @param position a position in the index
+     * @return the table row of the event at the position
+     */
+    public int getRow(int position) { return rows[position]; }
+
+
+    /**
+     * @param position a position in the index
+     * @return the timestamp of the event at the position, or NO_TIME
+     */
+    public long getTime(int position) { return times[position]; }
+
+
+    /**
+     * @return true if each case's events are in timestamp order, false if in log order
+     */
+    public boolean isTimeOrdered() { return timeOrdered; }
+
+
+    // the start position of each case, then the number of events
+    int[] getCaseStarts() { return caseStarts; }
+
+
+    // sorts the events of each case in [fromCase, toCase) by timestamp
+    private Void sortCases(int fromCase, int toCase) {
+        long[] timeBuffer = new long[0];
+        int[] rowBuffer = new int[0];
+        for (int c = fromCase; c < toCase; c++) {
+            int from = caseStarts[c];
+            int to = caseStarts[c + 1];
+            if (to - from > timeBuffer.length) {
+                timeBuffer = new long[to - from];
+                rowBuffer = new int[to - from];
+            }
+            sort(from, to, timeBuffer, rowBuffer);
+        }
+        return null;
+    }
+
+
+    // a stable merge sort of positions [from, to) by time, moving rows alongside
+    private void sort(int from, int to, long[] timeBuffer, int[] rowBuffer) {
+        if (to - from <= INSERTION_SORT_LIMIT) {
+            for (int i = from + 1; i < to; i++) {
+                long time = times[i];
+                int row = rows[i];
+                int j = i - 1;
+                while (j >= from && times[j] > time) {
+                    times[j + 1] = times[j];
+                    rows[j + 1] = rows[j];
+                    j--;
+                }
+                times[j + 1] = time;
+                rows[j + 1] = row;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        sort(from, mid, timeBuffer, rowBuffer);
+        sort(mid, to, timeBuffer, rowBuffer);
+        if (times[mid - 1] <= times[mid]) return;           // already in order
+
+        int length = mid - from;
+        System.arraycopy(times, from, timeBuffer, 0, length);
+        System.arraycopy(rows, from, rowBuffer, 0, length);
+        int i = 0;
+        int j = mid;
+        int k = from;
+        while (i < length && j < to) {
+            if (times[j] < timeBuffer[i]) {
+                times[k] = times[j];
+                rows[k++] = rows[j++];
+            }
+            else {
+                times[k] = timeBuffer[i];
+                rows[k++] = rowBuffer[i++];
+            }
+        }
+        while (i < length) {
+            times[k] = timeBuffer[i];
+            rows[k++] = rowBuffer[i++];
+        }
+    }
+
+}
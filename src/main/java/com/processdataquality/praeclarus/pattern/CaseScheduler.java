@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Splits the cases of an event log into partitions of consecutive cases holding
+ * roughly equal numbers of events, and runs the partitions on a pool of worker
+ * threads. Each partition produces its own result, and the results are returned in
+ * case order regardless of the order in which the partitions finish.
+ */
+public class CaseScheduler {
+
+    // Partitions per thread, so that threads finishing early can take on more work
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private final int parallelism;
+
+
+    /**
+     * @param parallelism the number of worker threads to use
+     */
+    public CaseScheduler(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+
+    /**
+     * The work to be done for a partition of cases
+     * @param <T> the type of result produced for each partition
+     */
+    public interface Partition<T> {
+
+        /**
+         * Processes each case c in [fromCase, toCase)
+         * @return the result for the partition
+         */
+        T process(int fromCase, int toCase);
+    }
+
+
+    /**
+     * Processes all the cases of an index, partition by partition
+     * @param index the event log's cases
+     * @param partition the work to do for each partition
+     * @return the result of each partition, in case order
+     */
+    public <T> List<T> run(CaseIndex index, Partition<T> partition) {
+        return run(index.getCaseStarts(), partition);
+    }
+
+
+    /**
+     * Processes all cases, partition by partition
+     * @param caseStarts the position of each case's first event, followed by the
+     *                   total number of events
+     * @param partition the work to do for each partition
+     * @return the result of each partition, in case order
+     */
+    <T> List<T> run(int[] caseStarts, Partition<T> partition) {
+        List<int[]> ranges = partition(caseStarts, parallelism * PARTITIONS_PER_THREAD);
+        List<T> results = new ArrayList<>(ranges.size());
+        if (parallelism == 1 || ranges.size() < 2) {
+            for (int[] range : ranges) {
+                results.add(partition.process(range[0], range[1]));
+            }
+            return results;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Future<T>> futures = new ArrayList<>(ranges.size());
+            for (int[] range : ranges) {
+                futures.add(pool.submit(() -> partition.process(range[0], range[1])));
+            }
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while processing cases", ie);
+        }
+        catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Failed to process cases", cause);
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Splits the cases into ranges of consecutive cases, each holding about the same
+     * number of events
+     * @param caseStarts the position of each case's first event, followed by the
+     *                   total number of events
+     * @param partitionCount the preferred number of ranges
+     * @return a list of [from, to) case ranges covering all cases in order
+     */
+    static List<int[]> partition(int[] caseStarts, int partitionCount) {
+        List<int[]> ranges = new ArrayList<>();
+        int caseCount = caseStarts.length - 1;
+        if (caseCount < 1) return ranges;
+        long target = Math.max(1, (long) caseStarts[caseCount] / Math.max(1, partitionCount));
+        int from = 0;
+        for (int c = 0; c < caseCount; c++) {
+            if (caseStarts[c + 1] - caseStarts[from] >= target) {
+                ranges.add(new int[] { from, c + 1 });
+                from = c + 1;
+            }
+        }
+        if (from < caseCount) {
+            ranges.add(new int[] { from, caseCount });
+        }
+        return ranges;
+    }
+
+}
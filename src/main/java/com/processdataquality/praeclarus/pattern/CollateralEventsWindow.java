@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import com.processdataquality.praeclarus.annotations.Pattern;
+import com.processdataquality.praeclarus.annotations.Plugin;
+import com.processdataquality.praeclarus.plugin.Options;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds collateral events: the same or a similar activity recorded more than once
+ * within a short interval in a case, typically because several systems logged it.
+ * <p>
+ * Each case's events are taken in timestamp order, keeping those within the window
+ * of the current event in a ring buffer that is reused from case to case. An event
+ * whose activity matches that of an event in the buffer joins its cluster and is
+ * reported against the cluster's first event. Activities are compared by code, using
+ * a table of which distinct activities are similar built once before the cases are
+ * split between threads.
+ * @author Michael Adams
+ * @date 18/10/26
+ */
+@Plugin(
+        name = "Time Window",
+        author = "Michael Adams",
+        version = "1.0",
+        synopsis = "Finds similar events recorded close together within a case"
+)
+@Pattern(group = PatternGroup.COLLATERAL_EVENTS)
+public class CollateralEventsWindow extends AbstractEventPattern {
+
+    // The ways of comparing activities
+    private static final String EXACT = "Exact";
+    private static final String LEVENSHTEIN = "Levenshtein";
+    private static final String JARO_WINKLER = "Jaro-Winkler";
+
+    // The most distinct activities for which a full table of similar pairs is built;
+    // beyond this pairs are compared as they are met
+    private static final int MAX_TABLE_SIZE = 4096;
+
+    // Allows for rounding in the scaled edit distance threshold
+    private static final double EPSILON = 1e-9;
+
+    public CollateralEventsWindow() { }
+
+
+    @Override
+    protected Table find(EventDetectionRun run, Table table) {
+        long window = getIntOption("Window (ms)", 1000);
+        if (window < 0) {
+            throw new IllegalArgumentException("Window (ms) must not be negative");
+        }
+        Column<?> activities = CaseIndex.getColumn(table, getStringOption("Activity Column"));
+        CaseIndex index = buildCaseIndex(run, table, true);
+        LabelDictionary activityCodes = new LabelDictionary();
+        int[] activityOf = new int[table.rowCount()];
+        for (int i = 0; i < activityOf.length; i++) {
+            activityOf[i] = activities.isMissing(i) ? -1 : activityCodes.add(activities.getString(i));
+        }
+        Similarity similarity = new Similarity(activityCodes, getSimilarityOption(),
+                getDoubleOption("Similarity Threshold", 0.8));
+
+        List<Findings> found = new CaseScheduler(getParallelism()).run(index,
+                (from, to) -> findInCases(run, index, activityOf, similarity, window,
+                        from, to));
+
+        Table result = createResultTable();
+        Column<?> times = CaseIndex.getColumn(table, getStringOption("Timestamp Column"));
+        long affectedEvents = 0;
+        long affectedCases = 0;
+        for (Findings findings : found) {
+            for (int i = 0; i < findings.rows.size(); i++) {
+                int row = findings.rows.get(i);
+                int first = findings.firstRows.get(i);
+                result.intColumn(0).append(row);
+                result.stringColumn(1).append(index.getCaseId(findings.caseCodes.get(i)));
+                result.stringColumn(2).append(activities.getString(row));
+                result.stringColumn(3).append(times.getString(row));
+                result.intColumn(4).append(first);
+                result.stringColumn(5).append(activities.getString(first));
+            }
+            affectedEvents += findings.rows.size();
+            affectedCases += findings.affectedCases;
+        }
+        run.getStatistics().set("Activities", activityCodes.size());
+        run.setMetrics(new DetectionMetrics(affectedEvents, index.getEventCount(),
+                affectedCases, index.getCaseCount()));
+        return result;
+    }
+
+
+    // slides the window over the events of each case in [from, to)
+    private Findings findInCases(EventDetectionRun run, CaseIndex index, int[] activityOf,
+                                 Similarity similarity, long window, int from, int to) {
+        Findings findings = new Findings();
+        Window buffer = new Window();
+        for (int c = from; c < to && !run.isStopping(); c++) {
+            buffer.clear();
+            boolean caseAffected = false;
+            for (int p = index.getStart(c); p < index.getEnd(c); p++) {
+                long time = index.getTime(p);
+                int row = index.getRow(p);
+                int activity = activityOf[row];
+                if (time == CaseIndex.NO_TIME || activity < 0) continue;
+                buffer.evictBefore(time - window);
+
+                // the most recent match in the window, whose cluster the event joins
+                int first = row;
+                for (int i = buffer.size() - 1; i >= 0; i--) {
+                    if (similarity.test(activity, buffer.activity(i))) {
+                        first = buffer.first(i);
+                        break;
+                    }
+                }
+                if (first != row) {
+                    findings.add(row, c, first);
+                    caseAffected = true;
+                }
+                buffer.add(time, activity, first);
+            }
+            if (caseAffected) findings.affectedCases++;
+        }
+        return findings;
+    }
+
+
+    private String getSimilarityOption() {
+        String similarity = getStringOption("Similarity");
+        if (similarity == null || similarity.isEmpty()) return EXACT;
+        for (String known : new String[] { EXACT, LEVENSHTEIN, JARO_WINKLER }) {
+            if (known.equalsIgnoreCase(similarity)) return known;
+        }
+        throw new IllegalArgumentException("Unknown similarity '" + similarity +
+                "': expected " + EXACT + ", " + LEVENSHTEIN + " or " + JARO_WINKLER);
+    }
+
+
+    private Table createResultTable() {
+        return Table.create("Result").addColumns(
+                IntColumn.create("Row"),
+                StringColumn.create("Case"),
+                StringColumn.create("Activity"),
+                StringColumn.create("Timestamp"),
+                IntColumn.create("First Row"),
+                StringColumn.create("First Activity")
+        );
+    }
+
+
+    @Override
+    public Options getOptions() {
+        Options options = super.getOptions();
+        if (!options.containsKey("Window (ms)")) {
+            options.addDefault("Window (ms)", 1000);
+            options.addDefault("Similarity", EXACT);
+            options.addDefault("Similarity Threshold", 0.8);
+        }
+        return options;
+    }
+
+
+    /**
+     * Decides whether two activities are similar, by code. Levenshtein similarity is
+     * the edit distance scaled by the longer label's length, 1 - d / max(n1, n2), so
+     * that one threshold serves both measures.
+     */
+    private static class Similarity {
+        private final String measure;
+        private final double threshold;
+        private final SimilarityKernel kernel;
+        private final char[][] chars;
+        private final long[] table;              // bit a * n + b set if a, b similar
+
+        Similarity(LabelDictionary activities, String measure, double threshold) {
+            this.measure = measure;
+            this.threshold = threshold;
+            int n = activities.size();
+            if (EXACT.equals(measure)) {
+                kernel = null;
+                chars = null;
+                table = null;
+                return;
+            }
+            kernel = SimilarityKernels.getDefault();
+            chars = new char[n][];
+            for (int i = 0; i < n; i++) {
+                chars[i] = activities.getLabel(i).toCharArray();
+            }
+            if (n > MAX_TABLE_SIZE) {
+                table = null;
+                return;
+            }
+            table = new long[(int) (((long) n * n + 63) >>> 6)];
+            for (int a = 0; a < n; a++) {
+                for (int b = a + 1; b < n; b++) {
+                    if (compare(a, b)) {
+                        set(a * n + b);
+                        set(b * n + a);
+                    }
+                }
+            }
+        }
+
+        boolean test(int a, int b) {
+            if (a == b) return true;
+            if (kernel == null) return false;
+            if (table == null) return compare(a, b);
+            int bit = a * chars.length + b;
+            return (table[bit >>> 6] & (1L << bit)) != 0;
+        }
+
+        private boolean compare(int a, int b) {
+            if (JARO_WINKLER.equals(measure)) {
+                return kernel.jaroWinkler(chars[a], chars[b]) >= threshold;
+            }
+            int length = Math.max(chars[a].length, chars[b].length);
+            int maxDistance = (int) Math.floor((1 - threshold) * length + EPSILON);
+            return maxDistance >= 0 && kernel.distance(chars[a], chars[b], maxDistance) >= 0;
+        }
+
+        private void set(int bit) {
+            table[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+
+    /**
+     * A ring buffer of the events in the current window, oldest first, which grows
+     * to the largest window seen and is then reused for each later case
+     */
+    private static class Window {
+        private long[] times = new long[16];
+        private int[] activities = new int[16];
+        private int[] firsts = new int[16];     // the first row of each event's cluster
+        private int head;                       // the position of the oldest event
+        private int size;
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+
+        int size() { return size; }
+
+        // the activity of the i'th oldest event
+        int activity(int i) { return activities[(head + i) & (times.length - 1)]; }
+
+        int first(int i) { return firsts[(head + i) & (times.length - 1)]; }
+
+        // drops the events timestamped before a time
+        void evictBefore(long time) {
+            while (size > 0 && times[head] < time) {
+                head = (head + 1) & (times.length - 1);
+                size--;
+            }
+        }
+
+        void add(long time, int activity, int first) {
+            if (size == times.length) grow();
+            int i = (head + size) & (times.length - 1);
+            times[i] = time;
+            activities[i] = activity;
+            firsts[i] = first;
+            size++;
+        }
+
+        // doubles the capacity, moving the events to the start in order
+        private void grow() {
+            times = unroll(times);
+            activities = unroll(activities);
+            firsts = unroll(firsts);
+            head = 0;
+        }
+
+        private long[] unroll(long[] values) {
+            long[] copy = Arrays.copyOf(values, values.length * 2);
+            System.arraycopy(values, 0, copy, values.length - head, head);
+            System.arraycopy(values, head, copy, 0, values.length - head);
+            return copy;
+        }
+
+        private int[] unroll(int[] values) {
+            int[] copy = Arrays.copyOf(values, values.length * 2);
+            System.arraycopy(values, 0, copy, values.length - head, head);
+            System.arraycopy(values, head, copy, 0, values.length - head);
+            return copy;
+        }
+    }
+
+
+    /**
+     * The collateral events found in a partition of cases, with the first event of
+     * each one's cluster
+     */
+    private static class Findings {
+        final IntList rows = new IntList();
+        final IntList caseCodes = new IntList();
+        final IntList firstRows = new IntList();
+        long affectedCases;
+
+        void add(int row, int caseCode, int firstRow) {
+            rows.add(row);
+            caseCodes.add(caseCode);
+            firstRows.add(firstRow);
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import java.util.Arrays;
+
+/**
+ * The distinct labels of a column and their normalized forms, which are the labels
+ * compared, together with the code pairs of the forms found similar. Where labels
+ * are not normalized, the forms are the labels themselves. The characters of the
+ * forms, and any index the plugin built over them, are also kept, so that a
+ * detection in appended rows need only add the new forms to them.
+ */
+class ColumnLabels {
+
+    final LabelDictionary labels = new LabelDictionary();
+    final LabelDictionary forms;
+    private int[] formOf = new int[0];              // the form code of each label code
+    long[] hits = new long[0];
+    final LongHashSet caseLabels = new LongHashSet();    // (case code, label code)
+    private char[][] formChars = new char[0][];
+    Object index;                                   // null until a detection builds one
+
+    ColumnLabels(boolean normalizing) {
+        forms = normalizing ? new LabelDictionary() : labels;
+    }
+
+    boolean isNormalizing() { return forms != labels; }
+
+    // adds an occurrence of a label, returning its code
+    int add(String label, LabelNormalizer normalizer) {
+        int code = labels.add(label);
+        if (code < 0 || !isNormalizing()) return code;
+        if (code == labels.size() - 1 && labels.getCount(code) == 1) {    // a new label
+            if (code == formOf.length) {
+                formOf = Arrays.copyOf(formOf, Math.max(16, code * 2));
+            }
+            formOf[code] = forms.add(normalizer.normalize(label));
+        }
+        else {
+            forms.add(forms.getLabel(formOf[code]));
+        }
+        return code;
+    }
+
+    int getForm(int code) { return isNormalizing() ? formOf[code] : code; }
+
+    // the characters of each form, by code, adding those of any new forms
+    char[][] getFormChars() {
+        int known = formChars.length;
+        if (known < forms.size()) {
+            formChars = Arrays.copyOf(formChars, forms.size());
+            for (int code = known; code < formChars.length; code++) {
+                formChars[code] = forms.getLabel(code).toCharArray();
+            }
+        }
+        return formChars;
+    }
+
+    // the number of non-null values added
+    long getRowCount() {
+        long count = 0;
+        for (int code = 0; code < labels.size(); code++) {
+            count += labels.getCount(code);
+        }
+        return count;
+    }
+
+    // the number of label codes having each form
+    int[] getMemberCounts() {
+        int[] counts = new int[forms.size()];
+        for (int code = 0; code < labels.size(); code++) {
+            counts[getForm(code)]++;
+        }
+        return counts;
+    }
+
+    // the label codes having each form
+    int[][] getMembers() {
+        int[] sizes = getMemberCounts();
+        int[][] members = new int[forms.size()][];
+        for (int form = 0; form < members.length; form++) {
+            members[form] = new int[sizes[form]];
+            sizes[form] = 0;
+        }
+        for (int code = 0; code < labels.size(); code++) {
+            int form = formOf[code];
+            members[form][sizes[form]++] = code;
+        }
+        return members;
+    }
+
+}
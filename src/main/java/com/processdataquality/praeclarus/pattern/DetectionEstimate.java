@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+/**
+ * An estimate of the number of rows affected by an imperfection pattern, extrapolated
+ * from a sample of rows, together with a 95% confidence interval.
+ */
+public class DetectionEstimate {
+
+    // The z-value of a two-sided 95% confidence interval
+    private static final double Z = 1.96;
+
+    private final int rowCount;
+    private final int sampleSize;
+    private final double affected;
+    private final double lower;
+    private final double upper;
+
+
+    public DetectionEstimate(int rowCount, int sampleSize, double affected,
+                             double lower, double upper) {
+        this.rowCount = rowCount;
+        this.sampleSize = sampleSize;
+        this.affected = affected;
+        this.lower = lower;
+        this.upper = upper;
+    }
+
+
+    /**
+     * Estimates the affected rows of a population from the number found affected in
+     * a uniform sample, using the Wilson score interval for the proportion
+     * @param rowCount the number of rows sampled from
+     * @param sampleSize the number of rows in the sample
+     * @param sampleAffected the number of sampled rows found to be affected
+     * @return the estimate
+     */
+    public static DetectionEstimate fromSample(int rowCount, int sampleSize, int sampleAffected) {
+        if (sampleSize == 0) {
+            return new DetectionEstimate(rowCount, 0, 0, 0, rowCount);
+        }
+        double n = sampleSize;
+        double p = sampleAffected / n;
+        double denominator = 1 + Z * Z / n;
+        double centre = (p + Z * Z / (2 * n)) / denominator;
+        double halfWidth = Z * Math.sqrt(p * (1 - p) / n + Z * Z / (4 * n * n)) / denominator;
+        return new DetectionEstimate(rowCount, sampleSize, p * rowCount,
+                Math.max(0, centre - halfWidth) * rowCount,
+                Math.min(1, centre + halfWidth) * rowCount);
+    }
+
+
+    /**
+     * Combines this estimate with one for another column
+     * @param other the estimate to add
+     * @return an estimate of the total affected rows of both, with an interval
+     * spanning the sum of their bounds
+     */
+    public DetectionEstimate add(DetectionEstimate other) {
+        return new DetectionEstimate(rowCount + other.rowCount, sampleSize + other.sampleSize,
+                affected + other.affected, lower + other.lower, upper + other.upper);
+    }
+
+
+    public int getRowCount() { return rowCount; }
+
+    public int getSampleSize() { return sampleSize; }
+
+    public double getAffected() { return affected; }
+
+    public double getLower() { return lower; }
+
+    public double getUpper() { return upper; }
+
+
+    /**
+     * @return the estimated fraction of rows affected
+     */
+    public double getFraction() {
+        return rowCount > 0 ? affected / rowCount : 0;
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format("%d (95%% CI %d-%d) of %d, from %d sampled rows",
+                Math.round(affected), (long) Math.floor(lower), (long) Math.ceil(upper),
+                rowCount, sampleSize);
+    }
+
+}
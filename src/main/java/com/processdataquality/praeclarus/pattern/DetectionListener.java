@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import tech.tablesaw.api.Table;
+
+/**
+ * Receives the results of a pattern detection as they are found, rather than only
+ * when the detection completes. Taken together, the batches of rows passed to
+ * {@link #resultsFound} hold the rows of the table the detection finally returns,
+ * in the same order.
+ */
+public interface DetectionListener {
+
+    // A listener that ignores everything it receives
+    DetectionListener NONE = new DetectionListener() { };
+
+
+    /**
+     * Called with each batch of result rows, in the layout of the table the detection
+     * returns
+     * @param batch a table holding the newly found rows
+     */
+    default void resultsFound(Table batch) { }
+
+
+    /**
+     * Called as the detection progresses
+     * @param fraction the fraction of the work done so far, from 0 to 1
+     */
+    default void progressChanged(double fraction) { }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+/**
+ * Counts describing how much of an event log is affected by an imperfection pattern,
+ * as found by a detection. Counts that a pattern cannot determine are -1.
+ */
+public class DetectionMetrics {
+
+    private final long affectedEvents;
+    private final long totalEvents;
+    private final long affectedCases;
+    private final long totalCases;
+
+
+    public DetectionMetrics(long affectedEvents, long totalEvents,
+                            long affectedCases, long totalCases) {
+        this.affectedEvents = affectedEvents;
+        this.totalEvents = totalEvents;
+        this.affectedCases = affectedCases;
+        this.totalCases = totalCases;
+    }
+
+
+    /**
+     * @return the number of events (rows) found to be affected
+     */
+    public long getAffectedEvents() { return affectedEvents; }
+
+    /**
+     * @return the number of events (rows) checked, or -1 if unknown
+     */
+    public long getTotalEvents() { return totalEvents; }
+
+    /**
+     * @return the number of cases with at least one affected event, or -1 if unknown
+     */
+    public long getAffectedCases() { return affectedCases; }
+
+    /**
+     * @return the number of cases checked, or -1 if unknown
+     */
+    public long getTotalCases() { return totalCases; }
+
+
+    /**
+     * @return true if the affected and total numbers of cases are known
+     */
+    public boolean hasCases() { return affectedCases >= 0 && totalCases >= 0; }
+
+
+    @Override
+    public String toString() {
+        String s = affectedEvents + " of " + totalEvents + " events";
+        return hasCases() ? s + ", " + affectedCases + " of " + totalCases + " cases" : s;
+    }
+
+}
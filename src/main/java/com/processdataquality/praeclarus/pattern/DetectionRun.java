@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.List;
+
+/**
+ * The state of one detection by a distorted label plugin, passed to each step of the
+ * detection in turn, so that a plugin holds no state of a detection in progress and
+ * may run several at once. It holds what stays the same for the whole detection,
+ * such as the listener and the similarity cache, and the labels, statistics and
+ * results of the column being checked.
+ */
+public class DetectionRun {
+
+    // Receives results and progress as the detection proceeds, and the share of the
+    // overall progress that the column being checked accounts for
+    private final DetectionListener listener;
+    private double progressBase;
+    private double progressScale = 1.0;
+
+    // Says when to stop the detection early, and whether it was
+    private final CancellationToken cancellation;
+    private volatile boolean partial;
+
+    // Scores kept from earlier runs, or null if the 'Cache File' option is empty
+    private final SimilarityCache cache;
+
+    // The column being checked, its distinct (normalized) labels, and their characters
+    private StringColumn column;
+    private ColumnLabels state;
+    private LabelDictionary labels;
+    private char[][] labelChars = new char[0][];
+
+    // The lowest code of a label not seen before the detection. Pairs of labels with
+    // lower codes were compared by an earlier detection.
+    private int firstNewCode;
+
+    // A structure built by the plugin before comparing the column's labels, used to
+    // find or filter the pairs to compare, and kept with the labels afterwards
+    private Object index;
+
+    // Counters describing the work done on the column being checked
+    private final DetectionStatistics statistics = new DetectionStatistics();
+
+    // The results found in the column being checked
+    private Table result = createResultTable();
+
+    // Receives the results found by the block of comparisons running on the current
+    // thread, when comparisons are run in blocks
+    private final ThreadLocal<List<String>> blockResults = new ThreadLocal<>();
+
+
+    /**
+     * @param listener receives batches of results, and the progress of the detection
+     * @param cancellation says when to stop the detection early
+     * @param cache the similarity cache to use, or null for none
+     */
+    public DetectionRun(DetectionListener listener, CancellationToken cancellation,
+                        SimilarityCache cache) {
+        this.listener = listener;
+        this.cancellation = cancellation;
+        this.cache = cache;
+    }
+
+
+    // starts checking a column, given its distinct labels and any index kept from
+    // an earlier detection of them
+    void startColumn(StringColumn column, ColumnLabels state, int firstNewCode) {
+        this.column = column;
+        this.state = state;
+        labels = state.forms;
+        this.firstNewCode = firstNewCode;
+        labelChars = state.getFormChars();
+        index = state.index;
+        statistics.clear();
+        result = createResultTable();
+    }
+
+
+    // keeps the index with the column's labels, for a later detection in appended
+    // rows, once the column's labels have all been compared
+    void endComparisons() {
+        state.index = index;
+        labelChars = new char[0][];
+        index = null;
+    }
+
+
+    /**
+     * @return the column being checked
+     */
+    public StringColumn getColumn() { return column; }
+
+
+    /**
+     * @return the distinct labels being compared
+     */
+    public LabelDictionary getLabels() { return labels; }
+
+
+    /**
+     * @param code the code of a distinct label being compared
+     * @return the characters of the label, which must not be changed
+     */
+    public char[] getChars(int code) { return labelChars[code]; }
+
+
+    /**
+     * @return the characters of each distinct label being compared, indexed by code.
+     * Neither the array nor its members may be changed.
+     */
+    public char[][] getLabelChars() { return labelChars; }
+
+
+    /**
+     * Gets the lowest code of the labels that are new to this detection. Each
+     * distinct label with a lower code was compared with all others of lower codes by
+     * an earlier detection, so only pairs where the higher code is at least this need
+     * be compared. Always 0, except when detecting in appended rows.
+     * @return the lowest code of a new label
+     */
+    public int getFirstNewCode() { return firstNewCode; }
+
+
+    /**
+     * @return the similarity cache for this detection, or null if the 'Cache File'
+     * option is empty
+     */
+    public SimilarityCache getCache() { return cache; }
+
+
+    /**
+     * @return the counters describing the work done on the column being checked
+     */
+    public DetectionStatistics getStatistics() { return statistics; }
+
+
+    /**
+     * Keeps a structure built from the column's labels, such as a label index. It is
+     * kept with the labels after the detection, and is returned by {@link #getIndex}
+     * when a later detection in appended rows starts, so that only the new labels
+     * (those from {@link #getFirstNewCode}) need be added to it.
+     * @param index the structure
+     */
+    public void setIndex(Object index) { this.index = index; }
+
+
+    /**
+     * @param type the type of structure wanted
+     * @return the structure kept by {@link #setIndex} during this detection, or by
+     * the previous detection of the column's labels, or null if there is none of
+     * that type
+     */
+    public <T> T getIndex(Class<T> type) {
+        return type.isInstance(index) ? type.cast(index) : null;
+    }
+
+
+    /**
+     * Comparison loops should call this regularly, and stop comparing as soon as it
+     * returns true
+     * @return true if this detection has been cancelled or has run out of time
+     */
+    public boolean isStopping() {
+        if (cancellation.isStopRequested()) {
+            partial = true;
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * @return true if this detection was cut short, so that its results are incomplete
+     */
+    public boolean isPartial() { return partial; }
+
+
+    /**
+     * Adds a pair of similar labels to the results, along with the frequency of each.
+     * Where the comparisons are run in blocks, the pair is held until its block's
+     * results are merged.
+     * @param s1 the label
+     * @param s2 the distorted label
+     */
+    public void addResult(String s1, String s2) {
+        List<String> found = blockResults.get();
+        if (found != null) {                      // defer until the blocks are merged
+            found.add(s1);
+            found.add(s2);
+        }
+        else {
+            appendResult(s1, s2);
+        }
+    }
+
+
+    // collects the results added on this thread in a list, until endBlock is called
+    void startBlock(List<String> found) { blockResults.set(found); }
+
+    void endBlock() { blockResults.remove(); }
+
+
+    void appendResult(String s1, String s2) {
+        result.stringColumn(0).append(s1);
+        result.intColumn(1).append(labels.getCount(s1));
+        result.stringColumn(2).append(s2);
+        result.intColumn(3).append(labels.getCount(s2));
+        result.stringColumn(4).append(column.name());
+    }
+
+
+    Table getResult() { return result; }
+
+    void setResult(Table result) { this.result = result; }
+
+    // replaces the labels the results refer to, such as the original labels of the
+    // normalized forms compared
+    void setLabels(LabelDictionary labels) { this.labels = labels; }
+
+
+    // a new table holding rows [from, to) of the result table
+    Table copyRows(int from, int to) {
+        Table rows = createResultTable();
+        for (int i = from; i < to; i++) {
+            rows.stringColumn(0).append(result.stringColumn(0).get(i));
+            rows.intColumn(1).append(result.intColumn(1).getInt(i));
+            rows.stringColumn(2).append(result.stringColumn(2).get(i));
+            rows.intColumn(3).append(result.intColumn(3).getInt(i));
+            rows.stringColumn(4).append(result.stringColumn(4).get(i));
+        }
+        return rows;
+    }
+
+
+    DetectionListener getListener() { return listener; }
+
+    // sets the share of the overall progress that the column being checked accounts for
+    void setProgressRange(double base, double scale) {
+        progressBase = base;
+        progressScale = scale;
+    }
+
+    // reports the fraction of the column's comparisons done
+    void reportProgress(double fraction) {
+        listener.progressChanged(progressBase + progressScale * fraction);
+    }
+
+
+    /**
+     * Creates the table that will receive the imperfect values detected
+     * @return the empty table
+     */
+    static Table createResultTable() {
+        return Table.create("Result").addColumns(
+                StringColumn.create("Label1"),
+                IntColumn.create("Count1"),
+                StringColumn.create("Label2"),
+                IntColumn.create("Count2"),
+                StringColumn.create("Column")
+        );
+    }
+
+}
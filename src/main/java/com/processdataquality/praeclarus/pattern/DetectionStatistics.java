@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A set of named counters collected while a pattern detection runs, for example
+ * the number of comparisons made or avoided. Counters are reported in the order
+ * they were first touched. Counters may be updated from several threads.
+ */
+public class DetectionStatistics {
+
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+
+
+    public DetectionStatistics() { }
+
+
+    public synchronized void increment(String key) { add(key, 1); }
+
+
+    public synchronized void add(String key, long value) {
+        counters.merge(key, value, Long::sum);
+    }
+
+
+    public synchronized void set(String key, long value) {
+        counters.put(key, value);
+    }
+
+
+    /**
+     * @param key the name of a counter
+     * @return the counter's value, or 0 if it has not been touched
+     */
+    public synchronized long get(String key) {
+        Long value = counters.get(key);
+        return value != null ? value : 0;
+    }
+
+
+    /**
+     * @return a copy of all the counters
+     */
+    public synchronized Map<String, Long> getAll() {
+        return new LinkedHashMap<>(counters);
+    }
+
+
+    public synchronized void clear() { counters.clear(); }
+
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            sb.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+}
@@ -19,10 +19,11 @@ package com.processdataquality.praeclarus.pattern;
 import com.processdataquality.praeclarus.annotations.Pattern;
 import com.processdataquality.praeclarus.annotations.Plugin;
 import com.processdataquality.praeclarus.plugin.Options;
-import org.apache.commons.text.similarity.JaroWinklerDistance;
 import tech.tablesaw.api.StringColumn;
 import tech.tablesaw.api.Table;
 
+import java.util.Arrays;
+
 /**
  * @author Michael Adams
  * @date 11/5/21
@@ -36,7 +37,8 @@ import tech.tablesaw.api.Table;
 @Pattern(group = PatternGroup.DISTORTED_LABEL)
 public class DistortedLabelJaroWinkler extends AbstractDistortedLabel {
 
-    private final JaroWinklerDistance jaroWinkler = new JaroWinklerDistance();
+    // Allows for rounding differences between a bound and the full calculation
+    private static final double EPSILON = 1e-9;
 
     public DistortedLabelJaroWinkler() { }
 
@@ -44,13 +46,177 @@ public class DistortedLabelJaroWinkler extends AbstractDistortedLabel {
     @Override
     protected void detect(StringColumn column, String s1, String s2) {
         double threshold = getOptions().get("Threshold").asDouble();
-        double distance = jaroWinkler.apply(s1, s2);
+        double distance = getKernel().jaroWinkler(s1.toCharArray(), s2.toCharArray());
         if (distance > threshold && distance < 1.0) {
             addResult(column, s1, s2);
         }
     }
 
 
+    @Override
+    protected void detect(DetectionRun run, int code1, int code2) {
+        double threshold = getOptions().get("Threshold").asDouble();
+        LabelDictionary labels = run.getLabels();
+        String s1 = labels.getLabel(code1);
+        String s2 = labels.getLabel(code2);
+        double distance = score(run, s1, run.getChars(code1), s2, run.getChars(code2));
+        if (distance > threshold && distance < 1.0) {
+            run.addResult(s1, s2);
+        }
+    }
+
+
+    // the Jaro-Winkler similarity of two labels, from the similarity cache if it has it
+    private double score(DetectionRun run, String s1, char[] c1, String s2, char[] c2) {
+        SimilarityCache cache = run.getCache();
+        if (cache == null) {
+            return getKernel().jaroWinkler(c1, c2);
+        }
+        SimilarityCache.Entry entry = cache.get(getCacheKey(), s1, s2);
+        if (entry != null && entry.isExact()) {
+            return entry.getValue();
+        }
+        double score = getKernel().jaroWinkler(c1, c2);
+        cache.put(getCacheKey(), s1, s2, score);
+        return score;
+    }
+
+
+    /**
+     * Compares each pair of distinct labels, but first rejects those pairs whose
+     * Jaro-Winkler score cannot exceed the threshold. The Jaro score is at most
+     * (m/|s1| + m/|s2| + 1) / 3, where the number of matching characters m can be
+     * no more than the length of the shorter label, nor more than the number of
+     * characters the labels have in common. The Winkler adjustment only increases
+     * with the Jaro score, so applying it to the bound still gives an upper bound.
+     */
+    @Override
+    protected void detectPairs(DetectionRun run, int from, int to) {
+        if (usesCandidateIndex(run)) {
+            super.detectPairs(run, from, to);                  // candidates from the index
+            return;
+        }
+        double threshold = getOptions().get("Threshold").asDouble();
+        LabelDictionary labels = run.getLabels();
+        char[][] histograms = run.getIndex(char[][].class);
+        int n = labels.size();
+        long prunedByLength = 0;
+        long prunedByCharacters = 0;
+        long scored = 0;
+        for (int i = from; i < to && !run.isStopping(); i++) {
+            String s1 = labels.getLabel(i);
+            for (int j = Math.max(i+1, run.getFirstNewCode()); j < n; j++) {
+                String s2 = labels.getLabel(j);
+                int prefix = commonPrefix(s1, s2);
+                int maxMatches = Math.min(s1.length(), s2.length());
+                if (upperBound(s1, s2, maxMatches, prefix) + EPSILON <= threshold) {
+                    prunedByLength++;
+                    continue;
+                }
+                maxMatches = commonCharacters(histograms[i], histograms[j]);
+                if (upperBound(s1, s2, maxMatches, prefix) + EPSILON <= threshold) {
+                    prunedByCharacters++;
+                    continue;
+                }
+                scored++;
+                detect(run, i, j);
+            }
+        }
+
+        DetectionStatistics statistics = run.getStatistics();
+        statistics.add("Pairs pruned by length", prunedByLength);
+        statistics.add("Pairs pruned by shared characters", prunedByCharacters);
+        statistics.add("Pairs scored", scored);
+    }
+
+
+    /**
+     * Without a candidate index, keeps each distinct label's characters in sorted
+     * order, a compact character histogram. When detecting in appended rows, only
+     * the histograms of the new labels are added to those kept.
+     */
+    @Override
+    protected void prepare(DetectionRun run) {
+        char[][] kept = run.getIndex(char[][].class);
+        super.prepare(run);
+        if (usesCandidateIndex(run)) return;
+        int n = run.getLabels().size();
+        int first = kept != null ? kept.length : 0;
+        char[][] histograms = kept != null ? Arrays.copyOf(kept, n) : new char[n][];
+        for (int i = first; i < n; i++) {
+            histograms[i] = run.getChars(i).clone();
+            Arrays.sort(histograms[i]);
+        }
+        run.setIndex(histograms);
+    }
+
+
+    /**
+     * Indexes single characters, so that the number of q-grams two labels share is
+     * the number of characters they have in common, an upper bound on the number of
+     * matching characters m
+     */
+    @Override
+    protected int getGramSize() { return 1; }
+
+
+    /**
+     * The Winkler adjustment is only made when the Jaro score is at least 0.7, so a
+     * pair can only score above threshold t if its Jaro score is at least min(t, 0.7).
+     * Since the Jaro score is at most (m/n1 + m/n2 + 1) / 3, this needs
+     * m >= (3 min(t, 0.7) - 1) n1 n2 / (n1 + n2).
+     */
+    @Override
+    protected int getMinSharedGrams(int length1, int length2) {
+        if (length1 == 0 || length2 == 0) return 0;
+        double threshold = Math.min(getOptions().get("Threshold").asDouble(), 0.7);
+        double minMatches = (3 * threshold - 1) * length1 * length2 / (length1 + length2);
+        return (int) Math.ceil(minMatches - EPSILON);
+    }
+
+
+    @Override
+    protected boolean isParallelisable() { return true; }
+
+
+    // the highest Jaro-Winkler score possible given at most 'matches' matching chars
+    private double upperBound(String s1, String s2, int matches, int prefix) {
+        if (matches == 0) return 0;
+        double m = matches;
+        double jaro = (m / s1.length() + m / s2.length() + 1) / 3;
+        int maxLength = Math.max(s1.length(), s2.length());
+        return jaro + Math.min(0.1, 1D / maxLength) * prefix * (1D - jaro);
+    }
+
+
+    private int commonPrefix(String s1, String s2) {
+        int limit = Math.min(s1.length(), s2.length());
+        int i = 0;
+        while (i < limit && s1.charAt(i) == s2.charAt(i)) i++;
+        return i;
+    }
+
+
+    // the size of the intersection of two sorted character multisets
+    private int commonCharacters(char[] c1, char[] c2) {
+        int i = 0, j = 0, common = 0;
+        while (i < c1.length && j < c2.length) {
+            if (c1[i] == c2[j]) {
+                common++;
+                i++;
+                j++;
+            }
+            else if (c1[i] < c2[j]) {
+                i++;
+            }
+            else {
+                j++;
+            }
+        }
+        return common;
+    }
+
+
     @Override
     public Options getOptions() {
         Options options = super.getOptions();
@@ -76,6 +242,7 @@ public class DistortedLabelJaroWinkler extends AbstractDistortedLabel {
         jw.setOptions(options);
         Table result = jw.detect(master);
         System.out.println(result.toString());
+        System.out.println(jw.getStatistics());
 
         Table changes = Table.create("Repair").addColumns(
                 StringColumn.create("Replace"),StringColumn.create("Replacement")
@@ -89,13 +256,4 @@ public class DistortedLabelJaroWinkler extends AbstractDistortedLabel {
 
     }
 
-    @Override
-    public int imperfektionDetected() {
-        return 20; //TODO just a dummy
-    }
-
-    @Override
-    public double criticalDetections() {
-        return 0.1; //TODO just a dummy
-    }
 }
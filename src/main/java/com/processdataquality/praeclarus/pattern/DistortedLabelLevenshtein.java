@@ -19,10 +19,15 @@ package com.processdataquality.praeclarus.pattern;
 import com.processdataquality.praeclarus.annotations.Pattern;
 import com.processdataquality.praeclarus.annotations.Plugin;
 import com.processdataquality.praeclarus.plugin.Options;
-import org.apache.commons.text.similarity.LevenshteinDistance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import tech.tablesaw.api.StringColumn;
 import tech.tablesaw.api.Table;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntBinaryOperator;
+
 /**
  * @author Michael Adams
  * @date 11/5/21
@@ -36,8 +41,13 @@ import tech.tablesaw.api.Table;
 @Pattern(group = PatternGroup.DISTORTED_LABEL)
 public class DistortedLabelLevenshtein extends AbstractDistortedLabel {
 
-    private final LevenshteinDistance levenshtein =
-            new LevenshteinDistance(getOptions().get("Threshold").asInt());
+    private static final Logger LOG = LoggerFactory.getLogger(DistortedLabelLevenshtein.class);
+
+    // The ways of indexing labels to find candidate pairs, as well as a q-gram index
+    private static final String BK_TREE = "BK-tree";
+    private static final String SYMMETRIC_DELETE = "Symmetric Delete";
+
+    private static final int GRAM_SIZE = 2;
 
     public DistortedLabelLevenshtein() { }
 
@@ -45,12 +55,274 @@ public class DistortedLabelLevenshtein extends AbstractDistortedLabel {
     @Override
     protected void detect(StringColumn column, String s1, String s2) {
         int threshold = getOptions().get("Threshold").asInt();
-        int distance = levenshtein.apply(s1, s2);
-        if (distance > 0 && distance <= threshold) {
+        int distance = getKernel().distance(s1.toCharArray(), s2.toCharArray(), threshold);
+        if (distance > 0) {
             addResult(column, s1, s2);
         }
     }
 
+
+    @Override
+    protected void detect(DetectionRun run, int code1, int code2) {
+        int threshold = getOptions().get("Threshold").asInt();
+        LabelDictionary labels = run.getLabels();
+        String s1 = labels.getLabel(code1);
+        String s2 = labels.getLabel(code2);
+        int distance = distance(run, s1, run.getChars(code1), s2, run.getChars(code2), threshold);
+        if (distance > 0 && distance <= threshold) {
+            run.addResult(s1, s2);
+        }
+    }
+
+
+    /**
+     * Gets the edit distance between two labels, from the similarity cache if it holds
+     * the distance or a bound showing the distance is over the threshold
+     * @param run the detection, holding the cache
+     * @param c1 the characters of s1
+     * @param c2 the characters of s2
+     * @param threshold the largest distance of interest, or -1 for the exact distance
+     * @return the distance, or -1 if it is larger than the threshold
+     */
+    private int distance(DetectionRun run, String s1, char[] c1, String s2, char[] c2,
+                         int threshold) {
+        SimilarityKernel kernel = getKernel();
+        SimilarityCache cache = run.getCache();
+        if (cache == null) {
+            return kernel.distance(c1, c2, threshold < 0 ? Integer.MAX_VALUE : threshold);
+        }
+        if (s1.compareTo(s2) > 0) {                 // the distance is symmetric
+            String s = s1;
+            s1 = s2;
+            s2 = s;
+        }
+        SimilarityCache.Entry entry = cache.get(getCacheKey(), s1, s2);
+        if (entry != null) {
+            if (entry.isExact()) {
+                int distance = (int) entry.getValue();
+                return threshold < 0 || distance <= threshold ? distance : -1;
+            }
+            if (threshold >= 0 && entry.getValue() > threshold) {
+                return -1;
+            }
+        }
+        if (threshold < 0) {
+            int distance = kernel.distance(c1, c2, Integer.MAX_VALUE);
+            cache.put(getCacheKey(), s1, s2, distance);
+            return distance;
+        }
+        int distance = kernel.distance(c1, c2, threshold);
+        if (distance < 0) {
+            cache.putLowerBound(getCacheKey(), s1, s2, threshold + 1);
+        }
+        else {
+            cache.put(getCacheKey(), s1, s2, distance);
+        }
+        return distance;
+    }
+
+
+    /**
+     * Reports the work done by the label index
+     */
+    @Override
+    protected void finish(DetectionRun run) {
+        DetectionStatistics statistics = run.getStatistics();
+        BKTree tree = run.getIndex(BKTree.class);
+        SymmetricDeleteIndex deleteIndex = run.getIndex(SymmetricDeleteIndex.class);
+        if (tree != null) {
+            statistics.set("BK-tree nodes", tree.size());
+            statistics.set("BK-tree build comparisons", tree.getBuildComparisons());
+            statistics.set("BK-tree queries", tree.getQueries());
+            statistics.set("BK-tree query comparisons", tree.getQueryComparisons());
+        }
+        if (deleteIndex != null) {
+            statistics.set("Symmetric delete variants", deleteIndex.getVariantCount());
+            statistics.set("Symmetric delete keys", deleteIndex.getKeyCount());
+            statistics.set("Symmetric delete memory (bytes)", deleteIndex.getMemoryEstimate());
+        }
+    }
+
+
+    /**
+     * Indexes the distinct labels, so that each label need only be compared with
+     * those in its neighbourhood rather than with every other label. A BK-tree is
+     * used by default; a symmetric delete index is usually faster for thresholds of
+     * 1 or 2, at the cost of more memory. For larger thresholds its deletion variants
+     * may not fit in memory, so a BK-tree is used instead. When detecting in appended
+     * rows, only the new labels are added to the index kept from the previous
+     * detection.
+     */
+    @Override
+    protected void prepare(DetectionRun run) {
+        String index = getIndex();
+        LabelDictionary labels = run.getLabels();
+        int threshold = getOptions().get("Threshold").asInt();
+        if (SYMMETRIC_DELETE.equalsIgnoreCase(index)
+                && threshold > SymmetricDeleteIndex.MAX_DELETES) {
+            LOG.warn("A threshold of {} is too large for a symmetric delete index, " +
+                    "using a BK-tree instead", threshold);
+            run.getStatistics().set("Symmetric delete replaced by BK-tree", 1);
+            index = BK_TREE;
+        }
+        if (SYMMETRIC_DELETE.equalsIgnoreCase(index)) {
+            SymmetricDeleteIndex deleteIndex = run.getIndex(SymmetricDeleteIndex.class);
+            int first = run.getFirstNewCode();
+            if (deleteIndex == null || deleteIndex.getMaxDeletes() != threshold) {
+                deleteIndex = new SymmetricDeleteIndex(threshold);
+                first = 0;
+            }
+            for (int i = first; i < labels.size() && !run.isStopping(); i++) {
+                deleteIndex.add(labels.getLabel(i), i);
+            }
+            run.setIndex(deleteIndex);
+        }
+        else if (BK_TREE.equalsIgnoreCase(index)) {
+            IntBinaryOperator metric = (code1, code2) -> distance(run, labels.getLabel(code1),
+                    run.getChars(code1), labels.getLabel(code2), run.getChars(code2), -1);
+            BKTree tree = run.getIndex(BKTree.class);
+            int first = run.getFirstNewCode();
+            if (tree != null) {
+                tree.setMetric(metric);
+                tree.resetCounts();
+            }
+            else {
+                tree = new BKTree(metric);
+                first = 0;
+            }
+            for (int i = first; i < labels.size() && !run.isStopping(); i++) {
+                tree.add(i);
+            }
+            run.setIndex(tree);
+        }
+        else {
+            super.prepare(run);
+        }
+    }
+
+
+    /**
+     * Finds similar pairs by querying the label index. Where only pairs including a
+     * new label are needed, only the new labels are queried, and a match with an earlier
+     * label is reported with the earlier label first. Without an index, each label is
+     * compared with all those after it in one batch.
+     */
+    @Override
+    protected void detectPairs(DetectionRun run, int from, int to) {
+        BKTree tree = run.getIndex(BKTree.class);
+        SymmetricDeleteIndex deleteIndex = run.getIndex(SymmetricDeleteIndex.class);
+        if (deleteIndex == null && tree == null) {
+            if (usesCandidateIndex(run) || run.getCache() != null) {
+                super.detectPairs(run, from, to);
+            }
+            else {
+                detectAllPairs(run, from, to);
+            }
+            return;
+        }
+        int threshold = getOptions().get("Threshold").asInt();
+        LabelDictionary labels = run.getLabels();
+        int firstNew = run.getFirstNewCode();
+        long candidateCount = 0;
+        for (int i = Math.max(from, firstNew); i < to && !run.isStopping(); i++) {
+            String s1 = labels.getLabel(i);
+            if (deleteIndex != null) {
+                for (int j : deleteIndex.candidates(s1)) {
+                    if (j < firstNew) {
+                        detect(run, j, i);                // confirm with exact distance
+                        candidateCount++;
+                    }
+                    else if (j > i) {
+                        detect(run, i, j);
+                        candidateCount++;
+                    }
+                }
+            }
+            else {
+                List<Integer> matches = tree.query(i, threshold);
+                Collections.sort(matches);                     // keep first-appearance order
+                for (int j : matches) {
+                    if (j < firstNew) {
+                        run.addResult(labels.getLabel(j), s1);
+                    }
+                    else if (j > i) {
+                        run.addResult(s1, labels.getLabel(j));
+                    }
+                }
+            }
+        }
+        if (deleteIndex != null) {
+            run.getStatistics().add("Symmetric delete candidates", candidateCount);
+        }
+    }
+
+
+    /**
+     * Gets the labels within the threshold distance of a label from the BK-tree, or
+     * those sharing a deletion variant with it from the symmetric delete index
+     */
+    @Override
+    protected int[] findCandidates(DetectionRun run, int code) {
+        BKTree tree = run.getIndex(BKTree.class);
+        if (tree != null) {
+            int threshold = getOptions().get("Threshold").asInt();
+            return tree.query(code, threshold).stream().mapToInt(Integer::intValue).toArray();
+        }
+        SymmetricDeleteIndex deleteIndex = run.getIndex(SymmetricDeleteIndex.class);
+        if (deleteIndex != null) {
+            return deleteIndex.candidates(run.getLabels().getLabel(code));
+        }
+        return super.findCandidates(run, code);
+    }
+
+
+    // compares each label with a code in [from, to) with every later label, passing
+    // the later labels' characters to the similarity backend together
+    private void detectAllPairs(DetectionRun run, int from, int to) {
+        int threshold = getOptions().get("Threshold").asInt();
+        SimilarityKernel kernel = getKernel();
+        LabelDictionary labels = run.getLabels();
+        char[][] chars = run.getLabelChars();
+        int n = labels.size();
+        int[] distances = new int[n];
+        long compared = 0;
+        for (int i = from; i < to && !run.isStopping(); i++) {
+            int first = Math.max(i+1, run.getFirstNewCode());
+            kernel.distances(chars[i], chars, first, n, threshold, distances);
+            for (int j = first; j < n; j++) {
+                if (distances[j] > 0) {
+                    run.addResult(labels.getLabel(i), labels.getLabel(j));
+                }
+            }
+            compared += Math.max(0, n - first);
+        }
+        run.getStatistics().add("Pairs compared", compared);
+    }
+
+
+    /**
+     * Each edit destroys at most q of the padded q-grams of a label, so two labels
+     * within the threshold distance k share at least max(n1, n2) + q - 1 - kq q-grams
+     */
+    @Override
+    protected int getMinSharedGrams(int length1, int length2) {
+        int threshold = getOptions().get("Threshold").asInt();
+        return Math.max(length1, length2) + GRAM_SIZE - 1 - threshold * GRAM_SIZE;
+    }
+
+
+    @Override
+    protected int getGramSize() { return GRAM_SIZE; }
+
+
+    @Override
+    protected String getDefaultIndex() { return BK_TREE; }
+
+
+    @Override
+    protected boolean isParallelisable() { return true; }
+
+
     @Override
     public Options getOptions() {
         Options options = super.getOptions();
@@ -77,6 +349,7 @@ public class DistortedLabelLevenshtein extends AbstractDistortedLabel {
         lev.setOptions(options);
         Table result = lev.detect(master);
         System.out.println(result.toString());
+        System.out.println(lev.getStatistics());
 
         Table changes = Table.create("Repair").addColumns(
                 StringColumn.create("Replace"),StringColumn.create("Replacement")
@@ -89,13 +362,4 @@ public class DistortedLabelLevenshtein extends AbstractDistortedLabel {
         System.out.println(newMaster.toString());
     }
 
-    @Override
-    public int imperfektionDetected() {
-        return 7; //TODO just a dummy
-    }
-
-    @Override
-    public double criticalDetections() {
-        return 0.1; //TODO just a dummy
-    }
 }
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import java.util.Arrays;
+
+/**
+ * Levenshtein (edit) distance between two strings, optionally bounded by a maximum
+ * distance beyond which the calculation gives up.
+ * <p>
+ * When the shorter string has no more than 64 characters the bit-parallel algorithm
+ * of Myers (as adapted by Hyyro for edit distance) is used, processing a whole column
+ * of the distance matrix per step. Longer strings fall back to a banded dynamic
+ * programming algorithm that only fills cells within the threshold of the diagonal.
+ * Working storage is kept per thread and reused, so no arrays are allocated per call
+ * by the {@code char[]} methods.
+ */
+public final class EditDistance {
+
+    private static final int WORD_SIZE = 64;
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private EditDistance() { }
+
+
+    /**
+     * @return the edit distance between two strings
+     */
+    public static int distance(CharSequence s1, CharSequence s2) {
+        return distance(s1, s2, Integer.MAX_VALUE);
+    }
+
+
+    /**
+     * Calculates the edit distance between two strings if it is no more than a
+     * threshold
+     * @param s1 a string
+     * @param s2 another string
+     * @param threshold the maximum distance of interest
+     * @return the distance, or -1 if it is greater than threshold
+     */
+    public static int distance(CharSequence s1, CharSequence s2, int threshold) {
+        return distance(s1.toString().toCharArray(), s2.toString().toCharArray(), threshold);
+    }
+
+
+    /**
+     * Calculates the edit distance between two character arrays if it is no more than
+     * a threshold
+     * @param s1 a string's characters
+     * @param s2 another string's characters
+     * @param threshold the maximum distance of interest
+     * @return the distance, or -1 if it is greater than threshold
+     */
+    public static int distance(char[] s1, char[] s2, int threshold) {
+        if (threshold < 0) return -1;
+        char[] shorter = s1.length <= s2.length ? s1 : s2;
+        char[] longer = shorter == s1 ? s2 : s1;
+        int m = shorter.length;
+        int n = longer.length;
+        if (n - m > threshold) return -1;          // can't be closer than the length difference
+        if (m == 0) return n;
+
+        Buffers buffers = BUFFERS.get();
+        return m <= WORD_SIZE ? myers(shorter, longer, threshold, buffers) :
+                banded(shorter, longer, threshold, buffers);
+    }
+
+
+    /**
+     * Calculates the edit distances between one string and each of a range of others,
+     * loading the bit-parallel form of the query only once for the whole range
+     * @param query the characters of the string to compare with the others
+     * @param candidates the characters of the other strings
+     * @param from the index of the first candidate to compare (inclusive)
+     * @param to the index of the last candidate to compare (exclusive)
+     * @param threshold the maximum distance of interest
+     * @param out receives the distance to each candidate j at out[j], or -1 where
+     *            it is greater than threshold
+     */
+    public static void distances(char[] query, char[][] candidates, int from, int to,
+                                 int threshold, int[] out) {
+        int m = query.length;
+        if (m == 0 || m > WORD_SIZE || threshold < 0) {
+            for (int j = from; j < to; j++) {
+                out[j] = distance(query, candidates[j], threshold);
+            }
+            return;
+        }
+        Buffers buffers = BUFFERS.get();
+        buffers.loadPattern(query);
+        try {
+            for (int j = from; j < to; j++) {
+                char[] text = candidates[j];
+                int n = text.length;
+                if (Math.abs(n - m) > threshold) {
+                    out[j] = -1;
+                }
+                else {
+                    out[j] = n == 0 ? m : myers(m, text, threshold, buffers);
+                }
+            }
+        }
+        finally {
+            buffers.clearPattern(query);
+        }
+    }
+
+
+    /**
+     * Calculates the edit distance between two character arrays if it is no more than
+     * a threshold, filling the dynamic programming matrix cell by cell regardless of
+     * length. Slower than {@link #distance(char[], char[], int)} for short strings, but
+     * independent of it.
+     * @return the distance, or -1 if it is greater than threshold
+     */
+    public static int bandedDistance(char[] s1, char[] s2, int threshold) {
+        if (threshold < 0) return -1;
+        char[] shorter = s1.length <= s2.length ? s1 : s2;
+        char[] longer = shorter == s1 ? s2 : s1;
+        if (longer.length - shorter.length > threshold) return -1;
+        if (shorter.length == 0) return longer.length;
+        return banded(shorter, longer, threshold, BUFFERS.get());
+    }
+
+
+    // pattern is the shorter string, 1 <= pattern.length <= 64
+    private static int myers(char[] pattern, char[] text, int threshold, Buffers buffers) {
+        buffers.loadPattern(pattern);
+        try {
+            return myers(pattern.length, text, threshold, buffers);
+        }
+        finally {
+            buffers.clearPattern(pattern);
+        }
+    }
+
+
+    // the pattern, of length m, is already loaded into the buffers
+    private static int myers(int m, char[] text, int threshold, Buffers buffers) {
+        int n = text.length;
+        long last = 1L << (m - 1);
+        long pv = ~0L;
+        long mv = 0L;
+        int score = m;
+        for (int j = 0; j < n; j++) {
+            long eq = buffers.peq(text[j]);
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            if ((ph & last) != 0) score++;
+            else if ((mh & last) != 0) score--;
+
+            // each remaining character can lower the score by at most one
+            if (score - (n - j - 1) > threshold) return -1;
+
+            ph = (ph << 1) | 1L;
+            mh <<= 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+        }
+        return score <= threshold ? score : -1;
+    }
+
+
+    // Ukkonen's banded algorithm, s1 is the shorter string
+    private static int banded(char[] s1, char[] s2, int threshold, Buffers buffers) {
+        int m = s1.length;
+        int n = s2.length;
+        int[] previous = buffers.previousRow(n + 1);
+        int[] current = buffers.currentRow(n + 1);
+
+        int boundary = Math.min(n, threshold) + 1;
+        for (int j = 0; j < boundary; j++) previous[j] = j;
+        Arrays.fill(previous, boundary, n + 1, INFINITY);
+        Arrays.fill(current, 0, n + 1, INFINITY);
+
+        for (int i = 1; i <= m; i++) {
+            char c = s1[i - 1];
+            current[0] = i;
+            int min = Math.max(1, i - threshold);
+            int max = i > n - threshold ? n : i + threshold;
+            if (min > 1) current[min - 1] = INFINITY;
+
+            int rowMin = min == 1 ? i : INFINITY;
+            for (int j = min; j <= max; j++) {
+                int cost;
+                if (c == s2[j - 1]) {
+                    cost = previous[j - 1];
+                }
+                else {
+                    cost = 1 + Math.min(Math.min(current[j - 1], previous[j]), previous[j - 1]);
+                }
+                current[j] = cost;
+                if (cost < rowMin) rowMin = cost;
+            }
+            if (max < n) current[max + 1] = INFINITY;
+            if (rowMin > threshold) return -1;
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[n] <= threshold ? previous[n] : -1;
+    }
+
+
+    /**
+     * Per-thread working storage. Pattern bitmasks for 8-bit characters are held in
+     * a direct lookup table; any others are held in a short list, since a pattern
+     * has at most 64 of them.
+     */
+    private static class Buffers {
+        final long[] asciiPeq = new long[256];
+        final char[] otherChars = new char[WORD_SIZE];
+        final long[] otherPeq = new long[WORD_SIZE];
+        int otherCount;
+        int[] rowA = new int[0];
+        int[] rowB = new int[0];
+
+        void loadPattern(char[] pattern) {
+            otherCount = 0;
+            for (int i = 0; i < pattern.length; i++) {
+                char c = pattern[i];
+                long bit = 1L << i;
+                if (c < 256) {
+                    asciiPeq[c] |= bit;
+                }
+                else {
+                    int k = indexOfOther(c);
+                    if (k < 0) {
+                        k = otherCount++;
+                        otherChars[k] = c;
+                        otherPeq[k] = 0;
+                    }
+                    otherPeq[k] |= bit;
+                }
+            }
+        }
+
+        void clearPattern(char[] pattern) {
+            for (int i = 0; i < pattern.length; i++) {
+                char c = pattern[i];
+                if (c < 256) asciiPeq[c] = 0;
+            }
+            otherCount = 0;
+        }
+
+        long peq(char c) {
+            if (c < 256) return asciiPeq[c];
+            int k = indexOfOther(c);
+            return k < 0 ? 0 : otherPeq[k];
+        }
+
+        int indexOfOther(char c) {
+            for (int k = 0; k < otherCount; k++) {
+                if (otherChars[k] == c) return k;
+            }
+            return -1;
+        }
+
+        int[] previousRow(int size) {
+            if (rowA.length < size) rowA = new int[size];
+            return rowA;
+        }
+
+        int[] currentRow(int size) {
+            if (rowB.length < size) rowB = new int[size];
+            return rowB;
+        }
+    }
+
+}
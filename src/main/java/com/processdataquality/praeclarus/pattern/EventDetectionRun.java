@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+/**
+ * The state of one detection by an event pattern, passed to the pattern's
+ * {@link AbstractEventPattern#find} step, so that a plugin holds no state of a
+ * detection in progress and may run several at once. It holds the token saying when
+ * to stop, whether the detection was cut short, and the counts and statistics found.
+ */
+public class EventDetectionRun {
+
+    // Says when to stop the detection early, and whether it was
+    private final CancellationToken cancellation;
+    private volatile boolean partial;
+
+    // Counters describing the work done by the detection
+    private final DetectionStatistics statistics = new DetectionStatistics();
+
+    // The counts found by the detection
+    private volatile DetectionMetrics metrics;
+
+
+    /**
+     * @param cancellation says when to stop the detection early
+     * @param totalEvents the number of events checked, until the counts are set
+     */
+    public EventDetectionRun(CancellationToken cancellation, long totalEvents) {
+        this.cancellation = cancellation;
+        metrics = new DetectionMetrics(0, totalEvents, -1, -1);
+    }
+
+
+    /**
+     * Loops over cases or rows should call this regularly, and stop as soon as it
+     * returns true
+     * @return true if this detection has been cancelled or has run out of time
+     */
+    public boolean isStopping() {
+        if (cancellation.isStopRequested()) {
+            partial = true;
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * @return true if this detection was cut short, so that its results are incomplete
+     */
+    public boolean isPartial() { return partial; }
+
+
+    /**
+     * @return the counters describing the work done by this detection
+     */
+    public DetectionStatistics getStatistics() { return statistics; }
+
+
+    /**
+     * @return the events and cases found affected by this detection
+     */
+    public DetectionMetrics getMetrics() { return metrics; }
+
+
+    /**
+     * @param metrics the counts found by this detection
+     */
+    public void setMetrics(DetectionMetrics metrics) { this.metrics = metrics; }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import com.processdataquality.praeclarus.annotations.Pattern;
+import com.processdataquality.praeclarus.annotations.Plugin;
+import com.processdataquality.praeclarus.plugin.Options;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Finds groups of events in a case that share an identical timestamp, as happens
+ * when several events are recorded by submitting one form. Each group of at least
+ * the 'Min Group Size' events is reported with its set of activities.
+ * <p>
+ * The log is grouped by case into primitive arrays, and the cases are split between
+ * threads. Within each case, events are grouped by timestamp through a primitive
+ * long-keyed hash map that is reused from case to case, so the work is linear in the
+ * number of events and nothing is boxed.
+ * @author Michael Adams
+ * @date 18/10/26
+ */
+@Plugin(
+        name = "Shared Timestamp",
+        author = "Michael Adams",
+        version = "1.0",
+        synopsis = "Finds events in a case that share an identical timestamp"
+)
+@Pattern(group = PatternGroup.FORM_BASED)
+public class FormBasedSharedTimestamp extends AbstractEventPattern {
+
+    public FormBasedSharedTimestamp() { }
+
+
+    @Override
+    protected Table find(EventDetectionRun run, Table table) {
+        int minSize = getIntOption("Min Group Size", 2);
+        if (minSize < 2) {
+            throw new IllegalArgumentException("Min Group Size must be at least 2");
+        }
+        CaseIndex index = buildCaseIndex(run, table, false);
+        String activityName = getStringOption("Activity Column");
+        Column<?> activities = activityName != null &&
+                table.columnNames().contains(activityName) ? table.column(activityName) : null;
+        Column<?> times = CaseIndex.getColumn(table, getStringOption("Timestamp Column"));
+
+        List<Groups> found = new CaseScheduler(getParallelism()).run(index,
+                (from, to) -> findInCases(run, index, minSize, from, to));
+
+        Table result = createResultTable();
+        long affectedEvents = 0;
+        long affectedCases = 0;
+        long groupCount = 0;
+        for (Groups groups : found) {
+            for (int g = 0; g < groups.caseCodes.size(); g++) {
+                int first = groups.starts.get(g);
+                int size = groups.sizes.get(g);
+                int firstRow = groups.members.get(first);
+                result.stringColumn(0).append(index.getCaseId(groups.caseCodes.get(g)));
+                result.stringColumn(1).append(times.getString(firstRow));
+                result.intColumn(2).append(size);
+                result.stringColumn(3).append(describeActivities(activities, groups.members,
+                        first, size));
+                result.stringColumn(4).append(describeRows(groups.members, first, size));
+                affectedEvents += size;
+            }
+            groupCount += groups.caseCodes.size();
+            affectedCases += groups.affectedCases;
+        }
+        run.getStatistics().set("Groups", groupCount);
+        run.setMetrics(new DetectionMetrics(affectedEvents, index.getEventCount(),
+                affectedCases, index.getCaseCount()));
+        return result;
+    }
+
+
+    // groups the events of each case in [from, to) by timestamp, keeping the groups
+    // of at least minSize events, in order of their first event
+    private Groups findInCases(EventDetectionRun run, CaseIndex index, int minSize,
+                               int from, int to) {
+        Groups groups = new Groups();
+        LongIntHashMap groupOfTime = new LongIntHashMap();
+        int[] groupOfEvent = new int[16];
+        int[] groupSize = new int[16];
+        int[] groupStart = new int[16];
+        for (int c = from; c < to && !run.isStopping(); c++) {
+            int start = index.getStart(c);
+            int length = index.getEnd(c) - start;
+            if (length < minSize) continue;
+            if (length > groupOfEvent.length) {
+                groupOfEvent = new int[length];
+                groupSize = new int[length];
+                groupStart = new int[length];
+            }
+
+            // number the distinct timestamps and count the events at each
+            groupOfTime.clear();
+            int groupCount = 0;
+            for (int e = 0; e < length; e++) {
+                long time = index.getTime(start + e);
+                if (time == CaseIndex.NO_TIME) {
+                    groupOfEvent[e] = -1;
+                    continue;
+                }
+                int g = groupOfTime.putIfAbsent(time, groupCount);
+                if (g < 0) {
+                    g = groupCount++;
+                    groupSize[g] = 0;
+                }
+                groupSize[g]++;
+                groupOfEvent[e] = g;
+            }
+            if (groupCount == length) continue;          // all timestamps distinct
+
+            // lay out the members of the large enough groups, then fill them in
+            int memberCount = 0;
+            for (int g = 0; g < groupCount; g++) {
+                if (groupSize[g] >= minSize) {
+                    groupStart[g] = groups.members.size() + memberCount;
+                    groups.add(c, groupStart[g], groupSize[g]);
+                    memberCount += groupSize[g];
+                }
+            }
+            if (memberCount == 0) continue;
+            for (int k = 0; k < memberCount; k++) {
+                groups.members.add(-1);
+            }
+            for (int e = 0; e < length; e++) {
+                int g = groupOfEvent[e];
+                if (g >= 0 && groupSize[g] >= minSize) {
+                    groups.members.set(groupStart[g]++, index.getRow(start + e));
+                }
+            }
+            groups.affectedCases++;
+        }
+        return groups;
+    }
+
+
+    // the distinct activities of a group's events, in alphabetical order
+    private String describeActivities(Column<?> activities, IntList members, int first,
+                                      int size) {
+        if (activities == null) return "";
+        Set<String> names = new TreeSet<>();
+        for (int k = first; k < first + size; k++) {
+            int row = members.get(k);
+            if (!activities.isMissing(row)) {
+                names.add(activities.getString(row));
+            }
+        }
+        return String.join(", ", names);
+    }
+
+
+    // the rows of a group's events
+    private String describeRows(IntList members, int first, int size) {
+        int[] rows = new int[size];
+        for (int k = 0; k < size; k++) {
+            rows[k] = members.get(first + k);
+        }
+        String list = Arrays.toString(rows);
+        return list.substring(1, list.length() - 1);
+    }
+
+
+    private Table createResultTable() {
+        return Table.create("Result").addColumns(
+                StringColumn.create("Case"),
+                StringColumn.create("Timestamp"),
+                IntColumn.create("Events"),
+                StringColumn.create("Activities"),
+                StringColumn.create("Rows")
+        );
+    }
+
+
+    @Override
+    public Options getOptions() {
+        Options options = super.getOptions();
+        if (!options.containsKey("Min Group Size")) {
+            options.addDefault("Min Group Size", 2);
+        }
+        return options;
+    }
+
+
+    /**
+     * The groups found in a partition of cases. The rows of each group's events are
+     * held consecutively in members, from its start.
+     */
+    private static class Groups {
+        final IntList caseCodes = new IntList();
+        final IntList starts = new IntList();
+        final IntList sizes = new IntList();
+        final IntList members = new IntList();
+        long affectedCases;
+
+        void add(int caseCode, int start, int size) {
+            caseCodes.add(caseCode);
+            starts.add(start);
+            sizes.add(size);
+        }
+    }
+
+}
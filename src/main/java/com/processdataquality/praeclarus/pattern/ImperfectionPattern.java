@@ -33,6 +33,40 @@ public interface ImperfectionPattern extends PDQPlugin {
     Table detect(Table table);
 
 
+    /**
+     * Detect instances of an imperfection pattern found within a table, passing the
+     * results to a listener as they are found. By default, the results are passed on
+     * in one batch when the detection completes; plugins able to do better should
+     * override this.
+     * @param table a table containing values to check for the pattern
+     * @param listener receives batches of results, and the progress of the detection
+     * @return a table where each row contains values detected using the pattern
+     */
+    default Table detect(Table table, DetectionListener listener) {
+        Table result = detect(table);
+        if (result != null) {
+            listener.resultsFound(result);
+        }
+        listener.progressChanged(1.0);
+        return result;
+    }
+
+
+    /**
+     * Detect instances of an imperfection pattern found within a table, stopping
+     * early if asked to by a cancellation token. By default, the token is ignored;
+     * plugins whose detection can take a long time should override this, and mark
+     * the results they return when cut short as partial.
+     * @param table a table containing values to check for the pattern
+     * @param listener receives batches of results, and the progress of the detection
+     * @param token says when to stop the detection early
+     * @return a table where each row contains values detected using the pattern
+     */
+    default Table detect(Table table, DetectionListener listener, CancellationToken token) {
+        return detect(table, listener);
+    }
+
+
     /**
      * Repair instances of an imperfection pattern found within a table
      * @param master the original table containing pattern instances
@@ -51,6 +85,25 @@ public interface ImperfectionPattern extends PDQPlugin {
     boolean canDetect();
 
 
+    /**
+     * Determines whether this particular plugin can estimate the extent of the
+     * imperfection pattern from a sample, which is much faster than a full detection
+     * @return false by default
+     */
+    default boolean canEstimate() { return false; }
+
+
+    /**
+     * Estimate the number of rows affected by the imperfection pattern from a sample
+     * of the rows of a table. Only supported where {@link #canEstimate()} is true.
+     * @param table a table containing values to check for the pattern
+     * @param sampleSize the number of rows to sample
+     * @return the estimate, with a confidence interval, or null if this plugin
+     * cannot estimate, as by default
+     */
+    default DetectionEstimate estimate(Table table, int sampleSize) { return null; }
+
+
     /**
      *
      * @return total detected imperfekt events form the event log
@@ -67,6 +120,24 @@ public interface ImperfectionPattern extends PDQPlugin {
     double criticalDetections();
 
 
+    /**
+     * Gets the counts found by the most recent detection. By default, only the number
+     * of affected events is known, taken from {@link #imperfektionDetected()}.
+     * @return the counts of affected events and cases
+     */
+    default DetectionMetrics getMetrics() {
+        return new DetectionMetrics(imperfektionDetected(), -1, -1, -1);
+    }
+
+
+    /**
+     * Determines whether the most recent detection was cut short, by cancellation or
+     * by running out of time, so that its results are incomplete
+     * @return false by default, for plugins that always finish their detections
+     */
+    default boolean isPartial() { return false; }
+
+
     /**
      * Determines whether this particular plugin can repair the data
      * @return true if this plugin can repair the data
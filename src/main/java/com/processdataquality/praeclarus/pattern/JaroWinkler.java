@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import java.util.Arrays;
+
+/**
+ * Jaro-Winkler similarity between two strings, held as character arrays. The result
+ * is the same as that of the commons-text 1.6 {@code JaroWinklerDistance} used
+ * previously (SimilarityKernelParityTest checks it against a copy of that algorithm):
+ * characters match if they are equal and no further apart than half the longer
+ * length less one, the Jaro score is (m/|s1| + m/|s2| + (m-t)/m) / 3 for m matches
+ * and t half-transpositions, and scores of at least 0.7 are raised by the common
+ * prefix length scaled by min(0.1, 1/|longer|).
+ * <p>
+ * Working storage is kept per thread and reused, so no arrays are allocated per call.
+ */
+public final class JaroWinkler {
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private JaroWinkler() { }
+
+
+    /**
+     * @return the Jaro-Winkler similarity of two strings, from 0 (no matching
+     * characters) to 1 (equal)
+     */
+    public static double similarity(char[] s1, char[] s2) {
+        char[] longer = s1.length > s2.length ? s1 : s2;
+        char[] shorter = longer == s1 ? s2 : s1;
+        int range = Math.max(longer.length / 2 - 1, 0);
+        Buffers buffers = BUFFERS.get();
+        boolean[] shorterMatched = buffers.shorterFlags(shorter.length);
+        boolean[] longerMatched = buffers.longerFlags(longer.length);
+
+        int matches = 0;
+        for (int i = 0; i < shorter.length; i++) {
+            char c = shorter[i];
+            int limit = Math.min(i + range + 1, longer.length);
+            for (int x = Math.max(i - range, 0); x < limit; x++) {
+                if (!longerMatched[x] && c == longer[x]) {
+                    shorterMatched[i] = true;
+                    longerMatched[x] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0) return 0;
+
+        // the matched characters of each string in order, compared position by position
+        int transpositions = 0;
+        int x = 0;
+        for (int i = 0; i < shorter.length; i++) {
+            if (shorterMatched[i]) {
+                while (!longerMatched[x]) x++;
+                if (shorter[i] != longer[x]) transpositions++;
+                x++;
+            }
+        }
+        int prefix = 0;
+        while (prefix < shorter.length && s1[prefix] == s2[prefix]) prefix++;
+
+        double m = matches;
+        double jaro = (m / s1.length + m / s2.length + (m - transpositions / 2) / m) / 3;
+        return jaro < 0.7 ? jaro : jaro + Math.min(0.1, 1D / longer.length) * prefix * (1D - jaro);
+    }
+
+
+    // Per-thread match flags, cleared to the length needed before each use
+    private static class Buffers {
+        boolean[] flagsA = new boolean[64];
+        boolean[] flagsB = new boolean[64];
+
+        boolean[] shorterFlags(int length) {
+            if (flagsA.length < length) flagsA = new boolean[length];
+            Arrays.fill(flagsA, 0, length, false);
+            return flagsA;
+        }
+
+        boolean[] longerFlags(int length) {
+            if (flagsB.length < length) flagsB = new boolean[length];
+            Arrays.fill(flagsB, 0, length, false);
+            return flagsB;
+        }
+    }
+
+}
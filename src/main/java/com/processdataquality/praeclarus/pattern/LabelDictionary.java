@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import tech.tablesaw.api.StringColumn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The distinct values of a string column, each mapped to an integer code in order
+ * of first appearance, together with the number of times each value occurs.
+ * Built in a single pass over the column.
+ */
+public class LabelDictionary {
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> labels = new ArrayList<>();
+    private int[] counts = new int[64];
+
+
+    public LabelDictionary() { }
+
+    public LabelDictionary(StringColumn column) {
+        addAll(column);
+    }
+
+
+    /**
+     * Adds one occurrence of each value of a column
+     * @param column the column of labels to add
+     */
+    public void addAll(StringColumn column) {
+        for (int i = 0; i < column.size(); i++) {
+            add(column.getString(i));
+        }
+    }
+
+
+    /**
+     * Adds one occurrence of a label, assigning it a new code if it hasn't been
+     * seen before
+     * @param label the label to add (nulls are ignored)
+     * @return the code of the label, or -1 if the label is null
+     */
+    public int add(String label) {
+        if (label == null) return -1;
+        Integer code = codes.get(label);
+        if (code == null) {
+            code = labels.size();
+            codes.put(label, code);
+            labels.add(label);
+            if (code == counts.length) {
+                counts = Arrays.copyOf(counts, counts.length * 2);
+            }
+        }
+        counts[code]++;
+        return code;
+    }
+
+
+    /**
+     * @return the number of distinct labels
+     */
+    public int size() { return labels.size(); }
+
+
+    /**
+     * @param label a label
+     * @return the code of the label, or -1 if it is not in this dictionary
+     */
+    public int getCode(String label) {
+        Integer code = label != null ? codes.get(label) : null;
+        return code != null ? code : -1;
+    }
+
+
+    public String getLabel(int code) { return labels.get(code); }
+
+
+    public int getCount(int code) { return counts[code]; }
+
+
+    /**
+     * @param label a label
+     * @return the number of times the label occurs, or 0 if it is not in this dictionary
+     */
+    public int getCount(String label) {
+        int code = getCode(label);
+        return code > -1 ? counts[code] : 0;
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Reduces a label to a canonical form before it is compared, so that labels differing
+ * only in Unicode representation, case, spacing or punctuation are treated as the same.
+ * Each step is optional, and they are applied in the order: NFKC normalization, case
+ * folding, punctuation stripping and whitespace collapsing.
+ */
+public class LabelNormalizer {
+
+    private final boolean unicode;
+    private final boolean ignoreCase;
+    private final boolean stripPunctuation;
+    private final boolean collapseWhitespace;
+
+
+    public LabelNormalizer(boolean unicode, boolean ignoreCase, boolean stripPunctuation,
+                           boolean collapseWhitespace) {
+        this.unicode = unicode;
+        this.ignoreCase = ignoreCase;
+        this.stripPunctuation = stripPunctuation;
+        this.collapseWhitespace = collapseWhitespace;
+    }
+
+
+    /**
+     * @return true if no step is enabled, so that labels are left unchanged
+     */
+    public boolean isIdentity() {
+        return !(unicode || ignoreCase || stripPunctuation || collapseWhitespace);
+    }
+
+
+    /**
+     * @param label a label
+     * @return the canonical form of the label
+     */
+    public String normalize(String label) {
+        String s = label;
+        if (unicode) {
+            s = Normalizer.normalize(s, Normalizer.Form.NFKC);
+        }
+        if (ignoreCase) {
+            s = s.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);   // full case folding
+        }
+        if (!(stripPunctuation || collapseWhitespace)) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (stripPunctuation && isPunctuation(c)) continue;
+            if (collapseWhitespace && Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;             // drop leading whitespace
+                continue;
+            }
+            if (pendingSpace) {
+                sb.append(' ');
+                pendingSpace = false;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+
+    private boolean isPunctuation(char c) {
+        switch (Character.getType(c)) {
+            case Character.CONNECTOR_PUNCTUATION:
+            case Character.DASH_PUNCTUATION:
+            case Character.START_PUNCTUATION:
+            case Character.END_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION: return true;
+            default: return false;
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import tech.tablesaw.api.Row;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Repairs distorted labels by replacing them with the labels chosen for them. The
+ * changes are resolved into one map of labels to their final replacements, which is
+ * then applied to each repaired column in a single pass, in place.
+ */
+final class LabelRepair {
+
+    private LabelRepair() { }
+
+
+    /**
+     * Applies a table of changes to the columns of a table
+     * @param master the table to repair
+     * @param changes a table of two columns containing rows of keys (strings to find)
+     *                and values (strings to replace them with). If it also has a
+     *                'Column' column, each change applies only to the column it names.
+     * @param columnNames gets the columns that changes without a 'Column' apply to
+     * @return the repaired table
+     */
+    static Table repair(Table master, Table changes, Supplier<List<String>> columnNames) {
+        boolean byColumn = changes.columnNames().contains("Column");
+        Map<String, List<String[]>> changesByColumn = new LinkedHashMap<>();
+        for (Row row : changes) {
+            String[] change = { row.getString(0), row.getString(1) };
+            List<String> colNames = byColumn ?
+                    Collections.singletonList(row.getString("Column")) : columnNames.get();
+            for (String colName : colNames) {
+                changesByColumn.computeIfAbsent(colName, k -> new ArrayList<>()).add(change);
+            }
+        }
+        for (String colName : changesByColumn.keySet()) {
+            Map<String, String> replacements = resolveReplacements(changesByColumn.get(colName));
+            StringColumn column = master.stringColumn(colName);
+            for (int i = 0; i < column.size(); i++) {
+                String replacement = replacements.get(column.get(i));
+                if (replacement != null) {
+                    column.set(i, replacement);
+                }
+            }
+        }
+        return master;
+    }
+
+
+    /**
+     * Resolves a list of changes, applied in order, into a map from each label to the
+     * label it finally becomes. For example, where 'a' is changed to 'b' and a later
+     * change turns 'b' into 'c', both 'a' and 'b' map to 'c'.
+     * @param changes pairs of labels to find and labels to replace them with
+     * @return a map of each changed label to its replacement
+     */
+    static Map<String, String> resolveReplacements(List<String[]> changes) {
+        Map<String, List<Integer>> changesByLabel = new HashMap<>();
+        for (int i = 0; i < changes.size(); i++) {
+            changesByLabel.computeIfAbsent(changes.get(i)[0], k -> new ArrayList<>()).add(i);
+        }
+        Map<String, String> replacements = new HashMap<>();
+        for (String label : changesByLabel.keySet()) {
+            String current = label;
+            int next = 0;                                 // the first change still to apply
+            List<Integer> pending;
+            while ((pending = changesByLabel.get(current)) != null) {
+                int index = Collections.binarySearch(pending, next);
+                if (index < 0) index = -index - 1;
+                if (index == pending.size()) break;
+                next = pending.get(index);
+                current = changes.get(next++)[1];
+            }
+            if (!current.equals(label)) {
+                replacements.put(label, current);
+            }
+        }
+        return replacements;
+    }
+
+}
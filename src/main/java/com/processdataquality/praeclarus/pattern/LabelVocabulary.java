@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.columns.Column;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The distinct labels of the columns checked by a detection, and the distinct cases
+ * of the table, kept so that a later detection in appended rows can add to them
+ */
+class LabelVocabulary {
+
+    private final Map<String, ColumnLabels> columns = new LinkedHashMap<>();
+    private final LabelNormalizer normalizer;
+    private LabelDictionary cases;                  // null if there is no case column
+
+
+    LabelVocabulary(List<StringColumn> columns, LabelNormalizer normalizer, boolean hasCases) {
+        this.normalizer = normalizer;
+        for (StringColumn column : columns) {
+            this.columns.put(column.name(), new ColumnLabels(!normalizer.isIdentity()));
+        }
+        cases = hasCases ? new LabelDictionary() : null;
+    }
+
+
+    // the labels of a column, or null if the column wasn't checked
+    ColumnLabels get(String columnName) { return columns.get(columnName); }
+
+    // the distinct cases, or null if they are unknown
+    LabelDictionary getCases() { return cases; }
+
+
+    // adds the values of each column to its labels, in a single pass over the rows,
+    // normalizing each distinct label once. If there is a case column, also records
+    // which labels occur in which cases, for counting affected cases later. Without
+    // one, the affected cases are no longer known.
+    void add(List<StringColumn> columns, Column<?> caseColumn) {
+        if (caseColumn == null) {
+            cases = null;
+        }
+        ColumnLabels[] states = new ColumnLabels[columns.size()];
+        for (int c = 0; c < columns.size(); c++) {
+            states[c] = this.columns.get(columns.get(c).name());
+        }
+        int rowCount = columns.get(0).size();
+        for (int i = 0; i < rowCount; i++) {
+            long caseCode = cases != null ? cases.add(caseColumn.getString(i)) : -1;
+            for (int c = 0; c < columns.size(); c++) {
+                int code = states[c].add(columns.get(c).get(i), normalizer);
+                if (caseCode >= 0 && code >= 0) {
+                    states[c].caseLabels.add(caseCode << 32 | code);
+                }
+            }
+        }
+    }
+
+}
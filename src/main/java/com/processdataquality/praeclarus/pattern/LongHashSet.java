@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * A set of primitive long values, held in an open-addressing hash table so that no
+ * value is boxed. Used to track distinct pairs of codes packed into a long.
+ */
+public class LongHashSet {
+
+    private static final long EMPTY = Long.MIN_VALUE;    // marks an unused slot
+
+    private long[] slots;
+    private int size;
+    private boolean containsEmpty;                       // whether EMPTY is a member
+
+
+    public LongHashSet() {
+        this(16);
+    }
+
+
+    /**
+     * @param expectedSize the number of values expected, to size the table
+     */
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedSize * 2 - 1)) << 1;
+        slots = new long[capacity];
+        Arrays.fill(slots, EMPTY);
+    }
+
+
+    /**
+     * @param value the value to add
+     * @return true if the value was not already in the set
+     */
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsEmpty) return false;
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+        int mask = slots.length - 1;
+        int i = slot(value, mask);
+        while (slots[i] != EMPTY) {
+            if (slots[i] == value) return false;
+            i = (i + 1) & mask;
+        }
+        slots[i] = value;
+        if (++size > slots.length / 2) {
+            grow();
+        }
+        return true;
+    }
+
+
+    /**
+     * @param value a value
+     * @return true if the value is in the set
+     */
+    public boolean contains(long value) {
+        if (value == EMPTY) return containsEmpty;
+        int mask = slots.length - 1;
+        int i = slot(value, mask);
+        while (slots[i] != EMPTY) {
+            if (slots[i] == value) return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+
+    public int size() { return size; }
+
+
+    /**
+     * Passes each value in the set to an action, in no particular order
+     * @param action the action to perform on each value
+     */
+    public void forEach(LongConsumer action) {
+        if (containsEmpty) action.accept(EMPTY);
+        for (long value : slots) {
+            if (value != EMPTY) action.accept(value);
+        }
+    }
+
+
+    private void grow() {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        Arrays.fill(slots, EMPTY);
+        int mask = slots.length - 1;
+        for (long value : old) {
+            if (value != EMPTY) {
+                int i = slot(value, mask);
+                while (slots[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = value;
+            }
+        }
+    }
+
+
+    // spreads the bits of the value, since packed codes differ mostly in the low bits
+    private static int slot(long value, int mask) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import java.util.Arrays;
+
+/**
+ * A map from primitive long keys to int values, held in an open-addressing hash table
+ * so that nothing is boxed. Clearing only touches the slots in use, so one map can be
+ * reused cheaply for many small groups of keys. Long.MIN_VALUE may not be used as a
+ * key.
+ */
+public class LongIntHashMap {
+
+    private static final long EMPTY = Long.MIN_VALUE;    // marks an unused slot
+
+    private long[] keys;
+    private int[] values;
+    private final IntList used = new IntList();          // the slots holding keys
+
+
+    public LongIntHashMap() {
+        this(16);
+    }
+
+
+    /**
+     * @param expectedSize the number of keys expected, to size the table
+     */
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+
+    /**
+     * @param key a key
+     * @return the value mapped to the key, or -1 if there is none
+     */
+    public int get(long key) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) return values[i];
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Maps a key to a value, unless it is already mapped
+     * @param key the key, not Long.MIN_VALUE
+     * @param value the value
+     * @return the value already mapped to the key, or -1 if the new value was added
+     */
+    public int putIfAbsent(long key, int value) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Long.MIN_VALUE cannot be used as a key");
+        }
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) return values[i];
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        used.add(i);
+        if (used.size() > keys.length / 2) {
+            grow();
+        }
+        return -1;
+    }
+
+
+    public int size() { return used.size(); }
+
+
+    /**
+     * Receives the entries of a map
+     */
+    public interface EntryConsumer {
+        void accept(long key, int value);
+    }
+
+
+    /**
+     * Passes each entry of the map to an action, in the order the keys were added
+     * @param action the action to perform on each entry
+     */
+    public void forEach(EntryConsumer action) {
+        for (int k = 0; k < used.size(); k++) {
+            int i = used.get(k);
+            action.accept(keys[i], values[i]);
+        }
+    }
+
+
+    /**
+     * Removes all keys, in time proportional to their number
+     */
+    public void clear() {
+        for (int k = 0; k < used.size(); k++) {
+            keys[used.get(k)] = EMPTY;
+        }
+        used.clear();
+    }
+
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        int[] oldUsed = used.toArray();
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        used.clear();
+        int mask = keys.length - 1;
+        for (int old : oldUsed) {
+            int i = slot(oldKeys[old], mask);
+            while (keys[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[old];
+            values[i] = oldValues[old];
+            used.add(i);
+        }
+    }
+
+
+    // spreads the bits of the key, since nearby timestamps differ only in the low bits
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+}
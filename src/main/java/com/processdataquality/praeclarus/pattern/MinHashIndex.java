@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An approximate candidate index using MinHash signatures and locality sensitive
+ * hashing (LSH). Each label is reduced to its set of character shingles (substrings
+ * of a fixed length), and a signature of b x r minimum hash values is computed over
+ * that set. The signature is cut into b bands of r values, and labels whose values
+ * agree over a whole band are proposed as candidates.
+ * <p>
+ * Two labels whose shingle sets have Jaccard similarity s are proposed with
+ * probability 1 - (1 - s^r)^b. Increasing b raises recall; increasing r lowers the
+ * number of dissimilar pairs proposed (and so raises speed). Similar pairs may be
+ * missed, so results are approximate. Hash functions use fixed seeds, so the same
+ * labels and settings always give the same candidates.
+ */
+public class MinHashIndex implements CandidateIndex {
+
+    private final LabelDictionary labels;
+    private final int bands;
+    private final int rows;
+    private final int shingleSize;
+    private final long[] seeds;
+    private int[][] bandKeys = new int[0][];               // [label][band]
+    private int indexedCount;                       // labels with lower codes are indexed
+    private final Map<Long, int[]> buckets = new HashMap<>();  // [0] holds the size
+
+
+    /**
+     * Builds the index over all the labels of a dictionary
+     * @param labels the labels to index
+     * @param bands the number of bands (b)
+     * @param rows the number of signature values per band (r)
+     * @param shingleSize the length of the character shingles
+     */
+    public MinHashIndex(LabelDictionary labels, int bands, int rows, int shingleSize) {
+        if (bands < 1 || rows < 1 || shingleSize < 1) {
+            throw new IllegalArgumentException(
+                    "LSH bands, rows and shingle size must each be at least 1");
+        }
+        this.labels = labels;
+        this.bands = bands;
+        this.rows = rows;
+        this.shingleSize = shingleSize;
+        seeds = new long[bands * rows];
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < seeds.length; i++) {
+            seed = mix(seed + i);
+            seeds[i] = seed;
+        }
+        addNewLabels();
+    }
+
+
+    @Override
+    public void addNewLabels() {
+        bandKeys = Arrays.copyOf(bandKeys, labels.size());
+        for (int code = indexedCount; code < labels.size(); code++) {
+            int[] keys = bandKeys(signature(labels.getLabel(code)));
+            bandKeys[code] = keys;
+            for (int band = 0; band < bands; band++) {
+                append(bucketKey(band, keys[band]), code);
+            }
+        }
+        indexedCount = labels.size();
+    }
+
+
+    /**
+     * @return the probability that two labels with shingle sets of the given Jaccard
+     * similarity are proposed as candidates
+     */
+    public double getCandidateProbability(double similarity) {
+        return 1 - Math.pow(1 - Math.pow(similarity, rows), bands);
+    }
+
+
+    /**
+     * @return the number of non-empty LSH buckets
+     */
+    public int getBucketCount() { return buckets.size(); }
+
+
+    @Override
+    public CandidateIndex.Searcher newSearcher() {
+        int[][] bandKeys = this.bandKeys;
+        return (code, lowest) -> {
+            int[] found = new int[16];
+            int count = 0;
+            int[] keys = bandKeys[code];
+            for (int band = 0; band < bands; band++) {
+                int[] members = buckets.get(bucketKey(band, keys[band]));
+                for (int k = 1; k <= members[0]; k++) {
+                    if (members[k] < lowest || members[k] == code) continue;
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, found.length * 2);
+                    }
+                    found[count++] = members[k];
+                }
+            }
+            Arrays.sort(found, 0, count);
+            int distinct = 0;
+            for (int i = 0; i < count; i++) {
+                if (distinct == 0 || found[i] != found[distinct - 1]) {
+                    found[distinct++] = found[i];
+                }
+            }
+            return Arrays.copyOf(found, distinct);
+        };
+    }
+
+
+    // the minimum of each hash function over the label's shingles
+    private int[] signature(String label) {
+        int[] signature = new int[seeds.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        int shingles = Math.max(1, label.length() - shingleSize + 1);
+        for (int start = 0; start < shingles; start++) {
+            int end = Math.min(label.length(), start + shingleSize);
+            long shingle = 1;
+            for (int i = start; i < end; i++) {
+                shingle = 31 * shingle + label.charAt(i);
+            }
+            for (int h = 0; h < seeds.length; h++) {
+                int value = (int) (mix(shingle ^ seeds[h]) >>> 33);
+                if (value < signature[h]) signature[h] = value;
+            }
+        }
+        return signature;
+    }
+
+
+    // a hash of each band's run of signature values
+    private int[] bandKeys(int[] signature) {
+        int[] keys = new int[bands];
+        for (int band = 0; band < bands; band++) {
+            long hash = band;
+            for (int r = band * rows; r < (band + 1) * rows; r++) {
+                hash = mix(hash * 31 + signature[r]);
+            }
+            keys[band] = (int) hash;
+        }
+        return keys;
+    }
+
+
+    private long bucketKey(int band, int key) {
+        return ((long) band << 32) | (key & 0xFFFFFFFFL);
+    }
+
+
+    private void append(long key, int code) {
+        int[] members = buckets.get(key);
+        if (members == null) {
+            members = new int[4];
+            buckets.put(key, members);
+        }
+        int size = members[0];
+        if (size + 1 == members.length) {
+            members = Arrays.copyOf(members, members.length * 2);
+            buckets.put(key, members);
+        }
+        members[size + 1] = code;
+        members[0] = size + 1;
+    }
+
+
+    // the SplitMix64 finaliser
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Splits the triangular space of pairs (i, j), 0 &lt;= i &lt; j &lt; n, into blocks of
+ * consecutive rows holding roughly equal numbers of pairs, and runs the blocks on a
+ * pool of worker threads. Each block produces its own result, and the results are
+ * returned in row order regardless of the order in which the blocks finish.
+ */
+public class PairBlockScheduler {
+
+    // Blocks per thread, so that threads finishing early can take on more work
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    // The fewest blocks to split the work into, so that progress can be reported
+    // regularly even on one thread
+    private static final int MIN_BLOCKS = 32;
+
+    private final int parallelism;
+
+
+    /**
+     * @param parallelism the number of worker threads to use
+     */
+    public PairBlockScheduler(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+
+    /**
+     * The work to be done for a block of rows
+     * @param <T> the type of result produced for each block
+     */
+    public interface Block<T> {
+
+        /**
+         * Compares each row i in [from, to) with its pairs j &gt; i
+         * @return the result for the block
+         */
+        T compare(int from, int to);
+    }
+
+
+    /**
+     * Receives the result of each block, in row order, on the thread that called
+     * {@link #run}
+     * @param <T> the type of result produced for each block
+     */
+    public interface BlockListener<T> {
+
+        /**
+         * @param result the result of the block of rows [from, to)
+         */
+        void blockCompleted(T result, int from, int to);
+    }
+
+
+    /**
+     * Compares all pairs of n items, block by block
+     * @param n the number of items
+     * @param block the work to do for each block of rows
+     * @return the result of each block, in row order
+     */
+    public <T> List<T> run(int n, Block<T> block) {
+        return run(n, block, (result, from, to) -> { });
+    }
+
+
+    /**
+     * Compares all pairs of n items, block by block, passing each block's result to
+     * a listener as soon as it and all blocks before it have completed
+     * @param n the number of items
+     * @param block the work to do for each block of rows
+     * @param listener receives the result of each block, in row order
+     * @return the result of each block, in row order
+     */
+    public <T> List<T> run(int n, Block<T> block, BlockListener<T> listener) {
+        List<int[]> ranges = partition(n, Math.max(MIN_BLOCKS, parallelism * BLOCKS_PER_THREAD));
+        List<T> results = new ArrayList<>(ranges.size());
+        if (parallelism == 1 || ranges.size() < 2) {
+            for (int[] range : ranges) {
+                T result = block.compare(range[0], range[1]);
+                listener.blockCompleted(result, range[0], range[1]);
+                results.add(result);
+            }
+            return results;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Future<T>> futures = new ArrayList<>(ranges.size());
+            for (int[] range : ranges) {
+                futures.add(pool.submit(() -> block.compare(range[0], range[1])));
+            }
+            for (int i = 0; i < ranges.size(); i++) {
+                T result = futures.get(i).get();
+                listener.blockCompleted(result, ranges.get(i)[0], ranges.get(i)[1]);
+                results.add(result);
+            }
+            return results;
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while comparing pairs", ie);
+        }
+        catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Failed to compare pairs", cause);
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Splits the rows 0..n-1 into ranges of consecutive rows, where row i holds the
+     * n-1-i pairs (i, j &gt; i), so that each range holds about the same number of pairs
+     * @param n the number of items
+     * @param blockCount the preferred number of ranges
+     * @return a list of [from, to) row ranges covering 0..n-1 in order
+     */
+    static List<int[]> partition(int n, int blockCount) {
+        List<int[]> ranges = new ArrayList<>();
+        if (n < 1) return ranges;
+        long totalPairs = (long) n * (n - 1) / 2;
+        long target = Math.max(1, totalPairs / Math.max(1, blockCount));
+        int from = 0;
+        long pairs = 0;
+        for (int i = 0; i < n; i++) {
+            pairs += n - 1 - i;
+            if (pairs >= target) {
+                ranges.add(new int[] { from, i + 1 });
+                from = i + 1;
+                pairs = 0;
+            }
+        }
+        if (from < n) {
+            ranges.add(new int[] { from, n });
+        }
+        return ranges;
+    }
+
+}
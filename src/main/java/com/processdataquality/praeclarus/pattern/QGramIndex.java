@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * An inverted index from q-grams (substrings of length q) to the distinct labels that
+ * contain them, used to find candidate pairs of similar labels with the count filter:
+ * two labels can only be similar if they share at least some minimum number of
+ * q-grams, where the minimum depends on the similarity measure, its threshold and the
+ * lengths of the two labels. Labels are padded with q-1 sentinel characters at each
+ * end, so that a label of length n has n+q-1 q-grams.
+ * <p>
+ * Where the minimum for a pair is zero or less, the pair is always a candidate, so
+ * labels are also grouped by length to find such pairs without a full scan.
+ */
+public class QGramIndex implements CandidateIndex {
+
+    private static final char PAD = '\uFFFF';      // a non-character, won't be in labels
+
+    private final LabelDictionary labels;
+    private final int q;
+    private final IntBinaryOperator minShared;
+    private final Map<String, int[]> postings = new HashMap<>();   // [0] holds the size
+    private final TreeMap<Integer, int[]> lengths = new TreeMap<>();  // [0] holds the size
+    private int indexedCount;                       // labels with lower codes are indexed
+
+
+    /**
+     * Builds the index over all the labels of a dictionary
+     * @param labels the labels to index
+     * @param q the q-gram length
+     * @param minShared given the lengths of two labels, the minimum number of q-grams
+     *                  they must share to possibly be similar
+     */
+    public QGramIndex(LabelDictionary labels, int q, IntBinaryOperator minShared) {
+        if (q < 1) {
+            throw new IllegalArgumentException("The q-gram length must be at least 1");
+        }
+        this.labels = labels;
+        this.q = q;
+        this.minShared = minShared;
+        addNewLabels();
+    }
+
+
+    @Override
+    public void addNewLabels() {
+        for (int code = indexedCount; code < labels.size(); code++) {
+            String label = labels.getLabel(code);
+            for (Map.Entry<String, Integer> gram : grams(label).entrySet()) {
+                append(gram.getKey(), code, gram.getValue());
+            }
+            int[] codes = lengths.get(label.length());
+            if (codes == null) {
+                codes = new int[4];
+                lengths.put(label.length(), codes);
+            }
+            int size = codes[0];
+            if (size + 1 == codes.length) {
+                codes = Arrays.copyOf(codes, codes.length * 2);
+                lengths.put(label.length(), codes);
+            }
+            codes[size + 1] = code;
+            codes[0] = size + 1;
+        }
+        indexedCount = labels.size();
+    }
+
+
+    /**
+     * @return the number of distinct q-grams indexed
+     */
+    public int getGramCount() { return postings.size(); }
+
+
+    @Override
+    public CandidateIndex.Searcher newSearcher() { return new GramSearcher(); }
+
+
+    private void append(String gram, int code, int count) {
+        int[] entries = postings.get(gram);
+        if (entries == null) {
+            entries = new int[5];
+            postings.put(gram, entries);
+        }
+        int size = entries[0];
+        if (size + 3 > entries.length) {
+            entries = Arrays.copyOf(entries, entries.length * 2 + 1);
+            postings.put(gram, entries);
+        }
+        entries[size + 1] = code;
+        entries[size + 2] = count;
+        entries[0] = size + 2;
+    }
+
+
+    // each padded q-gram of the label, and the number of times it occurs
+    private Map<String, Integer> grams(String label) {
+        StringBuilder padded = new StringBuilder(label.length() + 2 * (q - 1));
+        for (int i = 1; i < q; i++) padded.append(PAD);
+        padded.append(label);
+        for (int i = 1; i < q; i++) padded.append(PAD);
+        Map<String, Integer> grams = new HashMap<>();
+        for (int i = 0; i + q <= padded.length(); i++) {
+            grams.merge(padded.substring(i, i + q), 1, Integer::sum);
+        }
+        return grams;
+    }
+
+
+    /**
+     * Finds candidate pairs for one label at a time
+     */
+    private class GramSearcher implements CandidateIndex.Searcher {
+
+        private final int[] shared = new int[indexedCount];
+        private int[] touched = new int[64];
+
+        @Override
+        public int[] candidates(int code, int lowest) {
+            String label = labels.getLabel(code);
+            int length = label.length();
+            int touchedCount = 0;
+            for (Map.Entry<String, Integer> gram : grams(label).entrySet()) {
+                int[] entries = postings.get(gram.getKey());
+                if (entries == null) continue;
+                int count = gram.getValue();
+                for (int k = 1; k < entries[0]; k += 2) {
+                    int other = entries[k];
+                    if (other < lowest || other == code) continue;
+                    if (shared[other] == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touched.length * 2);
+                        }
+                        touched[touchedCount++] = other;
+                    }
+                    shared[other] += Math.min(count, entries[k + 1]);
+                }
+            }
+
+            int[] found = new int[Math.max(16, touchedCount)];
+            int foundCount = 0;
+            for (int i = 0; i < touchedCount; i++) {
+                int other = touched[i];
+                if (shared[other] >= minShared.applyAsInt(length,
+                        labels.getLabel(other).length())) {
+                    found[foundCount++] = other;
+                }
+            }
+
+            // pairs needing no shared q-grams at all, that weren't touched above
+            for (Map.Entry<Integer, int[]> entry : lengths.entrySet()) {
+                if (minShared.applyAsInt(length, entry.getKey()) > 0) continue;
+                int[] codes = entry.getValue();
+                for (int k = 1; k <= codes[0]; k++) {
+                    int other = codes[k];
+                    if (other >= lowest && other != code && shared[other] == 0) {
+                        if (foundCount == found.length) {
+                            found = Arrays.copyOf(found, found.length * 2);
+                        }
+                        found[foundCount++] = other;
+                    }
+                }
+            }
+
+            for (int i = 0; i < touchedCount; i++) {
+                shared[touched[i]] = 0;
+            }
+            Arrays.sort(found, 0, foundCount);
+            return Arrays.copyOf(found, foundCount);
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+/**
+ * The reference similarity backend, which fills the edit distance matrix cell by
+ * cell. It is always available, and is the one to fall back on if another backend
+ * is suspected of returning different values.
+ */
+public class ScalarSimilarityKernel implements SimilarityKernel {
+
+    public static final String NAME = "scalar";
+
+
+    @Override
+    public String getName() { return NAME; }
+
+
+    @Override
+    public int distance(char[] s1, char[] s2, int threshold) {
+        return EditDistance.bandedDistance(s1, s2, threshold);
+    }
+
+
+    @Override
+    public double jaroWinkler(char[] s1, char[] s2) {
+        return JaroWinkler.similarity(s1, s2);
+    }
+
+}
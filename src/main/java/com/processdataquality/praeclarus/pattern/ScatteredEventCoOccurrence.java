@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import com.processdataquality.praeclarus.annotations.Pattern;
+import com.processdataquality.praeclarus.annotations.Plugin;
+import com.processdataquality.praeclarus.plugin.Options;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds attribute values that look like events recorded on other events: values
+ * that, across many cases, are set almost only on events of one activity. For
+ * example, a 'Status' of "Escalated" recorded only on 'Update ticket' events suggests
+ * an escalation that should have been an event of its own.
+ * <p>
+ * The activity and attribute columns are first coded, each row's value replaced by
+ * its index in a dictionary of the column's distinct values. Cases are then split
+ * between threads, each of which counts, in one pass over its events, the cases in
+ * which each value occurs and in which it occurs with each activity.
+ * The counts are held in int arrays indexed by value code, and by the code of each
+ * (value, activity) pair seen, so their size depends on the number of distinct
+ * values rather than of events. The partitions' counts are merged at the end.
+ * @author Michael Adams
+ * @date 18/10/26
+ */
+@Plugin(
+        name = "Attribute Co-occurrence",
+        author = "Michael Adams",
+        version = "1.0",
+        synopsis = "Finds attribute values that are recorded almost only with one activity"
+)
+@Pattern(group = PatternGroup.SCATTERED_EVENT)
+public class ScatteredEventCoOccurrence extends AbstractEventPattern {
+
+    public ScatteredEventCoOccurrence() { }
+
+
+    @Override
+    protected Table find(EventDetectionRun run, Table table) {
+        double minConfidence = getDoubleOption("Min Confidence", 0.9);
+        double minSupport = getDoubleOption("Min Support", 0.05);
+        CaseIndex index = buildCaseIndex(run, table, false);
+        Column<?> activities = CaseIndex.getColumn(table, getStringOption("Activity Column"));
+        List<StringColumn> attributes = getAttributeColumns(table);
+
+        // one pass per column for its distinct values, coding each row's value so that
+        // the cases are counted without looking values up
+        LabelDictionary activityCodes = new LabelDictionary();
+        int[] activityOf = encode(activities, activityCodes, 0);
+        LabelDictionary[] valueCodes = new LabelDictionary[attributes.size()];
+        int[][] valueOf = new int[attributes.size()][];
+        int[] firstCode = new int[attributes.size() + 1];   // attribute values' code ranges
+        for (int a = 0; a < attributes.size(); a++) {
+            valueCodes[a] = new LabelDictionary();
+            valueOf[a] = encode(attributes.get(a), valueCodes[a], firstCode[a]);
+            firstCode[a + 1] = firstCode[a] + valueCodes[a].size();
+        }
+        int valueCount = firstCode[attributes.size()];
+
+        List<Counts> partitions = new CaseScheduler(getParallelism()).run(index,
+                (from, to) -> count(run, index, activityOf, valueOf, valueCount, from, to));
+        Counts counts = partitions.isEmpty() ? new Counts(valueCount) : partitions.get(0);
+        for (int p = 1; p < partitions.size(); p++) {
+            counts.merge(partitions.get(p));
+        }
+        run.getStatistics().set("Attribute values", valueCount);
+        run.getStatistics().set("Value-activity pairs", counts.pairIds.size());
+
+        // each value's most common activity, reported if frequent and exclusive enough
+        int[] bestPair = new int[valueCount];
+        Arrays.fill(bestPair, -1);
+        counts.pairIds.forEach((key, id) -> {
+            int value = (int) (key >>> 32);
+            if (bestPair[value] < 0 || counts.pairCases[id] > counts.pairCases[bestPair[value]]) {
+                bestPair[value] = id;
+            }
+        });
+        int[] activityOfPair = new int[counts.pairIds.size()];
+        counts.pairIds.forEach((key, id) -> activityOfPair[id] = (int) key);
+
+        Table result = createResultTable();
+        long affectedEvents = 0;
+        int caseCount = Math.max(1, index.getCaseCount());
+        for (int a = 0; a < attributes.size(); a++) {
+            for (int v = firstCode[a]; v < firstCode[a + 1]; v++) {
+                int pair = bestPair[v];
+                if (pair < 0) continue;
+                double confidence = (double) counts.pairCases[pair] / counts.valueCases[v];
+                double support = (double) counts.pairCases[pair] / caseCount;
+                if (confidence < minConfidence || support < minSupport) continue;
+                result.stringColumn(0).append(attributes.get(a).name());
+                result.stringColumn(1).append(valueCodes[a].getLabel(v - firstCode[a]));
+                result.stringColumn(2).append(activityCodes.getLabel(activityOfPair[pair]));
+                result.intColumn(3).append(counts.pairCases[pair]);
+                result.doubleColumn(4).append(confidence);
+                result.doubleColumn(5).append(support);
+                affectedEvents += counts.pairEvents[pair];
+            }
+        }
+        run.setMetrics(new DetectionMetrics(affectedEvents, index.getEventCount(), -1, -1));
+        return result;
+    }
+
+
+    // counts, for the cases in [from, to), the cases holding each value and each
+    // (value, activity) pair, counting each case once
+    private Counts count(EventDetectionRun run, CaseIndex index, int[] activityOf,
+                         int[][] valueOf, int valueCount, int from, int to) {
+        Counts counts = new Counts(valueCount);
+        int[] valueSeenIn = new int[valueCount];               // the last case counted
+        Arrays.fill(valueSeenIn, -1);
+        for (int c = from; c < to && !run.isStopping(); c++) {
+            for (int p = index.getStart(c); p < index.getEnd(c); p++) {
+                int row = index.getRow(p);
+                int activity = activityOf[row];
+                for (int[] values : valueOf) {
+                    int value = values[row];
+                    if (value < 0) continue;
+                    if (valueSeenIn[value] != c) {
+                        valueSeenIn[value] = c;
+                        counts.valueCases[value]++;
+                    }
+                    if (activity >= 0) {
+                        counts.addPair(value, activity, c);
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+
+    // the code of each row's value, offset by firstCode, or -1 where it is missing
+    private int[] encode(Column<?> column, LabelDictionary codes, int firstCode) {
+        int[] codeOf = new int[column.size()];
+        for (int i = 0; i < codeOf.length; i++) {
+            codeOf[i] = column.isMissing(i) ? -1 : firstCode + codes.add(column.getString(i));
+        }
+        return codeOf;
+    }
+
+
+    // the string columns named in the 'Attribute Columns' option, or if it is empty all
+    // those other than the case, activity, timestamp and lifecycle columns
+    private List<StringColumn> getAttributeColumns(Table table) {
+        List<StringColumn> columns = new ArrayList<>();
+        String names = getStringOption("Attribute Columns");
+        if (names != null && !names.trim().isEmpty()) {
+            for (String name : names.split(",")) {
+                Column<?> column = CaseIndex.getColumn(table, name.trim());
+                if (!(column instanceof StringColumn)) {
+                    throw new IllegalArgumentException("Attribute column '" + name.trim() +
+                            "' must hold text values");
+                }
+                columns.add((StringColumn) column);
+            }
+            return columns;
+        }
+        List<String> excluded = Arrays.asList(getStringOption("Case Column"),
+                getStringOption("Activity Column"), getStringOption("Timestamp Column"),
+                getStringOption("Lifecycle Column"));
+        for (Column<?> column : table.columns()) {
+            if (column instanceof StringColumn && !excluded.contains(column.name())) {
+                columns.add((StringColumn) column);
+            }
+        }
+        return columns;
+    }
+
+
+    private Table createResultTable() {
+        return Table.create("Result").addColumns(
+                StringColumn.create("Attribute"),
+                StringColumn.create("Value"),
+                StringColumn.create("Activity"),
+                IntColumn.create("Cases"),
+                DoubleColumn.create("Confidence"),
+                DoubleColumn.create("Support")
+        );
+    }
+
+
+    @Override
+    public Options getOptions() {
+        Options options = super.getOptions();
+        if (!options.containsKey("Attribute Columns")) {
+            options.addDefault("Attribute Columns", "");
+            options.addDefault("Lifecycle Column", "lifecycle:transition");
+            options.addDefault("Min Confidence", 0.9);
+            options.addDefault("Min Support", 0.05);
+        }
+        return options;
+    }
+
+
+    /**
+     * Co-occurrence counts for a partition of cases. Each (value, activity) pair seen is
+     * given a code, packed as value << 32 | activity in a primitive map, which indexes
+     * the pair's counts.
+     */
+    private static class Counts {
+        final int[] valueCases;                   // cases holding each value
+        final LongIntHashMap pairIds = new LongIntHashMap();
+        int[] pairCases = new int[64];            // cases holding each pair
+        int[] pairEvents = new int[64];           // events holding each pair
+        int[] pairSeenIn = new int[64];           // the last case counted for each pair
+
+        Counts(int valueCount) {
+            valueCases = new int[valueCount];
+        }
+
+        void addPair(int value, int activity, int caseCode) {
+            int id = pairId((long) value << 32 | activity);
+            pairEvents[id]++;
+            if (pairSeenIn[id] != caseCode) {
+                pairSeenIn[id] = caseCode;
+                pairCases[id]++;
+            }
+        }
+
+        // adds another partition's counts to these
+        void merge(Counts other) {
+            for (int v = 0; v < valueCases.length; v++) {
+                valueCases[v] += other.valueCases[v];
+            }
+            other.pairIds.forEach((key, otherId) -> {
+                int id = pairId(key);
+                pairCases[id] += other.pairCases[otherId];
+                pairEvents[id] += other.pairEvents[otherId];
+            });
+        }
+
+        // the code of a pair, given a new one with zero counts if not seen before
+        private int pairId(long key) {
+            int id = pairIds.putIfAbsent(key, pairIds.size());
+            if (id < 0) {
+                id = pairIds.size() - 1;
+                if (id == pairCases.length) {
+                    pairCases = Arrays.copyOf(pairCases, id * 2);
+                    pairEvents = Arrays.copyOf(pairEvents, id * 2);
+                    pairSeenIn = Arrays.copyOf(pairSeenIn, id * 2);
+                }
+                pairSeenIn[id] = -1;
+            }
+            return id;
+        }
+    }
+
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A persistent cache of similarity scores between pairs of labels, held in a
+ * memory-mapped file so that scores computed in one run can be reused by later runs.
+ * <p>
+ * Entries are keyed by a 128-bit hash of the algorithm name (which should include
+ * any parameters that change the score) and the two labels. Each entry holds either
+ * an exact score, or a lower bound on a score (for example, where a bounded edit
+ * distance only established that the distance exceeds some threshold), so that a
+ * cached bound is never mistaken for an exact score when the threshold changes.
+ * <p>
+ * The file holds a fixed number of buckets of eight entries each. When a bucket is
+ * full, its least recently used entry is evicted, which keeps the file size bounded.
+ * The cache may be used from several threads at once.
+ */
+public class SimilarityCache implements Closeable {
+
+    private static final long MAGIC = 0x5044515349434143L;      // "PDQSICAC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;      // magic, version, buckets, clock
+    private static final int SLOT_SIZE = 40;        // key1, key2, value, stamp, kind
+    private static final int BUCKET_SLOTS = 8;
+    private static final int LOCK_STRIPES = 256;
+
+    private static final int EMPTY = 0;
+    private static final int EXACT = 1;
+    private static final int LOWER_BOUND = 2;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int bucketCount;
+    private final AtomicLong clock;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+
+    /**
+     * Opens a cache file, creating it if it doesn't exist. If the file exists but was
+     * created with a different capacity, or is not a cache file, it is cleared.
+     * @param file the path of the cache file
+     * @param capacity the maximum number of entries to hold
+     * @throws IOException if the file can't be opened or mapped
+     */
+    public SimilarityCache(Path file, int capacity) throws IOException {
+        bucketCount = Math.max(1, (capacity + BUCKET_SLOTS - 1) / BUCKET_SLOTS);
+        long size = HEADER_SIZE + (long) bucketCount * BUCKET_SLOTS * SLOT_SIZE;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cache capacity is too large: " + capacity);
+        }
+        for (int i = 0; i < LOCK_STRIPES; i++) locks[i] = new Object();
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean valid = channel.size() == size;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        valid = valid && buffer.getLong(0) == MAGIC && buffer.getInt(8) == VERSION
+                && buffer.getInt(12) == bucketCount;
+        if (!valid) {
+            for (long i = HEADER_SIZE; i < size; i += 8) {
+                buffer.putLong((int) i, 0L);
+            }
+            buffer.putLong(0, MAGIC);
+            buffer.putInt(8, VERSION);
+            buffer.putInt(12, bucketCount);
+            buffer.putLong(16, 0L);
+        }
+        clock = new AtomicLong(buffer.getLong(16));
+    }
+
+
+    /**
+     * Opens the cache file named by a plugin's 'Cache File' option, which must be a
+     * writable file, or a new file in a writable directory
+     * @param fileName the name of the file, or null or blank for no cache
+     * @param capacity the maximum number of entries to hold
+     * @return the cache, or null if no file is named
+     * @throws IllegalArgumentException if the name isn't a writable file, or the file
+     * can't be opened
+     */
+    public static SimilarityCache open(String fileName, int capacity) {
+        if (fileName == null || fileName.trim().isEmpty()) {
+            return null;
+        }
+        Path file;
+        try {
+            file = Paths.get(fileName.trim()).toAbsolutePath();
+        }
+        catch (InvalidPathException e) {
+            throw new IllegalArgumentException("The similarity cache file name '" + fileName
+                    + "' is not a valid path", e);
+        }
+        Path directory = file.getParent();
+        boolean writable = Files.exists(file) ?
+                Files.isRegularFile(file) && Files.isWritable(file) :
+                directory != null && Files.isDirectory(directory) && Files.isWritable(directory);
+        if (!writable) {
+            throw new IllegalArgumentException("The similarity cache file '" + fileName
+                    + "' must be a writable file, or a new file in a writable directory");
+        }
+        try {
+            return new SimilarityCache(file, Math.max(1, capacity));
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("Unable to open the similarity cache file '"
+                    + fileName + "': " + e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * A cached score, which is either exact or a lower bound
+     */
+    public static class Entry {
+        private final double value;
+        private final boolean exact;
+
+        private Entry(double value, boolean exact) {
+            this.value = value;
+            this.exact = exact;
+        }
+
+        public double getValue() { return value; }
+
+        public boolean isExact() { return exact; }
+    }
+
+
+    /**
+     * Gets a cached score
+     * @param algorithm the name and parameters of the algorithm that computed the score
+     * @param s1 the first label
+     * @param s2 the second label
+     * @return the cached entry, or null if there is none
+     */
+    public Entry get(String algorithm, String s1, String s2) {
+        long key1 = hash(algorithm, s1, s2, 0x9E3779B97F4A7C15L);
+        long key2 = hash(algorithm, s1, s2, 0xC2B2AE3D27D4EB4FL);
+        int bucket = bucketOf(key1);
+        synchronized (locks[bucket % LOCK_STRIPES]) {
+            int slot = find(bucket, key1, key2);
+            if (slot < 0) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            buffer.putLong(slot + 24, clock.incrementAndGet());
+            return new Entry(buffer.getDouble(slot + 16), buffer.getInt(slot + 32) == EXACT);
+        }
+    }
+
+
+    /**
+     * Caches an exact score
+     */
+    public void put(String algorithm, String s1, String s2, double score) {
+        store(algorithm, s1, s2, score, EXACT);
+    }
+
+
+    /**
+     * Caches a lower bound on a score. An existing exact score is not replaced.
+     */
+    public void putLowerBound(String algorithm, String s1, String s2, double bound) {
+        store(algorithm, s1, s2, bound, LOWER_BOUND);
+    }
+
+
+    public long getHits() { return hits.sum(); }
+
+    public long getMisses() { return misses.sum(); }
+
+    public long getEvictions() { return evictions.sum(); }
+
+
+    /**
+     * @return the maximum number of entries the cache can hold
+     */
+    public int getCapacity() { return bucketCount * BUCKET_SLOTS; }
+
+
+    /**
+     * Writes any changes to the file and closes it
+     */
+    @Override
+    public void close() throws IOException {
+        buffer.putLong(16, clock.get());
+        buffer.force();
+        channel.close();
+    }
+
+
+    /**
+     * Records how useful the cache has been
+     * @param statistics receives the cache's hits, misses and evictions
+     */
+    public void recordStatistics(DetectionStatistics statistics) {
+        statistics.set("Cache hits", getHits());
+        statistics.set("Cache misses", getMisses());
+        statistics.set("Cache evictions", getEvictions());
+    }
+
+
+    private void store(String algorithm, String s1, String s2, double value, int kind) {
+        long key1 = hash(algorithm, s1, s2, 0x9E3779B97F4A7C15L);
+        long key2 = hash(algorithm, s1, s2, 0xC2B2AE3D27D4EB4FL);
+        int bucket = bucketOf(key1);
+        synchronized (locks[bucket % LOCK_STRIPES]) {
+            int slot = find(bucket, key1, key2);
+            if (slot < 0) {
+                slot = freeOrOldestSlot(bucket);
+            }
+            else if (kind == LOWER_BOUND && buffer.getInt(slot + 32) == EXACT) {
+                return;                                  // already know more than that
+            }
+            buffer.putLong(slot, key1);
+            buffer.putLong(slot + 8, key2);
+            buffer.putDouble(slot + 16, value);
+            buffer.putLong(slot + 24, clock.incrementAndGet());
+            buffer.putInt(slot + 32, kind);
+        }
+    }
+
+
+    // the offset of the slot holding the key, or -1 if it isn't in the bucket
+    private int find(int bucket, long key1, long key2) {
+        int slot = slotOffset(bucket, 0);
+        for (int i = 0; i < BUCKET_SLOTS; i++, slot += SLOT_SIZE) {
+            if (buffer.getInt(slot + 32) != EMPTY && buffer.getLong(slot) == key1
+                    && buffer.getLong(slot + 8) == key2) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+
+    // an empty slot in the bucket, else the least recently used one
+    private int freeOrOldestSlot(int bucket) {
+        int oldest = -1;
+        long oldestStamp = Long.MAX_VALUE;
+        int slot = slotOffset(bucket, 0);
+        for (int i = 0; i < BUCKET_SLOTS; i++, slot += SLOT_SIZE) {
+            if (buffer.getInt(slot + 32) == EMPTY) return slot;
+            long stamp = buffer.getLong(slot + 24);
+            if (stamp < oldestStamp) {
+                oldestStamp = stamp;
+                oldest = slot;
+            }
+        }
+        evictions.increment();
+        return oldest;
+    }
+
+
+    private int bucketOf(long key1) {
+        return (int) ((key1 >>> 1) % bucketCount);
+    }
+
+
+    private int slotOffset(int bucket, int index) {
+        return HEADER_SIZE + (bucket * BUCKET_SLOTS + index) * SLOT_SIZE;
+    }
+
+
+    private long hash(String algorithm, String s1, String s2, long seed) {
+        long h = seed;
+        h = hash(h, algorithm);
+        h = hash(h, s1);
+        h = hash(h, s2);
+        return h;
+    }
+
+
+    // folds a string, and its length as a separator, into the hash
+    private long hash(long h, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001B3L;
+        }
+        h = (h ^ s.length()) * 0x100000001B3L;
+        h ^= h >>> 29;
+        return h * 0xBF58476D1CE4E5B9L;
+    }
+
+}
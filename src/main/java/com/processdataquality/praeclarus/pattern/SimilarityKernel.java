@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+/**
+ * The character-level comparisons made by the distorted label patterns, working on
+ * the characters of each distinct label rather than on strings. The backends are
+ * listed in {@link SimilarityKernels}, and must all return exactly the same values.
+ */
+public interface SimilarityKernel {
+
+    /**
+     * @return the name by which this backend can be selected
+     */
+    String getName();
+
+
+    /**
+     * Calculates the edit distance between two labels if it is no more than a threshold
+     * @param s1 the characters of a label
+     * @param s2 the characters of another label
+     * @param threshold the maximum distance of interest, or Integer.MAX_VALUE for the
+     *                  exact distance
+     * @return the distance, or -1 if it is greater than threshold
+     */
+    int distance(char[] s1, char[] s2, int threshold);
+
+
+    /**
+     * Calculates the edit distances between one label and each of a range of others.
+     * Backends should override this where comparing one label with many can share
+     * work between the comparisons.
+     * @param query the characters of the label to compare with the others
+     * @param candidates the characters of the other labels
+     * @param from the index of the first candidate to compare (inclusive)
+     * @param to the index of the last candidate to compare (exclusive)
+     * @param threshold the maximum distance of interest
+     * @param out receives the distance to each candidate j at out[j], or -1 where it
+     *            is greater than threshold
+     */
+    default void distances(char[] query, char[][] candidates, int from, int to,
+                           int threshold, int[] out) {
+        for (int j = from; j < to; j++) {
+            out[j] = distance(query, candidates[j], threshold);
+        }
+    }
+
+
+    /**
+     * @param s1 the characters of a label
+     * @param s2 the characters of another label
+     * @return the Jaro-Winkler similarity of the labels
+     */
+    double jaroWinkler(char[] s1, char[] s2);
+
+}
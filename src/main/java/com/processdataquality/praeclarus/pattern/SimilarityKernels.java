@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The similarity backends built in to this application: the bit-parallel backend,
+ * used by default, and the scalar backend it is checked against.
+ */
+public final class SimilarityKernels {
+
+    private static final SimilarityKernel DEFAULT_KERNEL = new BitParallelSimilarityKernel();
+
+    private static final List<SimilarityKernel> ALL = Collections.unmodifiableList(
+            Arrays.asList(DEFAULT_KERNEL, new ScalarSimilarityKernel()));
+
+    private SimilarityKernels() { }
+
+
+    /**
+     * @return the backend used by the distorted label patterns
+     */
+    public static SimilarityKernel getDefault() { return DEFAULT_KERNEL; }
+
+
+    /**
+     * @param name the name of a backend
+     * @return the backend with that name
+     * @throws IllegalArgumentException if there is no such backend
+     */
+    public static SimilarityKernel get(String name) {
+        for (SimilarityKernel kernel : ALL) {
+            if (kernel.getName().equalsIgnoreCase(name)) {
+                return kernel;
+            }
+        }
+        throw new IllegalArgumentException("No similarity kernel named: " + name);
+    }
+
+
+    /**
+     * @return every backend, the default first
+     */
+    public static List<SimilarityKernel> getAll() { return ALL; }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A symmetric delete index (as used by SymSpell) for finding strings within a small
+ * edit distance of each other. Every string that can be made by deleting up to k
+ * characters from each indexed label is hashed to the labels it came from. Two labels
+ * within edit distance k always share at least one such deletion variant, so the
+ * labels sharing a variant with a query are a complete set of candidates, which can
+ * then be confirmed with the exact distance.
+ * <p>
+ * The number of variants grows quickly with k and label length (about C(n, k) for a
+ * label of length n), so the index only supports up to {@value #MAX_DELETES} deletes.
+ * Once built, the index may be queried from several threads at once.
+ */
+public class SymmetricDeleteIndex {
+
+    // The most deletes supported, beyond which the variants may not fit in memory
+    public static final int MAX_DELETES = 2;
+
+    // Rough JVM object sizes, used to estimate the memory held by the index
+    private static final int STRING_OVERHEAD = 56;     // String + backing array headers
+    private static final int ENTRY_OVERHEAD = 56;      // map entry, table slot, array header
+
+    private final int maxDeletes;
+    private final Map<String, int[]> postings = new HashMap<>();   // [0] holds the size
+    private long variantCount;
+    private long memoryEstimate;
+
+
+    /**
+     * @param maxDeletes the maximum edit distance the index will be queried for
+     * @throws IllegalArgumentException if maxDeletes is negative or more than
+     * {@link #MAX_DELETES}
+     */
+    public SymmetricDeleteIndex(int maxDeletes) {
+        if (maxDeletes < 0) {
+            throw new IllegalArgumentException("The number of deletes cannot be negative");
+        }
+        if (maxDeletes > MAX_DELETES) {
+            throw new IllegalArgumentException("A symmetric delete index supports at most "
+                    + MAX_DELETES + " deletes");
+        }
+        this.maxDeletes = maxDeletes;
+    }
+
+
+    /**
+     * Adds a label and all its deletion variants to the index
+     * @param label the label to add
+     * @param code an identifier for the label, returned by queries
+     */
+    public void add(String label, int code) {
+        for (String variant : variants(label)) {
+            int[] codes = postings.get(variant);
+            if (codes == null) {
+                codes = new int[3];
+                postings.put(variant, codes);
+                memoryEstimate += STRING_OVERHEAD + 2L * variant.length() + ENTRY_OVERHEAD
+                        + 4L * codes.length;
+            }
+            int size = codes[0];
+            if (size + 1 == codes.length) {
+                int[] grown = Arrays.copyOf(codes, codes.length * 2);
+                memoryEstimate += 4L * (grown.length - codes.length);
+                codes = grown;
+                postings.put(variant, codes);
+            }
+            codes[size + 1] = code;
+            codes[0] = size + 1;
+            variantCount++;
+        }
+    }
+
+
+    /**
+     * Gets the labels that share a deletion variant with a string
+     * @param label the string to match
+     * @return the codes of the candidate labels, in ascending order without duplicates
+     */
+    public int[] candidates(String label) {
+        int[] found = new int[16];
+        int count = 0;
+        for (String variant : variants(label)) {
+            int[] codes = postings.get(variant);
+            if (codes == null) continue;
+            int size = codes[0];
+            if (count + size > found.length) {
+                found = Arrays.copyOf(found, Math.max(found.length * 2, count + size));
+            }
+            System.arraycopy(codes, 1, found, count, size);
+            count += size;
+        }
+        Arrays.sort(found, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || found[i] != found[distinct - 1]) {
+                found[distinct++] = found[i];
+            }
+        }
+        return Arrays.copyOf(found, distinct);
+    }
+
+
+    /**
+     * @return the maximum edit distance the index can be queried for
+     */
+    public int getMaxDeletes() { return maxDeletes; }
+
+
+    /**
+     * @return the number of (variant, label) entries in the index
+     */
+    public long getVariantCount() { return variantCount; }
+
+
+    /**
+     * @return the number of distinct deletion variants in the index
+     */
+    public int getKeyCount() { return postings.size(); }
+
+
+    /**
+     * @return an estimate of the heap memory held by the index, in bytes
+     */
+    public long getMemoryEstimate() { return memoryEstimate; }
+
+
+    // the label, and each distinct string made by deleting up to maxDeletes chars
+    private Set<String> variants(String label) {
+        Set<String> variants = new HashSet<>();
+        variants.add(label);
+        addDeletes(label, 0, maxDeletes, variants);
+        return variants;
+    }
+
+
+    // deleting only at or after 'start' avoids generating the same variant repeatedly
+    private void addDeletes(String s, int start, int remaining, Set<String> variants) {
+        if (remaining == 0) return;
+        for (int i = start; i < s.length(); i++) {
+            String deleted = s.substring(0, i) + s.substring(i + 1);
+            variants.add(deleted);
+            addDeletes(deleted, i, remaining - 1, variants);
+        }
+    }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import com.processdataquality.praeclarus.annotations.Pattern;
+import com.processdataquality.praeclarus.annotations.Plugin;
+import com.processdataquality.praeclarus.plugin.Options;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds events whose timestamps contradict the order in which they were recorded
+ * within their case: an event timestamped earlier than one recorded before it, or
+ * the completion of an activity timestamped before its start.
+ * <p>
+ * The log is grouped by case into primitive arrays of rows and epoch milliseconds,
+ * then each case is checked in a single pass over its events in log order, with the
+ * cases split between threads. Only the events found are turned into result rows.
+ * @author Michael Adams
+ * @date 18/10/26
+ */
+@Plugin(
+        name = "Event Order",
+        author = "Michael Adams",
+        version = "1.0",
+        synopsis = "Finds events whose timestamps contradict their order within a case"
+)
+@Pattern(group = PatternGroup.TIME_TRAVEL)
+public class TimeTravelEventOrder extends AbstractEventPattern {
+
+    public static final String BEFORE_PREDECESSOR = "Before predecessor";
+    public static final String COMPLETE_BEFORE_START = "Complete before start";
+
+    // The lifecycle transitions of interest, by row
+    private static final byte OTHER = 0;
+    private static final byte START = 1;
+    private static final byte COMPLETE = 2;
+
+    // The kinds of problem found
+    private static final int OUT_OF_ORDER = 0;
+    private static final int ENDS_BEFORE_START = 1;
+
+    public TimeTravelEventOrder() { }
+
+
+    @Override
+    protected Table find(EventDetectionRun run, Table table) {
+        CaseIndex index = buildCaseIndex(run, table, false);
+        Column<?> activities = getOptionalColumn(table, "Activity Column");
+        LabelDictionary activityCodes = new LabelDictionary();
+        int[] activityOf = readActivities(activities, activityCodes, table.rowCount());
+        byte[] transitions = readTransitions(getOptionalColumn(table, "Lifecycle Column"),
+                table.rowCount());
+
+        List<Findings> found = new CaseScheduler(getParallelism()).run(index,
+                (from, to) -> findInCases(run, index, activityOf, activityCodes.size(),
+                        transitions, from, to));
+
+        Table result = createResultTable();
+        Column<?> times = CaseIndex.getColumn(table, getStringOption("Timestamp Column"));
+        long affectedEvents = 0;
+        long affectedCases = 0;
+        for (Findings findings : found) {
+            for (int i = 0; i < findings.rows.size(); i++) {
+                int row = findings.rows.get(i);
+                result.intColumn(0).append(row);
+                result.stringColumn(1).append(index.getCaseId(findings.caseCodes.get(i)));
+                result.stringColumn(2).append(activities != null ? activities.getString(row) : "");
+                result.stringColumn(3).append(times.getString(row));
+                result.stringColumn(4).append(findings.problems.get(i) == ENDS_BEFORE_START ?
+                        COMPLETE_BEFORE_START : BEFORE_PREDECESSOR);
+                result.intColumn(5).append(findings.related.get(i));
+            }
+            affectedEvents += findings.affectedEvents;
+            affectedCases += findings.affectedCases;
+        }
+        run.setMetrics(new DetectionMetrics(affectedEvents, index.getEventCount(),
+                affectedCases, index.getCaseCount()));
+        return result;
+    }
+
+
+    // checks each case in [from, to) in one pass over its events in log order
+    private Findings findInCases(EventDetectionRun run, CaseIndex index, int[] activityOf,
+                                 int activityCount, byte[] transitions, int from, int to) {
+        Findings findings = new Findings();
+        int[] startRow = new int[activityCount];         // each activity's open start
+        long[] startTime = new long[activityCount];
+        Arrays.fill(startRow, -1);
+        IntList opened = new IntList();
+        for (int c = from; c < to && !run.isStopping(); c++) {
+            long latest = CaseIndex.NO_TIME;
+            int latestRow = -1;
+            boolean caseAffected = false;
+            for (int p = index.getStart(c); p < index.getEnd(c); p++) {
+                long time = index.getTime(p);
+                if (time == CaseIndex.NO_TIME) continue;
+                int row = index.getRow(p);
+                boolean affected = false;
+                if (time < latest) {
+                    findings.add(row, c, latestRow, OUT_OF_ORDER);
+                    affected = true;
+                }
+                else {
+                    latest = time;
+                    latestRow = row;
+                }
+
+                int activity = activityOf != null ? activityOf[row] : -1;
+                if (activity >= 0 && transitions != null) {
+                    if (transitions[row] == START) {
+                        if (startRow[activity] < 0) opened.add(activity);
+                        startRow[activity] = row;
+                        startTime[activity] = time;
+                    }
+                    else if (transitions[row] == COMPLETE && startRow[activity] >= 0) {
+                        if (time < startTime[activity]) {
+                            findings.add(row, c, startRow[activity], ENDS_BEFORE_START);
+                            affected = true;
+                        }
+                        startRow[activity] = -1;
+                    }
+                }
+                if (affected) {
+                    findings.affectedEvents++;
+                    caseAffected = true;
+                }
+            }
+            for (int i = 0; i < opened.size(); i++) {          // ready for the next case
+                startRow[opened.get(i)] = -1;
+            }
+            opened.clear();
+            if (caseAffected) findings.affectedCases++;
+        }
+        return findings;
+    }
+
+
+    // the code of each row's activity, or null if there is no activity column
+    private int[] readActivities(Column<?> activities, LabelDictionary codes, int rowCount) {
+        if (activities == null) return null;
+        int[] activityOf = new int[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            activityOf[i] = activities.isMissing(i) ? -1 : codes.add(activities.getString(i));
+        }
+        return activityOf;
+    }
+
+
+    // the lifecycle transition of each row, or null if there is no lifecycle column
+    private byte[] readTransitions(Column<?> lifecycle, int rowCount) {
+        if (lifecycle == null) return null;
+        byte[] transitions = new byte[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            String transition = lifecycle.isMissing(i) ? null : lifecycle.getString(i);
+            if ("start".equalsIgnoreCase(transition)) {
+                transitions[i] = START;
+            }
+            else if ("complete".equalsIgnoreCase(transition)) {
+                transitions[i] = COMPLETE;
+            }
+            else {
+                transitions[i] = OTHER;
+            }
+        }
+        return transitions;
+    }
+
+
+    // the column named by an option, or null if the table doesn't have it
+    private Column<?> getOptionalColumn(Table table, String key) {
+        String name = getStringOption(key);
+        return name != null && table.columnNames().contains(name) ? table.column(name) : null;
+    }
+
+
+    private Table createResultTable() {
+        return Table.create("Result").addColumns(
+                IntColumn.create("Row"),
+                StringColumn.create("Case"),
+                StringColumn.create("Activity"),
+                StringColumn.create("Timestamp"),
+                StringColumn.create("Problem"),
+                IntColumn.create("Related Row")
+        );
+    }
+
+
+    @Override
+    public Options getOptions() {
+        Options options = super.getOptions();
+        if (!options.containsKey("Lifecycle Column")) {
+            options.addDefault("Lifecycle Column", "lifecycle:transition");
+        }
+        return options;
+    }
+
+
+    /**
+     * The events found in a partition of cases, with the kind of problem and the row
+     * each contradicts
+     */
+    private static class Findings {
+        final IntList rows = new IntList();
+        final IntList caseCodes = new IntList();
+        final IntList related = new IntList();
+        final IntList problems = new IntList();
+        long affectedEvents;
+        long affectedCases;
+
+        void add(int row, int caseCode, int relatedRow, int problem) {
+            rows.add(row);
+            caseCodes.add(caseCode);
+            related.add(relatedRow);
+            problems.add(problem);
+        }
+    }
+
+}
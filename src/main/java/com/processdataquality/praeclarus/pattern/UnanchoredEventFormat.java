@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import com.processdataquality.praeclarus.annotations.Pattern;
+import com.processdataquality.praeclarus.annotations.Plugin;
+import com.processdataquality.praeclarus.plugin.Options;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds timestamps recorded in a different format, or with a differently written time
+ * zone, from most of the log. The format of each raw timestamp value is inferred from
+ * the candidates in the 'Formats' option, and the rows whose format differs from the
+ * most common one, or that match no candidate, are reported.
+ * <p>
+ * Values are first reduced to their shape, with each digit written as 9 and each
+ * letter as a, so that "2021-05-11 10:31:02" has the shape "9999-99-99 99:99:99".
+ * The candidates are tried only against the first few values of each distinct shape,
+ * dropping any that fail, and the first candidate left gives the format of every value
+ * of that shape. Rows are never parsed individually, so a large column is checked in
+ * one pass plus a pass over the rows found.
+ * @author Michael Adams
+ * @date 18/10/26
+ */
+@Plugin(
+        name = "Timestamp Format",
+        author = "Michael Adams",
+        version = "1.0",
+        synopsis = "Finds timestamps recorded in a format other than the log's usual one"
+)
+@Pattern(group = PatternGroup.UNANCHORED_EVENT)
+public class UnanchoredEventFormat extends AbstractEventPattern {
+
+    public static final String UNRECOGNISED = "Unrecognised";
+
+    // The candidate formats tried by default, most specific first
+    private static final String DEFAULT_FORMATS = String.join(" | ",
+            "yyyy-MM-dd'T'HH:mm:ss.SSSXXX", "yyyy-MM-dd'T'HH:mm:ssXXX",
+            "yyyy-MM-dd'T'HH:mm:ss.SSS", "yyyy-MM-dd'T'HH:mm:ss",
+            "yyyy-MM-dd HH:mm:ss.SSSXXX", "yyyy-MM-dd HH:mm:ssXXX",
+            "yyyy-MM-dd HH:mm:ss.SSS", "yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd HH:mm",
+            "yyyy/MM/dd HH:mm:ss", "dd/MM/yyyy HH:mm:ss", "MM/dd/yyyy HH:mm:ss",
+            "dd/MM/yyyy HH:mm", "MM/dd/yyyy HH:mm", "dd-MM-yyyy HH:mm:ss",
+            "dd.MM.yyyy HH:mm:ss", "yyyy-MM-dd", "dd/MM/yyyy", "MM/dd/yyyy");
+
+    // The values of each shape that candidates are tried against
+    private static final int SAMPLES_PER_SHAPE = 20;
+
+    // The formats found by the most recent detection, with their row counts
+    private volatile Table formatDistribution = createDistributionTable();
+
+    public UnanchoredEventFormat() { }
+
+
+    @Override
+    protected Table find(EventDetectionRun run, Table table) {
+        Column<?> values = CaseIndex.getColumn(table, getStringOption("Timestamp Column"));
+        List<String> patterns = getPatterns();
+        List<DateTimeFormatter> formatters = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            try {
+                formatters.add(DateTimeFormatter.ofPattern(pattern));
+            }
+            catch (IllegalArgumentException iae) {
+                throw new IllegalArgumentException("Invalid timestamp format in the " +
+                        "'Formats' option: " + pattern, iae);
+            }
+        }
+
+        // one pass to find the shape of each row, trying candidates on early values
+        ShapeTable shapes = new ShapeTable(formatters);
+        int rowCount = table.rowCount();
+        int[] shapeOf = new int[rowCount];
+        long present = 0;
+        for (int i = 0; i < rowCount && !run.isStopping(); i++) {
+            String value = values.isMissing(i) ? null : values.getString(i);
+            if (value == null || value.isEmpty()) {
+                shapeOf[i] = -1;
+                continue;
+            }
+            shapeOf[i] = shapes.add(value);
+            present++;
+        }
+
+        // count rows by format, and find the most common
+        long[] formatRows = new long[patterns.size() + 1];          // last: unrecognised
+        for (Shape shape : shapes.shapes) {
+            formatRows[formatIndex(shape, patterns.size())] += shape.rows;
+        }
+        int dominant = -1;
+        for (int f = 0; f < patterns.size(); f++) {
+            if (formatRows[f] > 0 && (dominant < 0 || formatRows[f] > formatRows[dominant])) {
+                dominant = f;
+            }
+        }
+        Table distribution = createDistributionTable();
+        for (int f = 0; f <= patterns.size(); f++) {
+            if (formatRows[f] == 0) continue;
+            String name = f < patterns.size() ? patterns.get(f) : UNRECOGNISED;
+            distribution.stringColumn(0).append(name);
+            distribution.intColumn(1).append((int) formatRows[f]);
+            distribution.doubleColumn(2).append((double) formatRows[f] / present);
+            run.getStatistics().set("Format " + name, formatRows[f]);
+        }
+        run.getStatistics().set("Shapes", shapes.shapes.size());
+
+        // one pass over the rows to report those not in the most common format
+        Table result = createResultTable();
+        Column<?> caseIds = getCaseColumn(table);
+        LabelDictionary cases = caseIds != null ? new LabelDictionary() : null;
+        BitSet affectedCases = new BitSet();
+        long affectedEvents = 0;
+        for (int i = 0; i < rowCount && !run.isStopping(); i++) {
+            int caseCode = cases != null && !caseIds.isMissing(i) ?
+                    cases.add(caseIds.getString(i)) : -1;
+            if (shapeOf[i] < 0) continue;
+            Shape shape = shapes.shapes.get(shapeOf[i]);
+            if (shape.format == dominant && dominant >= 0) continue;
+            result.intColumn(0).append(i);
+            result.stringColumn(1).append(values.getString(i));
+            result.stringColumn(2).append(shape.format >= 0 ?
+                    patterns.get(shape.format) : UNRECOGNISED);
+            result.stringColumn(3).append(shape.toString());
+            affectedEvents++;
+            if (caseCode >= 0) affectedCases.set(caseCode);
+        }
+        run.setMetrics(new DetectionMetrics(affectedEvents, present,
+                cases != null ? affectedCases.cardinality() : -1,
+                cases != null ? cases.size() : -1));
+        formatDistribution = distribution;
+        return result;
+    }
+
+
+    /**
+     * @return the formats found by the most recent detection, with the number and
+     * fraction of rows in each
+     */
+    public Table getFormatDistribution() { return formatDistribution; }
+
+
+    // the candidate patterns from the 'Formats' option, separated by '|'
+    private List<String> getPatterns() {
+        String option = getStringOption("Formats");
+        List<String> patterns = new ArrayList<>();
+        for (String pattern : (option != null ? option : DEFAULT_FORMATS).split("\\|")) {
+            if (!pattern.trim().isEmpty()) {
+                patterns.add(pattern.trim());
+            }
+        }
+        if (patterns.isEmpty()) {
+            throw new IllegalArgumentException("The 'Formats' option names no formats");
+        }
+        return patterns;
+    }
+
+
+    // the column named by the 'Case Column' option, or null if the table doesn't have it
+    private Column<?> getCaseColumn(Table table) {
+        String name = getStringOption("Case Column");
+        return name != null && table.columnNames().contains(name) ? table.column(name) : null;
+    }
+
+
+    private int formatIndex(Shape shape, int patternCount) {
+        return shape.format >= 0 ? shape.format : patternCount;
+    }
+
+
+    private Table createResultTable() {
+        return Table.create("Result").addColumns(
+                IntColumn.create("Row"),
+                StringColumn.create("Value"),
+                StringColumn.create("Format"),
+                StringColumn.create("Shape")
+        );
+    }
+
+
+    private static Table createDistributionTable() {
+        return Table.create("Timestamp Formats").addColumns(
+                StringColumn.create("Format"),
+                IntColumn.create("Rows"),
+                DoubleColumn.create("Fraction")
+        );
+    }
+
+
+    @Override
+    public Options getOptions() {
+        Options options = super.getOptions();
+        if (!options.containsKey("Formats")) {
+            options.addDefault("Formats", DEFAULT_FORMATS);
+        }
+        return options;
+    }
+
+
+    /**
+     * A distinct shape of value, with the candidate formats not yet ruled out for it
+     */
+    private static class Shape {
+        final char[] mask;
+        final BitSet candidates;
+        int samples;
+        int format = -1;             // the first remaining candidate, or -1 if none
+        long rows;
+
+        Shape(char[] mask, int candidateCount) {
+            this.mask = mask;
+            candidates = new BitSet(candidateCount);
+            candidates.set(0, candidateCount);
+        }
+
+        @Override
+        public String toString() { return new String(mask); }
+    }
+
+
+    /**
+     * The distinct shapes of the values seen, found through a hash of each value's
+     * shape so that no string is created per value
+     */
+    private static class ShapeTable {
+        final List<DateTimeFormatter> formatters;
+        final List<Shape> shapes = new ArrayList<>();
+        final LongIntHashMap idOfHash = new LongIntHashMap();
+        final Map<String, Integer> collisions = new HashMap<>();
+        char[] buffer = new char[32];
+
+        ShapeTable(List<DateTimeFormatter> formatters) {
+            this.formatters = formatters;
+        }
+
+        // adds a value, trying the remaining candidates on it if its shape still
+        // needs samples, and returns the id of its shape
+        int add(String value) {
+            int length = value.length();
+            if (length > buffer.length) {
+                buffer = new char[Math.max(length, buffer.length * 2)];
+            }
+            long hash = 0xcbf29ce484222325L;
+            for (int k = 0; k < length; k++) {
+                char c = value.charAt(k);
+                char m = c >= '0' && c <= '9' ? '9' : Character.isLetter(c) ? 'a' : c;
+                buffer[k] = m;
+                hash = (hash ^ m) * 0x100000001b3L;
+            }
+            hash = hash == Long.MIN_VALUE ? 0 : hash;
+
+            int id = idOfHash.get(hash);
+            if (id >= 0 && !matches(shapes.get(id).mask, length)) {
+                Integer other = collisions.get(new String(buffer, 0, length));
+                id = other != null ? other : -1;
+                if (id < 0) {
+                    id = newShape(length);
+                    collisions.put(new String(buffer, 0, length), id);
+                }
+            }
+            else if (id < 0) {
+                id = newShape(length);
+                idOfHash.putIfAbsent(hash, id);
+            }
+
+            Shape shape = shapes.get(id);
+            shape.rows++;
+            if (shape.samples < SAMPLES_PER_SHAPE && !shape.candidates.isEmpty()) {
+                sample(shape, value);
+            }
+            return id;
+        }
+
+        // drops the candidates that fail to parse the value, unless all do
+        private void sample(Shape shape, String value) {
+            BitSet parsed = new BitSet();
+            for (int f = shape.candidates.nextSetBit(0); f >= 0;
+                 f = shape.candidates.nextSetBit(f + 1)) {
+                try {
+                    formatters.get(f).parse(value);
+                    parsed.set(f);
+                }
+                catch (DateTimeParseException dtpe) {
+                    // not this format
+                }
+            }
+            if (!parsed.isEmpty() || shape.samples == 0) {
+                shape.candidates.and(parsed);
+            }
+            shape.samples++;
+            shape.format = shape.candidates.nextSetBit(0);
+        }
+
+        private int newShape(int length) {
+            shapes.add(new Shape(Arrays.copyOf(buffer, length), formatters.size()));
+            return shapes.size() - 1;
+        }
+
+        private boolean matches(char[] mask, int length) {
+            if (mask.length != length) return false;
+            for (int k = 0; k < length; k++) {
+                if (mask[k] != buffer[k]) return false;
+            }
+            return true;
+        }
+    }
+
+}
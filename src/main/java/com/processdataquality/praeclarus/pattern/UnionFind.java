@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+/**
+ * A disjoint-set forest over the integers 0 to n-1, with union by size and path
+ * halving, used to merge pairs of similar labels into clusters.
+ */
+public class UnionFind {
+
+    private final int[] parent;
+    private final int[] size;
+
+
+    public UnionFind(int n) {
+        parent = new int[n];
+        size = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+    }
+
+
+    /**
+     * @param x a member
+     * @return the representative member of the set containing x
+     */
+    public int find(int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+
+    /**
+     * Merges the sets containing two members
+     * @return true if they were in different sets
+     */
+    public boolean union(int x, int y) {
+        int rootX = find(x);
+        int rootY = find(y);
+        if (rootX == rootY) return false;
+        if (size[rootX] < size[rootY]) {
+            int root = rootX;
+            rootX = rootY;
+            rootY = root;
+        }
+        parent[rootY] = rootX;
+        size[rootX] += size[rootY];
+        return true;
+    }
+
+
+    /**
+     * @param x a member
+     * @return the number of members in the set containing x
+     */
+    public int size(int x) { return size[find(x)]; }
+
+}
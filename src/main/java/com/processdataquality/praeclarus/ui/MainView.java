@@ -21,6 +21,7 @@ import com.processdataquality.praeclarus.ui.component.PluginsPanel;
 import com.processdataquality.praeclarus.ui.component.PropertiesPanel;
 import com.processdataquality.praeclarus.ui.component.ResultsPanel;
 import com.vaadin.flow.component.dependency.JsModule;
+import com.vaadin.flow.component.page.Push;
 import com.vaadin.flow.component.html.Image;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.splitlayout.SplitLayout;
@@ -31,6 +32,7 @@ import com.vaadin.flow.router.Route;
  * @date 14/4/21
  */
 @Route
+@Push
 @JsModule("@vaadin/vaadin-lumo-styles/presets/compact.js")
 public class MainView extends VerticalLayout {
 
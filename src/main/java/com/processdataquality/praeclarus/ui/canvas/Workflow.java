@@ -21,6 +21,7 @@ import com.processdataquality.praeclarus.ui.component.VertexLabelDialog;
 import com.processdataquality.praeclarus.workspace.node.Node;
 import com.processdataquality.praeclarus.workspace.node.NodeRunnerListener;
 import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.server.Command;
 import org.springframework.boot.configurationprocessor.json.JSONArray;
 import org.springframework.boot.configurationprocessor.json.JSONException;
 import org.springframework.boot.configurationprocessor.json.JSONObject;
@@ -157,27 +158,33 @@ public class Workflow implements CanvasEventListener, NodeRunnerListener {
     }
 
 
+    // the runner calls these from its own thread
     @Override
     public void nodeStarted(Node node) {
-        changeStateIndicator(node, VertexStateIndicator.State.RUNNING);
+        access(() -> changeStateIndicator(node, VertexStateIndicator.State.RUNNING));
     }
 
 
     @Override
     public void nodeCompleted(Node node) {
-        changeStateIndicator(node, VertexStateIndicator.State.COMPLETED);
+        access(() -> changeStateIndicator(node, VertexStateIndicator.State.COMPLETED));
     }
 
 
     @Override
     public void nodeRollback(Node node) {
-        changeStateIndicator(node, VertexStateIndicator.State.DORMANT);
+        access(() -> changeStateIndicator(node, VertexStateIndicator.State.DORMANT));
     }
 
 
     @Override
     public void nodePaused(Node node) { }
 
+
+    private void access(Command command) {
+        _parent.getUI().ifPresent(ui -> ui.access(command));
+    }
+
     public void clear() {
         _vertices.clear();
         _connectors.clear();
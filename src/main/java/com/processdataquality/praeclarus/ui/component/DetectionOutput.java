@@ -1,5 +1,7 @@
 package com.processdataquality.praeclarus.ui.component;
 
+import com.processdataquality.praeclarus.pattern.DetectionEstimate;
+import com.processdataquality.praeclarus.pattern.DetectionMetrics;
 import com.vaadin.flow.component.progressbar.ProgressBar;
 import com.vaadin.flow.component.progressbar.ProgressBarVariant;
 
@@ -7,31 +9,51 @@ public class DetectionOutput {
 
     private final String imperfectionPattern;
     private final String detectionAlgorithm;
-    private final String count;
+    private final DetectionMetrics metrics;
+    private final DetectionEstimate estimate;
     private ProgressBar progressBar;
     private final double expectedValue;
 
-    public DetectionOutput(String imperfectionPattern, String detectionAlgorithm, String count, double expectedValue) {
+    public DetectionOutput(String imperfectionPattern, String detectionAlgorithm,
+                           DetectionMetrics metrics, double expectedValue) {
+        this(imperfectionPattern, detectionAlgorithm, metrics, null, expectedValue);
+    }
+
+    // a row for a pattern that has only been estimated from a sample
+    public DetectionOutput(String imperfectionPattern, String detectionAlgorithm,
+                           DetectionEstimate estimate, double expectedValue) {
+        this(imperfectionPattern, detectionAlgorithm, null, estimate, expectedValue);
+    }
+
+    private DetectionOutput(String imperfectionPattern, String detectionAlgorithm,
+                            DetectionMetrics metrics, DetectionEstimate estimate,
+                            double expectedValue) {
         this.imperfectionPattern = imperfectionPattern;
         this.detectionAlgorithm = detectionAlgorithm;
-        this.count = count;
+        this.metrics = metrics;
+        this.estimate = estimate;
         this.expectedValue = expectedValue;
         buildProgressBar();
     }
 
     private void buildProgressBar() {
+        double value = calculateProgressBar();
         progressBar = new ProgressBar();
-        progressBar.setValue(calculateProgressBar());
-        if (calculateProgressBar() < 0.2) {
+        progressBar.setValue(value);
+        if (value < 0.2) {
             progressBar.addThemeVariants(ProgressBarVariant.LUMO_ERROR);
-        } else if (calculateProgressBar() == 1) {
+        } else if (value == 1) {
             progressBar.addThemeVariants(ProgressBarVariant.LUMO_SUCCESS);
         }
     }
 
+    // 1 when nothing is affected, falling to 0.5 when the affected fraction of events
+    // (or the estimated fraction of rows) reaches the expected value
     private double calculateProgressBar() {
-        double n = Double.parseDouble(count.split(" ")[2]);
-        double x = Double.parseDouble(count.split(" ")[0]);
+        long n = isEstimate() ? estimate.getRowCount() : metrics.getTotalEvents();
+        if (n <= 0) return 1;
+        double x = Math.min(isEstimate() ? estimate.getAffected() :
+                metrics.getAffectedEvents(), n);
         double z = Math.log(0.5)/Math.log(expectedValue);
         return 1 - Math.pow(x/n, z);
     }
@@ -44,8 +66,20 @@ public class DetectionOutput {
         return detectionAlgorithm;
     }
 
+    public boolean isEstimate() { return estimate != null; }
+
     public String getCount() {
-        return count;
+        if (isEstimate()) {
+            return String.format("~%d (%d-%d) of %d", Math.round(estimate.getAffected()),
+                    (long) Math.floor(estimate.getLower()), (long) Math.ceil(estimate.getUpper()),
+                    estimate.getRowCount());
+        }
+        return metrics.getAffectedEvents() + " of " + metrics.getTotalEvents();
+    }
+
+    public String getCases() {
+        return !isEstimate() && metrics.hasCases() ?
+                metrics.getAffectedCases() + " of " + metrics.getTotalCases() : "";
     }
 
     public ProgressBar getProgressBar() {
@@ -146,6 +146,8 @@ public class PipelinePanel extends VerticalLayout {
 
     public Workspace getWorkspace() { return _workspace; }
 
+    public RunnerButtons getRunnerButtons() { return _runnerButtons; }
+
 
     private Button createRemoveButton() {
         Icon icon = VaadinIcon.TRASH.create();
@@ -17,6 +17,9 @@
 package com.processdataquality.praeclarus.ui.component;
 
 import com.processdataquality.praeclarus.action.FastDetect;
+import com.processdataquality.praeclarus.pattern.DetectionEstimate;
+import com.processdataquality.praeclarus.pattern.DetectionListener;
+import com.processdataquality.praeclarus.pattern.DetectionMetrics;
 import com.processdataquality.praeclarus.pattern.ImperfectionPattern;
 import com.processdataquality.praeclarus.ui.MainView;
 import com.processdataquality.praeclarus.ui.util.NodeWriter;
@@ -26,7 +29,9 @@ import com.processdataquality.praeclarus.workspace.node.NodeRunnerListener;
 import com.processdataquality.praeclarus.workspace.node.PatternNode;
 import com.processdataquality.praeclarus.workspace.node.WriterNode;
 import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.Text;
 import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.dialog.Dialog;
 import com.vaadin.flow.component.grid.FooterRow;
 import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.html.Div;
@@ -35,14 +40,17 @@ import com.vaadin.flow.component.icon.Icon;
 import com.vaadin.flow.component.icon.VaadinIcon;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.progressbar.ProgressBar;
 import com.vaadin.flow.component.tabs.Tab;
 import com.vaadin.flow.component.tabs.Tabs;
+import com.vaadin.flow.server.Command;
 import tech.tablesaw.api.ColumnType;
 import tech.tablesaw.api.Row;
 import tech.tablesaw.api.StringColumn;
 import tech.tablesaw.api.Table;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Michael Adams
@@ -58,8 +66,10 @@ public class ResultsPanel extends VerticalLayout implements NodeRunnerListener {
     private HashMap<Integer, Tab> nodeTabs = new HashMap<>();
     private static final TreeData _treeData = new TreeData();
     private static final List<TreeItem> _list = _treeData.getItems();
-    private HashMap<Integer, Map<String, Integer>> totalDetections = new HashMap<>();
+    private HashMap<Integer, Map<String, DetectionMetrics>> totalDetections = new HashMap<>();
     private HashMap<Integer, Map<String, Double>> expectedValues = new HashMap<>();
+    private HashMap<Integer, Map<String, DetectionEstimate>> estimates = new HashMap<>();
+    private final Map<Node, LiveResult> liveResults = new ConcurrentHashMap<>();
 
     private final MainView _parent;
 
@@ -71,7 +81,9 @@ public class ResultsPanel extends VerticalLayout implements NodeRunnerListener {
         tabs.addSelectedChangeListener(event -> {
             tabsToPages.values().forEach(page -> page.setVisible(false));
             Component selectedPage = tabsToPages.get(tabs.getSelectedTab());
-            selectedPage.setVisible(true);
+            if (selectedPage != null) {             // none once the last tab is removed
+                selectedPage.setVisible(true);
+            }
         });
 
         add(tabs, pages);
@@ -86,23 +98,49 @@ public class ResultsPanel extends VerticalLayout implements NodeRunnerListener {
         getNodeRunner().addListener(this);
     }
 
+    // the runner calls these from its own thread
     @Override
     public void nodeStarted(Node node) {
+        if (node instanceof PatternNode &&
+                ((PatternNode) node).getState() == PatternNode.State.IDLE) {
+            LiveResult live = new LiveResult((PatternNode) node);
+            liveResults.put(node, live);
+            access(live::show);
+            ((PatternNode) node).addDetectionListener(live);
+        }
     }
 
     @Override
     public void nodePaused(Node node) {
-        addResult(node);
+        endLiveResult(node);
+        access(() -> addResult(node));
     }
 
     @Override
     public void nodeCompleted(Node node) {
-        addResult(node);
+        endLiveResult(node);
+        access(() -> addResult(node));
     }
 
     @Override
     public void nodeRollback(Node node) {
-        removeResult(node);
+        endLiveResult(node);
+        access(() -> removeResult(node));
+    }
+
+
+    // stops showing a node's results as they are found, before its full result is shown
+    private void endLiveResult(Node node) {
+        LiveResult live = liveResults.remove(node);
+        if (live != null) {
+            live.node.removeDetectionListener(live);
+            access(live::remove);
+        }
+    }
+
+
+    private void access(Command command) {
+        getUI().ifPresent(ui -> ui.access(command));
     }
 
 
@@ -150,10 +188,15 @@ public class ResultsPanel extends VerticalLayout implements NodeRunnerListener {
             detectResult.put(node.getId(), multipleGrids);
         }
 
+        if (!estimates.containsKey(node.getId())) {
+            getEstimates(node);
+        }
+
+        // a row for each pattern detected or only estimated
         if (!expanded.containsKey(node.getId())) {
             HashMap<String, Boolean> expand = new HashMap<>();
-            for (String s : multipleGrids.keySet()) {
-                expand.put(s, false);
+            for (Node s : getDetectionNodes(node)) {
+                expand.put(s.getName(), false);
             }
             expanded.put(node.getId(), expand);
         }
@@ -169,7 +212,7 @@ public class ResultsPanel extends VerticalLayout implements NodeRunnerListener {
         VerticalScrollLayout page;
         Tab tab;
         Grid<DetectionOutput> grid = new Grid<>(DetectionOutput.class);
-        grid.setColumns("imperfectionPattern", "detectionAlgorithm", "count");
+        grid.setColumns("imperfectionPattern", "detectionAlgorithm", "count", "cases");
         ArrayList<DetectionOutput> detection = new ArrayList<>();
         grid.addComponentColumn(DetectionOutput::getProgressBar).setHeader("Progressbar");
         addIcon(node, grid);
@@ -180,18 +223,16 @@ public class ResultsPanel extends VerticalLayout implements NodeRunnerListener {
             tab = nodeTabs.get(node.getId());
             page = (VerticalScrollLayout) tabsToPages.get(tab);
             page.removeAll();
-            for (String s : detectResult.get(node.getId()).keySet()) {
+            for (String s : expanded.get(node.getId()).keySet()) {
                 if (!expanded.get(node.getId()).get(s)) {
-                    detection.add(new DetectionOutput(findPattern(s), s, totalDetections.get(node.getId()).get(s)
-                            + " of " + node.getInputs().get(0).rowCount(), expectedValues.get(node.getId()).get(s)));
+                    detection.add(createOutput(node, s));
                 } else {
-                    detection.add(new DetectionOutput(findPattern(s), s, totalDetections.get(node.getId()).get(s)
-                            + " of " + node.getInputs().get(0).rowCount(), expectedValues.get(node.getId()).get(s)));
+                    detection.add(createOutput(node, s));
                     grid.setItems(detection);
                     page.add(grid);
                     detection = new ArrayList<>();
                     grid = new Grid<>(DetectionOutput.class);
-                    grid.setColumns("imperfectionPattern", "detectionAlgorithm", "count");
+                    grid.setColumns("imperfectionPattern", "detectionAlgorithm", "count", "cases");
                     grid.addComponentColumn(DetectionOutput::getProgressBar).setHeader("Progressbar");
                     addIcon(node, grid);
                     grid.setHeightByRows(true);
@@ -212,9 +253,8 @@ public class ResultsPanel extends VerticalLayout implements NodeRunnerListener {
             tab = new ResultTab(node);
             nodeTabs.put(node.getId(), tab);
             page = new VerticalScrollLayout();
-            for (String s : multipleGrids.keySet()) {
-                    detection.add(new DetectionOutput(findPattern(s), s, totalDetections.get(node.getId()).get(s)
-                            + " of " + node.getInputs().get(0).rowCount(), expectedValues.get(node.getId()).get(s)));
+            for (String s : expanded.get(node.getId()).keySet()) {
+                    detection.add(createOutput(node, s));
             }
             grid.setItems(detection);
             page.add(grid);
@@ -226,24 +266,60 @@ public class ResultsPanel extends VerticalLayout implements NodeRunnerListener {
         tabs.setSelectedTab(tab);
     }
 
+    // the pattern nodes with results, and those with only an estimate
+    private Set<Node> getDetectionNodes(Node node) {
+        Set<Node> nodes = new HashSet<>(node.getMultipleOutput().keySet());
+        nodes.addAll(((FastDetect) node.getPlugin()).getEstimates().keySet());
+        return nodes;
+    }
+
+    private void getEstimates(Node node) {
+        HashMap<String, DetectionEstimate> estimate = new HashMap<>();
+        ((FastDetect) node.getPlugin()).getEstimates().forEach(
+                (s, e) -> estimate.put(s.getName(), e));
+        estimates.put(node.getId(), estimate);
+    }
+
     private void getExpectedValues(Node node) {
         HashMap<String, Double> totalDetection = new HashMap<>();
-        for (Node s : node.getMultipleOutput().keySet()) {
+        for (Node s : getDetectionNodes(node)) {
             totalDetection.put(s.getName(), ((ImperfectionPattern) s.getPlugin()).criticalDetections());
         }
         expectedValues.put(node.getId(), totalDetection);
     }
 
     private void getTotalDetections(Node node) {
-        HashMap<String, Integer> totalDetection = new HashMap<>();
+        HashMap<String, DetectionMetrics> totalDetection = new HashMap<>();
         for (Node s : node.getMultipleOutput().keySet()) {
-            totalDetection.put(s.getName(), ((ImperfectionPattern) s.getPlugin()).imperfektionDetected());
+            totalDetection.put(s.getName(), ((ImperfectionPattern) s.getPlugin()).getMetrics());
         }
         totalDetections.put(node.getId(), totalDetection);
     }
 
+    // a row of the detection overview, taking the total events from the input table
+    // where the pattern doesn't count them itself. A pattern that was only estimated
+    // shows its estimate instead.
+    private DetectionOutput createOutput(Node node, String name) {
+        DetectionMetrics metrics = totalDetections.get(node.getId()).get(name);
+        if (metrics == null) {
+            return new DetectionOutput(findPattern(name), name,
+                    estimates.get(node.getId()).get(name),
+                    expectedValues.get(node.getId()).get(name));
+        }
+        if (metrics.getTotalEvents() < 0) {
+            metrics = new DetectionMetrics(metrics.getAffectedEvents(),
+                    node.getInputs().get(0).rowCount(), metrics.getAffectedCases(),
+                    metrics.getTotalCases());
+        }
+        return new DetectionOutput(findPattern(name), name, metrics,
+                expectedValues.get(node.getId()).get(name));
+    }
+
     private void addIcon(Node node, Grid<DetectionOutput> grid) {
         grid.addComponentColumn(item -> {
+            if (item.isEstimate()) {
+                return new Div();           // no results to expand
+            }
             Icon icon;
             if (expanded.get(node.getId()).get(item.getDetectionAlgorithm())) {
                 icon = VaadinIcon.ANGLE_UP.create();
@@ -293,20 +369,36 @@ public class ResultsPanel extends VerticalLayout implements NodeRunnerListener {
 
     private void handlePatternResult(Node node, Grid<Row> grid, Tab tab) {
         if (!node.hasCompleted()) {
-            tab.setLabel(node.getName() + " - Detected");
+            boolean partial = ((ImperfectionPattern) node.getPlugin()).isPartial();
+            tab.setLabel(node.getName() + (partial ? " - Detected (partial)" : " - Detected"));
+            if (partial) {
+                Div banner = new Div();
+                banner.setText("The detection was stopped before it finished, " +
+                        "so these results are incomplete.");
+                banner.getStyle().set("color", "var(--lumo-error-text-color)");
+                ((VerticalScrollLayout) tabsToPages.get(tab)).addComponentAsFirst(banner);
+            }
             grid.setSelectionMode(Grid.SelectionMode.MULTI);
 
             Button btnRepair = new Button("Repair Selected");
             Button btnDont = new Button("Don't Repair");
-            btnRepair.addClickListener(e -> {
+            Runnable repair = () -> {
                 btnRepair.setEnabled(false);   // only allow one repair
                 btnDont.setEnabled(false);
                 repair(node, grid);
+            };
+            btnRepair.addClickListener(e -> {
+                if (partial) {
+                    confirmPartialRepair(repair);
+                }
+                else {
+                    repair.run();
+                }
             });
             btnDont.addClickListener(e -> {
                 btnRepair.setEnabled(false);   // only allow one repair
                 btnDont.setEnabled(false);
-                getNodeRunner().resume(node);
+                _parent.getPipelinePanel().getRunnerButtons().resume(node);
             });
             FooterRow footer = grid.appendFooterRow();
             footer.getCells().get(0).setComponent(new HorizontalLayout(btnDont, btnRepair));
@@ -316,6 +408,23 @@ public class ResultsPanel extends VerticalLayout implements NodeRunnerListener {
     }
 
 
+    // asks before repairing from the results of a detection that was cut short
+    private void confirmPartialRepair(Runnable repair) {
+        Dialog dialog = new Dialog();
+        dialog.setCloseOnOutsideClick(false);
+        dialog.setModal(true);
+        dialog.add(new Div(new Text("The detection was stopped before it finished, so " +
+                "not every distorted label was found. Repair the selected rows anyway?")));
+        Button ok = new Button("Repair", event -> {
+            dialog.close();
+            repair.run();
+        });
+        Button cancel = new Button("Cancel", event -> dialog.close());
+        dialog.add(new HorizontalLayout(ok, cancel));
+        dialog.open();
+    }
+
+
     public void removeResult(Node node) {
         for (ResultTab tab : getTabs(node)) {
             Div div = (Div) tabsToPages.remove(tab);
@@ -388,17 +497,98 @@ public class ResultsPanel extends VerticalLayout implements NodeRunnerListener {
 
 
     private void repair(Node node, Grid<Row> grid) {
+        Set<Row> selected = grid.asMultiSelect().getSelectedItems();
         Table repairs = Table.create("Repairs").addColumns(
                 StringColumn.create("Incorrect"),
                 StringColumn.create("Correct"));
-        for (Row row : grid.asMultiSelect().getSelectedItems()) {
+
+        // results from several columns say which column each repair applies to
+        boolean byColumn = !selected.isEmpty() &&
+                selected.iterator().next().columnNames().contains("Column");
+        if (byColumn) {
+            repairs.addColumns(StringColumn.create("Column"));
+        }
+        for (Row row : selected) {
             repairs.column(0).appendCell(row.getString("Label2"));
             repairs.column(1).appendCell(row.getString("Label1"));
+            if (byColumn) {
+                repairs.column(2).appendCell(row.getString("Column"));
+            }
         }
         ((PatternNode) node).setRepairs(repairs);
+        _parent.getPipelinePanel().getRunnerButtons().resume(node);
+    }
+
+
+    /**
+     * Shows the rows found by a pattern node's detection as they arrive, with the
+     * detection's progress, in a tab of its own. The detection calls this from the
+     * runner's thread, so each change is made through the UI's access queue.
+     */
+    private class LiveResult implements DetectionListener {
+
+        private final PatternNode node;
+        private final List<Row> rows = new ArrayList<>();
+        private ResultTab tab;
+        private VerticalScrollLayout page;
+        private ProgressBar progressBar;
+        private Grid<Row> grid;
+        private Table found;                            // all the rows received
+        private volatile double shownProgress;
+
+        LiveResult(PatternNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public void resultsFound(Table batch) {
+            access(() -> addRows(batch));
+        }
+
+        @Override
+        public void progressChanged(double fraction) {
+            if (fraction >= 1.0 || fraction - shownProgress >= 0.01) {   // not too often
+                shownProgress = fraction;
+                access(() -> progressBar.setValue(Math.min(1.0, fraction)));
+            }
+        }
+
+        void show() {
+            tab = new ResultTab(node);
+            tab.setLabel(node.getName() + " - Detecting");
+            progressBar = new ProgressBar();
+            page = new VerticalScrollLayout(progressBar);
+            removeTopMargin(page);
+            tabsToPages.put(tab, page);
+            pages.add(page);
+            tabs.add(tab);
+            tabs.setSelectedTab(tab);
+            tabs.setVisible(true);
+        }
+
+        void remove() {
+            if (tab != null) {
+                tabsToPages.remove(tab);
+                tabs.remove(tab);
+                pages.remove(page);
+            }
+        }
 
-        NodeRunner runner = getNodeRunner();
-        runner.resume(node);
+        private void addRows(Table batch) {
+            if (found == null) {
+                found = batch.emptyCopy();
+                grid = tableToGrid(found);
+                grid.setItems(rows);
+                removeTopMargin(grid);
+                page.add(grid);
+            }
+            int first = found.rowCount();
+            found.append(batch);
+            for (int i = first; i < found.rowCount(); i++) {
+                rows.add(found.row(i));
+            }
+            grid.getDataProvider().refreshAll();
+        }
     }
 
 
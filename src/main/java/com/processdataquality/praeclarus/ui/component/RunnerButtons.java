@@ -20,12 +20,15 @@ import com.processdataquality.praeclarus.ui.canvas.Workflow;
 import com.processdataquality.praeclarus.workspace.NodeRunner;
 import com.processdataquality.praeclarus.workspace.Workspace;
 import com.processdataquality.praeclarus.workspace.node.Node;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.html.Div;
 import com.vaadin.flow.component.icon.Icon;
 import com.vaadin.flow.component.icon.VaadinIcon;
 import com.vaadin.flow.component.notification.Notification;
 
+import java.util.concurrent.CompletionException;
+
 /**
  * @author Michael Adams
  * @date 14/5/21
@@ -122,8 +125,9 @@ public class RunnerButtons extends Div {
 
         Icon stopIcon = createIcon(VaadinIcon.CLOSE_CIRCLE_O,"red");
         _stopButton = new Button(stopIcon, e -> {
-            _workspace.reset();
-            setState(NodeRunner.State.IDLE);
+            _workspace.reset();                // the run ends, and the buttons reset, soon after
+            _stopButton.setEnabled(false);
+            setIconColor(_stopButton, "red");
         });
         
         add(_runButton, _stepButton, _backButton, _stopButton);
@@ -138,26 +142,48 @@ public class RunnerButtons extends Div {
     }
 
 
+    /**
+     * Resumes a run paused at a pattern node, once its repairs have been chosen
+     * @param node the paused node
+     */
+    public void resume(Node node) {
+        NodeRunner runner = _workspace.getRunner();
+        setState(runner.getState() == NodeRunner.State.STEPPING ?
+                NodeRunner.State.STEPPING : NodeRunner.State.RUNNING);
+        runInBackground(() -> runner.resume(node));
+    }
+
+
     private void runNode(Node node) {
-        try {
-            if (getState() == NodeRunner.State.RUNNING) {
-                _workspace.getRunner().run(node);
-            }
-            else if (getState() == NodeRunner.State.STEPPING) {
-                _workspace.getRunner().step(node);
-            }
-        }
-        catch (IllegalArgumentException iae) {
-            Notification.show(iae.getMessage());
+        NodeRunner runner = _workspace.getRunner();
+        if (getState() == NodeRunner.State.RUNNING) {
+            runInBackground(() -> runner.run(node));
         }
-        finally {
-            setState(NodeRunner.State.IDLE);
-//            Node lastCompleted = _workspace.getRunner().getLastCompletedNode();
-//            if (lastCompleted != null) {
-//                _workflow.setSelectedNode(lastCompleted);
-//            }
+        else if (getState() == NodeRunner.State.STEPPING) {
+            runInBackground(() -> runner.step(node));
         }
+    }
 
+
+    // runs the nodes off the request thread, so that the session stays unlocked and
+    // the stop button can be pressed while they run
+    private void runInBackground(Runnable task) {
+        UI ui = UI.getCurrent();
+        enable();
+        _workspace.getRunner().submit(task).whenComplete((done, error) -> ui.access(() -> {
+            setState(NodeRunner.State.IDLE);
+            enable();
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause instanceof IllegalArgumentException) {
+                Notification.show(cause.getMessage());
+            }
+            else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;          // to the session's error handler
+            }
+            else if (cause != null) {
+                throw new IllegalStateException(cause);
+            }
+        }));
     }
 
 }
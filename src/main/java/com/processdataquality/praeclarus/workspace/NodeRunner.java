@@ -17,11 +17,16 @@
 package com.processdataquality.praeclarus.workspace;
 
 import com.processdataquality.praeclarus.action.InnerJoin;
+import com.processdataquality.praeclarus.pattern.CancellationToken;
 import com.processdataquality.praeclarus.workspace.node.Node;
 import com.processdataquality.praeclarus.workspace.node.NodeRunnerListener;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Michael Adams
@@ -32,10 +37,21 @@ public class NodeRunner {
     public enum State { RUNNING, STEPPING, ABORTED, IDLE }
 
     private Node _lastCompletedNode;
-    private State _state = State.IDLE;
+    private volatile State _state = State.IDLE;
+    private volatile CancellationToken _cancellation = new CancellationToken();
     private final Set<NodeRunnerListener> _listeners = new HashSet<>();
 
-    public NodeRunner() { }
+    // runs one task at a time, its thread ending when idle for a minute
+    private final ThreadPoolExecutor _executor = new ThreadPoolExecutor(1, 1,
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+                Thread thread = new Thread(task, "node-runner");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    public NodeRunner() {
+        _executor.allowCoreThreadTimeOut(true);
+    }
     
     public void addListener(NodeRunnerListener listener) {
         _listeners.add(listener);
@@ -46,6 +62,31 @@ public class NodeRunner {
     }
 
 
+    /**
+     * Runs a task on this runner's own thread, so that the caller isn't held up by a
+     * long run and can abort it. The task should call run, step or resume. If no run
+     * is in progress, a new run's cancellation token is made here, before the task is
+     * queued, so that an abort at any time after this call reaches the run.
+     * @param task the task to run
+     * @return a future that completes when the task does, or exceptionally if it fails
+     */
+    public CompletableFuture<Void> submit(Runnable task) {
+        if (_state == State.IDLE) {
+            _cancellation = new CancellationToken();
+        }
+        return CompletableFuture.runAsync(() -> {
+            try {
+                task.run();
+            }
+            finally {
+                if (_state == State.ABORTED) {
+                    reset();                   // the aborted run has stopped
+                }
+            }
+        }, _executor);
+    }
+
+
     public void run(Node node) {
         if (_state == State.ABORTED) {
             reset();
@@ -88,7 +129,7 @@ public class NodeRunner {
         if (node.getPlugin() instanceof InnerJoin) {
             ((InnerJoin) node.getPlugin()).setNode(node);
         }
-        node.run();
+        node.run(_cancellation);
         if (node.hasCompleted()) {
             setLastCompletedNode(node);
             if (_state == State.STEPPING) {
@@ -124,6 +165,7 @@ public class NodeRunner {
 
     public void abort() {
         _state = State.ABORTED;
+        _cancellation.cancel();                // stop a long detection part way
     }
 
     public Node getLastCompletedNode() { return _lastCompletedNode; }
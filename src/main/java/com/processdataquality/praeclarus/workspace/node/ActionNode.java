@@ -18,6 +18,7 @@ package com.processdataquality.praeclarus.workspace.node;
 
 import com.processdataquality.praeclarus.action.Action;
 import com.processdataquality.praeclarus.action.FastDetect;
+import com.processdataquality.praeclarus.pattern.CancellationToken;
 import com.processdataquality.praeclarus.plugin.PDQPlugin;
 
 /**
@@ -34,9 +35,13 @@ public class ActionNode extends Node {
     }
 
     @Override
-    public void run() {
+    public void run() { run(new CancellationToken()); }
+
+
+    @Override
+    public void run(CancellationToken cancellation) {
         if (plugin instanceof FastDetect) {
-            setMultipleOutput(((Action) getPlugin()).run(getInputs()));
+            setMultipleOutput(((FastDetect) plugin).run(getInputs(), cancellation));
             setOutput(getInputs().get(0));
         } else {
             setOutput(((Action) getPlugin()).run(getInputs()).values().iterator().next());
@@ -18,6 +18,7 @@ package com.processdataquality.praeclarus.workspace.node;
 
 import com.processdataquality.praeclarus.action.Action;
 import com.processdataquality.praeclarus.annotations.Plugin;
+import com.processdataquality.praeclarus.pattern.CancellationToken;
 import com.processdataquality.praeclarus.plugin.PDQPlugin;
 import tech.tablesaw.api.Table;
 
@@ -56,6 +57,14 @@ public abstract class Node {
     public abstract void run();
 
 
+    /**
+     * Runs this node, stopping as soon as it can once the token is cancelled. Nodes
+     * that can't be stopped part way ignore the token.
+     * @param cancellation the token of the run this node is part of
+     */
+    public void run(CancellationToken cancellation) { run(); }
+
+
     public Set<Node> next() {return _next; }
 
     public void addNext(Node node) { _next.add(node); }
@@ -16,10 +16,15 @@
 
 package com.processdataquality.praeclarus.workspace.node;
 
+import com.processdataquality.praeclarus.pattern.CancellationToken;
+import com.processdataquality.praeclarus.pattern.DetectionListener;
 import com.processdataquality.praeclarus.pattern.ImperfectionPattern;
 import com.processdataquality.praeclarus.plugin.PDQPlugin;
 import tech.tablesaw.api.Table;
 
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
 /**
  * @author Michael Adams
  * @date 12/5/21
@@ -31,6 +36,21 @@ public class PatternNode extends Node {
     private Table detected;
     private Table repairs;
     private State state = State.IDLE;
+    // Listeners may come and go on other threads while a detection is reporting
+    private final Set<DetectionListener> detectionListeners = new CopyOnWriteArraySet<>();
+
+    // Passes results and progress from the pattern's detection on to the listeners
+    private final DetectionListener forwarder = new DetectionListener() {
+        @Override
+        public void resultsFound(Table batch) {
+            detectionListeners.forEach(l -> l.resultsFound(batch));
+        }
+
+        @Override
+        public void progressChanged(double fraction) {
+            detectionListeners.forEach(l -> l.progressChanged(fraction));
+        }
+    };
 
 
     public PatternNode(PDQPlugin plugin) {
@@ -38,11 +58,15 @@ public class PatternNode extends Node {
     }
 
     @Override
-    public void run() {
+    public void run() { run(new CancellationToken()); }
+
+
+    @Override
+    public void run(CancellationToken cancellation) {
         ImperfectionPattern imperfectionPattern = (ImperfectionPattern) getPlugin();
         Table master = getInputs().get(0);         // only one input
         if (state == State.IDLE && imperfectionPattern.canDetect()) {
-            detected = imperfectionPattern.detect(master);
+            detected = imperfectionPattern.detect(master, forwarder, cancellation);
             if (imperfectionPattern.canRepair()) {
                 state = State.DETECTED;
             }
@@ -85,5 +109,20 @@ public class PatternNode extends Node {
     public Table getDetected() { return detected; }
 
     public void setRepairs(Table r) { repairs = r; }
+
+
+    public void addDetectionListener(DetectionListener listener) {
+        detectionListeners.add(listener);
+    }
+
+    public boolean removeDetectionListener(DetectionListener listener) {
+        return detectionListeners.remove(listener);
+    }
+
+    /**
+     * @return a listener that passes what it receives on to this node's detection
+     * listeners, for when this node's pattern is run by another
+     */
+    public DetectionListener getDetectionForwarder() { return forwarder; }
     
 }
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.DateTimeColumn;
+import tech.tablesaw.api.LongColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the grouping of a log's rows by case, the ordering of each case's events, and
+ * the splitting of cases between threads with results merged in case order
+ */
+class CaseIndexTest {
+
+    private static final long NONE = CaseIndex.NO_TIME;
+
+
+    @Test
+    void rowsAreGroupedByCaseInLogOrder() {
+        Table table = log(new String[] { "b", "a", "b", "", "a", "c", "b" },
+                new long[] { 50, 40, 30, 20, 10, 5, NONE });
+        CaseIndex index = new CaseIndex(table, "Case ID", "time:timestamp", false, 1);
+
+        // cases are numbered as first seen, and the row without a case is left out
+        assertEquals(3, index.getCaseCount());
+        assertEquals(6, index.getEventCount());
+        assertFalse(index.isTimeOrdered());
+        assertEquals(Arrays.asList("b:0@50,2@30,6@-", "a:1@40,4@10", "c:5@5"), cases(index));
+    }
+
+
+    @Test
+    void eventsAreOrderedByTimeWithTiesInLogOrder() {
+        Table table = log(new String[] { "b", "a", "b", "b", "a", "b" },
+                new long[] { 50, 40, 30, NONE, 10, 30 });
+        CaseIndex index = new CaseIndex(table, "Case ID", "time:timestamp", true, 1);
+        assertTrue(index.isTimeOrdered());
+        assertEquals(Arrays.asList("b:3@-,2@30,5@30,0@50", "a:4@10,1@40"), cases(index));
+    }
+
+
+    @Test
+    void largeCasesAreSortedAsSmallOnes() {
+        Random random = new Random(11);
+        int rows = 5000;
+        String[] caseIds = new String[rows];
+        long[] times = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            caseIds[i] = "case" + random.nextInt(20);             // cases of ~250 events
+            times[i] = random.nextInt(1000);
+        }
+        Table table = log(caseIds, times);
+        CaseIndex index = new CaseIndex(table, "Case ID", "time:timestamp", true, 4);
+        for (int c = 0; c < index.getCaseCount(); c++) {
+            for (int p = index.getStart(c) + 1; p < index.getEnd(c); p++) {
+                long previous = index.getTime(p - 1);
+                assertTrue(previous < index.getTime(p) || previous == index.getTime(p) &&
+                        index.getRow(p - 1) < index.getRow(p), "case " + c + " at " + p);
+            }
+        }
+    }
+
+
+    @Test
+    void dateTimesAreReadAsEpochMilliseconds() {
+        DateTimeColumn column = DateTimeColumn.create("time:timestamp",
+                LocalDateTime.of(1970, 1, 2, 0, 0, 1, 500_000_000), null);
+        long[] times = CaseIndex.readTimes(column);
+        assertEquals(86_401_500L, times[0]);
+        assertEquals(NONE, times[1]);
+        assertThrows(IllegalArgumentException.class,
+                () -> CaseIndex.readTimes(StringColumn.create("time:timestamp", "noon")));
+    }
+
+
+    @Test
+    void partitionsHoldSimilarNumbersOfEvents() {
+        // cases of 10, 1, 1, 1, 10, 5 and 2 events
+        int[] caseStarts = { 0, 10, 11, 12, 13, 23, 28, 30 };
+        List<String> ranges = new ArrayList<>();
+        for (int[] range : CaseScheduler.partition(caseStarts, 3)) {
+            ranges.add(range[0] + "-" + range[1]);
+        }
+        assertEquals(Arrays.asList("0-1", "1-5", "5-7"), ranges);
+        assertTrue(CaseScheduler.partition(new int[] { 0 }, 3).isEmpty());
+    }
+
+
+    @Test
+    void partitionResultsAreMergedInCaseOrder() {
+        int[] caseStarts = new int[1001];
+        for (int c = 0; c < 1000; c++) {
+            caseStarts[c + 1] = caseStarts[c] + 1 + c % 7;
+        }
+        for (int parallelism : new int[] { 1, 4 }) {
+            // later partitions finish first, so the order can't come from finishing
+            List<int[]> results = new CaseScheduler(parallelism).run(caseStarts,
+                    (from, to) -> {
+                        sleep(from < 500 ? 20 : 0);
+                        return new int[] { from, to };
+                    });
+            int next = 0;
+            for (int[] range : results) {
+                assertEquals(next, range[0], "parallelism " + parallelism);
+                next = range[1];
+            }
+            assertEquals(1000, next);
+        }
+    }
+
+
+    @Test
+    void partitionFailuresAreRethrown() {
+        int[] caseStarts = { 0, 5, 10, 15, 20, 25, 30, 35, 40 };
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
+                () -> new CaseScheduler(4).run(caseStarts, (from, to) -> {
+                    if (from > 0) throw new IllegalArgumentException("case " + from);
+                    return from;
+                }));
+        assertTrue(thrown.getMessage().contains("case "));
+    }
+
+
+    private Table log(String[] caseIds, long[] times) {
+        return Table.create("Log").addColumns(StringColumn.create("Case ID", caseIds),
+                LongColumn.create("time:timestamp", times));
+    }
+
+
+    // each case as "id:row@time,...", with '-' for a missing time
+    private List<String> cases(CaseIndex index) {
+        List<String> cases = new ArrayList<>();
+        for (int c = 0; c < index.getCaseCount(); c++) {
+            StringBuilder events = new StringBuilder(index.getCaseId(c)).append(':');
+            for (int p = index.getStart(c); p < index.getEnd(c); p++) {
+                if (p > index.getStart(c)) events.append(',');
+                long time = index.getTime(p);
+                events.append(index.getRow(p)).append('@')
+                        .append(time == NONE ? "-" : String.valueOf(time));
+            }
+            cases.add(events.toString());
+        }
+        return cases;
+    }
+
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.LongColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the events reported as recorded within a window of a similar event in their
+ * case, and the first event of the cluster each joins
+ */
+class CollateralEventsWindowTest {
+
+    @Test
+    void repeatedActivitiesWithinTheWindowAreReported() {
+        CollateralEventsWindow plugin = new CollateralEventsWindow();
+        Table result = plugin.detect(events());
+
+        // row 2 is 1400ms after row 0, but within the window of row 1 in its cluster
+        assertEquals(Arrays.asList(
+                "1|c1|A|500|0|A",
+                "2|c1|A|1400|0|A",
+                "9|c3|A|100|8|A"), rows(result));
+        DetectionMetrics metrics = plugin.getMetrics();
+        assertEquals(3, metrics.getAffectedEvents());
+        assertEquals(10, metrics.getTotalEvents());
+        assertEquals(2, metrics.getAffectedCases());
+        assertEquals(3, metrics.getTotalCases());
+        assertEquals(5, plugin.getStatistics().get("Activities"));
+    }
+
+
+    @Test
+    void similarActivitiesMatchByEitherMeasure() {
+        List<String> expected = Arrays.asList(
+                "1|c1|A|500|0|A",
+                "2|c1|A|1400|0|A",
+                "6|c2|Aprove|300|5|Approve",
+                "9|c3|A|100|8|A");
+        for (String similarity : new String[] { "Levenshtein", "Jaro-Winkler" }) {
+            CollateralEventsWindow plugin = new CollateralEventsWindow();
+            plugin.getOptions().add("Similarity", similarity);
+            assertEquals(expected, rows(plugin.detect(events())), similarity);
+        }
+    }
+
+
+    @Test
+    void windowOptionLimitsTheInterval() {
+        CollateralEventsWindow plugin = new CollateralEventsWindow();
+        plugin.getOptions().add("Window (ms)", 0);
+        assertEquals(Arrays.asList("9|c3|A|100|8|A"), rows(plugin.detect(events())));
+
+        plugin.getOptions().add("Window (ms)", -1);
+        assertThrows(IllegalArgumentException.class, () -> plugin.detect(events()));
+        plugin.getOptions().add("Window (ms)", 1000);
+        plugin.getOptions().add("Similarity", "Soundex");
+        assertThrows(IllegalArgumentException.class, () -> plugin.detect(events()));
+    }
+
+
+    @Test
+    void casesSplitBetweenThreadsGiveTheSameResults() {
+        Random random = new Random(15);
+        int rowCount = 20000;
+        String[] cases = new String[rowCount];
+        String[] activities = new String[rowCount];
+        long[] times = new long[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            cases[i] = "case" + random.nextInt(500);
+            activities[i] = "activity " + (char) ('a' + random.nextInt(8));
+            times[i] = random.nextInt(600) * 1000L;
+        }
+        Table table = log(cases, activities, times);
+        CollateralEventsWindow single = new CollateralEventsWindow();
+        single.getOptions().add("Similarity", "Levenshtein");
+        List<String> expected = rows(single.detect(table));
+        assertTrue(expected.size() > 100, "too few events found to compare");
+
+        CollateralEventsWindow plugin = new CollateralEventsWindow();
+        plugin.getOptions().add("Similarity", "Levenshtein");
+        plugin.getOptions().add("Parallelism", 4);
+        assertEquals(expected, rows(plugin.detect(table)));
+    }
+
+
+    // c2's events are out of time order in the log, and c3's share a timestamp
+    private Table events() {
+        return log(new String[] { "c1", "c1", "c1", "c1", "c1", "c2", "c2", "c2", "c3", "c3" },
+                new String[] { "A", "A", "A", "B", "A", "Approve", "Aprove", "Close", "A", "A" },
+                new long[] { 0, 500, 1400, 1500, 5000, 0, 300, 200, 100, 100 });
+    }
+
+
+    private Table log(String[] cases, String[] activities, long[] times) {
+        return Table.create("Log").addColumns(
+                StringColumn.create("Case ID", cases),
+                StringColumn.create("concept:name", activities),
+                LongColumn.create("time:timestamp", times));
+    }
+
+
+    private List<String> rows(Table result) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < result.rowCount(); i++) {
+            rows.add(result.intColumn(0).getInt(i) + "|" + result.stringColumn(1).get(i)
+                    + "|" + result.stringColumn(2).get(i) + "|" + result.stringColumn(3).get(i)
+                    + "|" + result.intColumn(4).getInt(i) + "|" + result.stringColumn(5).get(i));
+        }
+        return rows;
+    }
+
+}
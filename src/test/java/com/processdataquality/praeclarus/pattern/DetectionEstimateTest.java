@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import com.processdataquality.praeclarus.plugin.Options;
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that an estimate made from a sample of every row, whichever index finds the
+ * candidates for the sampled labels, counts the same affected rows as a detection
+ */
+class DetectionEstimateTest {
+
+    private static final String[] WORDS = { "register", "approve", "invoice", "check",
+            "payment", "request", "send", "order", "review", "close" };
+
+
+    @Test
+    void levenshteinEstimateOfEveryRowIsExact() {
+        for (String index : new String[] { "None", "BK-tree", "Symmetric Delete", "Q-gram" }) {
+            assertEstimateIsExact(new DistortedLabelLevenshtein(), index);
+        }
+    }
+
+
+    @Test
+    void jaroWinklerEstimateOfEveryRowIsExact() {
+        for (String index : new String[] { "None", "Q-gram" }) {
+            assertEstimateIsExact(new DistortedLabelJaroWinkler(), index);
+        }
+    }
+
+
+    @Test
+    void intervalHoldsTheEstimate() {
+        DetectionEstimate estimate = DetectionEstimate.fromSample(1000, 100, 20);
+        assertEquals(200.0, estimate.getAffected(), 1e-9);
+        assertTrue(estimate.getLower() < 200 && estimate.getUpper() > 200);
+        assertEquals(0.2, estimate.getFraction(), 1e-9);
+    }
+
+
+    private void assertEstimateIsExact(AbstractDistortedLabel plugin, String index) {
+        Table table = labels(21, 800);
+        Options options = plugin.getOptions();
+        options.add("Column Name", "Label1");
+        options.add("Index", index);
+        plugin.setOptions(options);
+        plugin.detect(table);
+        long affected = plugin.getMetrics().getAffectedEvents();
+        assertTrue(affected > 0);
+
+        DetectionEstimate estimate = plugin.estimate(table, table.rowCount());
+        assertEquals(table.rowCount(), estimate.getSampleSize());
+        assertEquals((double) affected, estimate.getAffected(), 1e-9, index);
+    }
+
+
+    // labels made by editing a few words at random, so that many pairs are similar
+    private Table labels(long seed, int rows) {
+        Random random = new Random(seed);
+        StringColumn column = StringColumn.create("Label1");
+        for (int i = 0; i < rows; i++) {
+            StringBuilder label = new StringBuilder(WORDS[random.nextInt(WORDS.length)])
+                    .append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+            for (int edits = random.nextInt(4); edits > 0; edits--) {
+                int at = random.nextInt(label.length());
+                char c = (char) ('a' + random.nextInt(26));
+                switch (random.nextInt(3)) {
+                    case 0: label.setCharAt(at, c); break;
+                    case 1: label.insert(at, c); break;
+                    default: label.deleteCharAt(at);
+                }
+            }
+            column.append(label.toString());
+        }
+        return Table.create("Master").addColumns(column);
+    }
+
+}
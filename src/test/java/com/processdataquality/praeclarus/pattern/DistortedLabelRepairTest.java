@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import com.processdataquality.praeclarus.plugin.Options;
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that a repair resolves its changes as if they were applied one after another,
+ * and replaces whole values only
+ */
+class DistortedLabelRepairTest {
+
+    @Test
+    void chainedChangesReachTheFinalLabel() {
+        Table repaired = repair(column("a", "b", "c", "d"), changes("a", "b", "b", "c"));
+        assertLabels(repaired, "c", "c", "c", "d");
+    }
+
+
+    @Test
+    void laterChangesDoNotApplyToEarlierResults() {
+        // 'b' becomes 'c' before any 'a' becomes 'b', so the former 'a's stay 'b'
+        Table repaired = repair(column("a", "b", "c"), changes("b", "c", "a", "b"));
+        assertLabels(repaired, "b", "c", "c");
+    }
+
+
+    @Test
+    void swappedLabelsFollowTheOrderOfChanges() {
+        // all 'a's become 'b', then all 'b's (including the former 'a's) become 'a'
+        Table repaired = repair(column("a", "b", "a", "c"), changes("a", "b", "b", "a"));
+        assertLabels(repaired, "a", "a", "a", "c");
+    }
+
+
+    @Test
+    void cycleBackToTheStartLeavesLabelsUnchanged() {
+        Table repaired = repair(column("a", "b", "c", "x"),
+                changes("a", "b", "b", "c", "c", "a"));
+        assertLabels(repaired, "a", "a", "a", "x");
+    }
+
+
+    @Test
+    void partialMatchesAreNotReplaced() {
+        Table repaired = repair(column("house", "house keeping", "the house", "hose", "abc"),
+                changes("house", "home", "a.c", "x", "hose", "house"));
+        assertLabels(repaired, "home", "house keeping", "the house", "house", "abc");
+    }
+
+
+    @Test
+    void changesNamingAColumnApplyOnlyToIt() {
+        Table master = Table.create("Master").addColumns(
+                StringColumn.create("Label1", new String[] { "a", "b" }),
+                StringColumn.create("Label2", new String[] { "a", "b" }));
+        Table changes = Table.create("Repair").addColumns(
+                StringColumn.create("Replace", new String[] { "a", "b" }),
+                StringColumn.create("Replacement", new String[] { "x", "y" }),
+                StringColumn.create("Column", new String[] { "Label1", "Label2" }));
+        Table repaired = newPlugin("Label1,Label2").repair(master, changes);
+        assertEquals(Arrays.asList("x", "b"), values(repaired, "Label1"));
+        assertEquals(Arrays.asList("a", "y"), values(repaired, "Label2"));
+    }
+
+
+    private Table repair(Table master, Table changes) {
+        return newPlugin("Label1").repair(master, changes);
+    }
+
+
+    private DistortedLabelLevenshtein newPlugin(String columnNames) {
+        DistortedLabelLevenshtein plugin = new DistortedLabelLevenshtein();
+        Options options = plugin.getOptions();
+        options.add("Column Name", columnNames);
+        plugin.setOptions(options);
+        return plugin;
+    }
+
+
+    private Table column(String... labels) {
+        return Table.create("Master").addColumns(StringColumn.create("Label1", labels));
+    }
+
+
+    // a table of changes from alternating labels and their replacements
+    private Table changes(String... pairs) {
+        Table changes = Table.create("Repair").addColumns(
+                StringColumn.create("Replace"), StringColumn.create("Replacement"));
+        for (int i = 0; i < pairs.length; i += 2) {
+            changes.stringColumn(0).append(pairs[i]);
+            changes.stringColumn(1).append(pairs[i + 1]);
+        }
+        return changes;
+    }
+
+
+    private void assertLabels(Table repaired, String... expected) {
+        assertEquals(Arrays.asList(expected), values(repaired, "Label1"));
+    }
+
+
+    private List<String> values(Table table, String columnName) {
+        return table.stringColumn(columnName).asList();
+    }
+
+}
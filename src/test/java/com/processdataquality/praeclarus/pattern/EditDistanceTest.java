@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import org.apache.commons.text.similarity.LevenshteinDistance;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the bit-parallel, banded and batch edit distances against the commons-text
+ * Levenshtein distance they replaced
+ */
+class EditDistanceTest {
+
+    private static final LevenshteinDistance UNBOUNDED = LevenshteinDistance.getDefaultInstance();
+
+
+    @Test
+    void emptyStrings() {
+        assertEquals(0, EditDistance.distance("", ""));
+        assertEquals(3, EditDistance.distance("", "abc"));
+        assertEquals(3, EditDistance.distance("abc", ""));
+        assertEquals(3, EditDistance.distance("", "abc", 3));
+        assertEquals(-1, EditDistance.distance("", "abc", 2));
+        assertEquals(0, EditDistance.bandedDistance(new char[0], new char[0], 0));
+        assertEquals(70, EditDistance.distance("", repeat('x', 70)));
+    }
+
+
+    @Test
+    void zeroThreshold() {
+        LevenshteinDistance exact = new LevenshteinDistance(0);
+        String[][] pairs = { { "", "" }, { "house", "house" }, { "house", "hose" },
+                { "house", "mouse" }, { repeat('a', 80), repeat('a', 80) },
+                { repeat('a', 80), repeat('a', 79) + "b" } };
+        for (String[] pair : pairs) {
+            int expected = exact.apply(pair[0], pair[1]);
+            assertEquals(expected, EditDistance.distance(pair[0], pair[1], 0));
+            assertEquals(expected, EditDistance.bandedDistance(
+                    pair[0].toCharArray(), pair[1].toCharArray(), 0));
+        }
+    }
+
+
+    @Test
+    void negativeThresholdMatchesNothing() {
+        assertEquals(-1, EditDistance.distance("", "", -1));
+        assertEquals(-1, EditDistance.distance("house", "house", -1));
+        assertEquals(-1, EditDistance.distance(repeat('a', 80), repeat('a', 80), -1));
+        assertEquals(-1, EditDistance.bandedDistance(new char[0], new char[0], -1));
+        int[] out = new int[2];
+        EditDistance.distances("house".toCharArray(),
+                new char[][] { "house".toCharArray(), "hose".toCharArray() }, 0, 2, -1, out);
+        assertEquals(-1, out[0]);
+        assertEquals(-1, out[1]);
+    }
+
+
+    @Test
+    void earlyExitBoundary() {
+        String[][] pairs = {
+                { "abcdef", "abcxyz" },                         // differences at the end
+                { "xyzdef", "abcdef" },                         // differences at the start
+                { "kitten", "sitting" },
+                { "abc", "abcdefgh" },                          // length difference only
+                { repeat('a', 64), repeat('b', 64) },           // a full word
+                { repeat('a', 63) + "b", "b" + repeat('a', 63) },
+                { repeat('a', 65), repeat('a', 60) + "bbbbb" }, // past one word
+                { repeat('a', 100), "b" + repeat('a', 98) + "b" }
+        };
+        for (String[] pair : pairs) {
+            int distance = UNBOUNDED.apply(pair[0], pair[1]);
+            assertDistance(pair[0], pair[1], distance);
+            assertDistance(pair[0], pair[1], distance - 1);
+            assertDistance(pair[0], pair[1], distance + 1);
+        }
+    }
+
+
+    @Test
+    void agreesWithLibraryOnRandomPairs() {
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            String s1 = randomLabel(random, 90);
+            String s2 = random.nextBoolean() ? mutate(random, s1) : randomLabel(random, 90);
+            int threshold = random.nextInt(8) == 0 ? Integer.MAX_VALUE : random.nextInt(12);
+            assertDistance(s1, s2, threshold);
+        }
+    }
+
+
+    @Test
+    void batchAgreesWithLibrary() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            String query = randomLabel(random, 80);
+            char[][] candidates = new char[20][];
+            for (int j = 0; j < candidates.length; j++) {
+                candidates[j] = (j % 2 == 0 ? mutate(random, query) :
+                        randomLabel(random, 80)).toCharArray();
+            }
+            int threshold = random.nextInt(10);
+            LevenshteinDistance bounded = new LevenshteinDistance(threshold);
+            int[] out = new int[candidates.length];
+            EditDistance.distances(query.toCharArray(), candidates, 2, candidates.length,
+                    threshold, out);
+            for (int j = 2; j < candidates.length; j++) {
+                assertEquals(bounded.apply(query, new String(candidates[j])).intValue(), out[j],
+                        "'" + query + "' / '" + new String(candidates[j]) + "' at " + threshold);
+            }
+        }
+    }
+
+
+    // checks the bit-parallel and banded distances against the library's
+    private void assertDistance(String s1, String s2, int threshold) {
+        int expected = threshold < 0 ? -1 : threshold == Integer.MAX_VALUE ?
+                UNBOUNDED.apply(s1, s2) : new LevenshteinDistance(threshold).apply(s1, s2);
+        String message = "'" + s1 + "' / '" + s2 + "' at " + threshold;
+        assertEquals(expected, EditDistance.distance(s1, s2, threshold), message);
+        assertEquals(expected, EditDistance.distance(s2, s1, threshold), message);
+        assertEquals(expected, EditDistance.bandedDistance(s1.toCharArray(),
+                s2.toCharArray(), threshold), message);
+    }
+
+
+    // a label of up to maxLength characters from a small alphabet, so that random
+    // pairs are often close
+    private String randomLabel(Random random, int maxLength) {
+        char[] chars = new char[random.nextInt(maxLength + 1)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(4));
+        }
+        return new String(chars);
+    }
+
+
+    // a label a few random edits away from another
+    private String mutate(Random random, String label) {
+        StringBuilder builder = new StringBuilder(label);
+        int edits = random.nextInt(6);
+        for (int e = 0; e < edits; e++) {
+            int position = random.nextInt(builder.length() + 1);
+            char c = (char) ('a' + random.nextInt(5));
+            int kind = random.nextInt(3);
+            if (kind == 0 || builder.length() == 0) {
+                builder.insert(position, c);
+            }
+            else if (position == builder.length()) {
+                builder.deleteCharAt(position - 1);
+            }
+            else if (kind == 1) {
+                builder.deleteCharAt(position);
+            }
+            else {
+                builder.setCharAt(position, c);
+            }
+        }
+        return builder.toString();
+    }
+
+
+    private String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.LongColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the groups of events reported as sharing a timestamp within their case
+ */
+class FormBasedSharedTimestampTest {
+
+    private static final long NONE = CaseIndex.NO_TIME;
+
+
+    @Test
+    void eventsSharingATimestampAreGrouped() {
+        FormBasedSharedTimestamp plugin = new FormBasedSharedTimestamp();
+        Table result = plugin.detect(sharedTimes());
+
+        // c2's events without a timestamp don't form a group
+        assertEquals(Arrays.asList(
+                "c1|100|3|A, B, D|0, 1, 4",
+                "c1|200|2|C, E|2, 5",
+                "c3|500|3|A, B|7, 8, 9"), rows(result));
+        DetectionMetrics metrics = plugin.getMetrics();
+        assertEquals(8, metrics.getAffectedEvents());
+        assertEquals(12, metrics.getTotalEvents());
+        assertEquals(2, metrics.getAffectedCases());
+        assertEquals(3, metrics.getTotalCases());
+        assertEquals(3, plugin.getStatistics().get("Groups"));
+    }
+
+
+    @Test
+    void smallerGroupsAreLeftOut() {
+        FormBasedSharedTimestamp plugin = new FormBasedSharedTimestamp();
+        plugin.getOptions().add("Min Group Size", 3);
+        assertEquals(Arrays.asList("c1|100|3|A, B, D|0, 1, 4", "c3|500|3|A, B|7, 8, 9"),
+                rows(plugin.detect(sharedTimes())));
+        assertEquals(6, plugin.getMetrics().getAffectedEvents());
+
+        plugin.getOptions().add("Min Group Size", 1);
+        assertThrows(IllegalArgumentException.class, () -> plugin.detect(sharedTimes()));
+    }
+
+
+    @Test
+    void casesSplitBetweenThreadsGiveTheSameResults() {
+        Random random = new Random(3);
+        int rowCount = 20000;
+        String[] cases = new String[rowCount];
+        String[] activities = new String[rowCount];
+        long[] times = new long[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            cases[i] = "case" + random.nextInt(500);
+            activities[i] = "activity" + random.nextInt(5);
+            times[i] = random.nextInt(30) * 1000L;
+        }
+        Table table = log(cases, activities, times);
+        List<String> expected = rows(new FormBasedSharedTimestamp().detect(table));
+        assertTrue(expected.size() > 100, "too few groups to compare");
+
+        FormBasedSharedTimestamp plugin = new FormBasedSharedTimestamp();
+        plugin.getOptions().add("Parallelism", 4);
+        assertEquals(expected, rows(plugin.detect(table)));
+    }
+
+
+    private Table sharedTimes() {
+        return log(new String[] { "c1", "c1", "c1", "c2", "c1", "c1", "c2", "c3", "c3", "c3",
+                        "c2", "c2" },
+                new String[] { "A", "B", "C", "A", "D", "E", "B", "A", "B", "A", "C", "D" },
+                new long[] { 100, 100, 200, 300, 100, 200, 400, 500, 500, 500, NONE, NONE });
+    }
+
+
+    private Table log(String[] cases, String[] activities, long[] times) {
+        return Table.create("Log").addColumns(
+                StringColumn.create("Case ID", cases),
+                StringColumn.create("concept:name", activities),
+                LongColumn.create("time:timestamp", times));
+    }
+
+
+    private List<String> rows(Table result) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < result.rowCount(); i++) {
+            rows.add(result.stringColumn(0).get(i) + "|" + result.stringColumn(1).get(i)
+                    + "|" + result.intColumn(2).getInt(i) + "|" + result.stringColumn(3).get(i)
+                    + "|" + result.stringColumn(4).get(i));
+        }
+        return rows;
+    }
+
+}
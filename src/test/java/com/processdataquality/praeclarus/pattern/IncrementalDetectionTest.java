@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import com.processdataquality.praeclarus.plugin.Options;
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that detecting in appended rows, batch by batch, gives the same result table
+ * as one detection over all the rows, for each way of finding similar pairs
+ */
+class IncrementalDetectionTest {
+
+    private static final String[] WORDS = { "register", "approve", "invoice", "check",
+            "payment", "request", "send", "order", "review", "close" };
+
+
+    @Test
+    void levenshteinBatchesMatchFullDetection() {
+        for (String index : new String[] { "None", "BK-tree", "Symmetric Delete",
+                "Q-gram", "MinHash LSH" }) {
+            assertSameAsFull(new DistortedLabelLevenshtein(), new DistortedLabelLevenshtein(),
+                    index);
+        }
+    }
+
+
+    @Test
+    void jaroWinklerBatchesMatchFullDetection() {
+        for (String index : new String[] { "None", "Q-gram" }) {
+            assertSameAsFull(new DistortedLabelJaroWinkler(), new DistortedLabelJaroWinkler(),
+                    index);
+        }
+    }
+
+
+    @Test
+    void appendedLabelsAreAddedToTheKeptTree() {
+        List<String> labels = labels(5, 2000);
+        DistortedLabelLevenshtein full = new DistortedLabelLevenshtein();
+        configure(full, "BK-tree").detect(table(labels, 0, 2000));
+        long fullBuild = full.getStatistics().get("BK-tree build comparisons");
+
+        DistortedLabelLevenshtein batched = new DistortedLabelLevenshtein();
+        configure(batched, "BK-tree").detect(table(labels, 0, 1900));
+        batched.detectAppended(table(labels, 1900, 2000));
+        DetectionStatistics statistics = batched.getStatistics();
+
+        // the tree holds every label, but only the new ones were inserted this time
+        assertEquals(full.getStatistics().get("BK-tree nodes"), statistics.get("BK-tree nodes"));
+        assertTrue(statistics.get("BK-tree build comparisons") < fullBuild / 5);
+        assertEquals(statistics.get("New labels"), statistics.get("BK-tree queries"));
+    }
+
+
+    private void assertSameAsFull(AbstractDistortedLabel full, AbstractDistortedLabel batched,
+                                  String index) {
+        List<String> labels = labels(3, 1500);
+        List<String> expected = rows(configure(full, index).detect(table(labels, 0, 1500)));
+        assertTrue(expected.size() > 20, "too few similar pairs to compare");
+
+        configure(batched, index).detect(table(labels, 0, 1000));
+        batched.detectAppended(table(labels, 1000, 1300));
+        assertEquals(expected, rows(batched.detectAppended(table(labels, 1300, 1500))),
+                index);
+    }
+
+
+    private AbstractDistortedLabel configure(AbstractDistortedLabel plugin, String index) {
+        Options options = plugin.getOptions();
+        options.add("Column Name", "Label1");
+        options.add("Index", index);
+        plugin.setOptions(options);
+        return plugin;
+    }
+
+
+    // labels made by editing a few words at random, so that many pairs are similar
+    private List<String> labels(long seed, int rows) {
+        Random random = new Random(seed);
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            StringBuilder label = new StringBuilder(WORDS[random.nextInt(WORDS.length)])
+                    .append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+            for (int edits = random.nextInt(3); edits > 0; edits--) {
+                int at = random.nextInt(label.length());
+                char c = (char) ('a' + random.nextInt(26));
+                switch (random.nextInt(3)) {
+                    case 0: label.setCharAt(at, c); break;
+                    case 1: label.insert(at, c); break;
+                    default: label.deleteCharAt(at);
+                }
+            }
+            labels.add(label.toString());
+        }
+        return labels;
+    }
+
+
+    private Table table(List<String> labels, int from, int to) {
+        return Table.create("Master").addColumns(
+                StringColumn.create("Label1", labels.subList(from, to)));
+    }
+
+
+    private List<String> rows(Table result) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < result.rowCount(); i++) {
+            rows.add(result.stringColumn(0).get(i) + "|" + result.intColumn(1).getInt(i)
+                    + "|" + result.stringColumn(2).get(i) + "|" + result.intColumn(3).getInt(i));
+        }
+        return rows;
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import com.processdataquality.praeclarus.plugin.Options;
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that clustered results map each variant to the most frequent label of its
+ * cluster of similar labels, with one row per variant
+ */
+class LabelClusteringTest {
+
+    @Test
+    void unionFindMergesChainsIntoOneSet() {
+        UnionFind clusters = new UnionFind(6);
+        assertTrue(clusters.union(0, 1));
+        assertTrue(clusters.union(2, 3));
+        assertTrue(clusters.union(1, 3));
+        assertFalse(clusters.union(0, 2));                  // already joined through 1-3
+        assertEquals(clusters.find(0), clusters.find(2));
+        assertEquals(4, clusters.size(3));
+        assertEquals(1, clusters.size(4));
+        assertTrue(clusters.find(4) != clusters.find(5));
+    }
+
+
+    @Test
+    void variantsMapToTheMostFrequentLabel() {
+        // 'registr ordr' is only similar to the canonical label through other variants
+        DistortedLabelLevenshtein plugin = new DistortedLabelLevenshtein();
+        Table result = cluster(plugin, "register order", "registr order", "register order",
+                "approve", "register ordr", "aprove", "register order", "approve",
+                "registr ordr", "close");
+        assertEquals(Arrays.asList(
+                "register order|3|registr order|1",
+                "register order|3|register ordr|1",
+                "approve|2|aprove|1",
+                "register order|3|registr ordr|1"), rows(result));
+        assertEquals(5, plugin.getStatistics().get("Similar pairs"));
+        assertEquals(2, plugin.getStatistics().get("Clusters"));
+    }
+
+
+    @Test
+    void equallyFrequentLabelsMapToTheFirstSeen() {
+        Table result = cluster(new DistortedLabelLevenshtein(), "sent", "send", "close");
+        assertEquals(Arrays.asList("sent|1|send|1"), rows(result));
+    }
+
+
+    @Test
+    void unclusteredResultsListEachSimilarPair() {
+        DistortedLabelLevenshtein plugin = new DistortedLabelLevenshtein();
+        Options options = plugin.getOptions();
+        options.add("Column Name", "Label1");
+        options.add("Threshold", 1);
+        plugin.setOptions(options);
+        Table result = plugin.detect(table("register order", "registr order",
+                "register ordr", "registr ordr"));
+        assertEquals(4, result.rowCount());
+    }
+
+
+    private Table cluster(AbstractDistortedLabel plugin, String... labels) {
+        Options options = plugin.getOptions();
+        options.add("Column Name", "Label1");
+        options.add("Threshold", 1);
+        options.add("Cluster Results", true);
+        plugin.setOptions(options);
+        return plugin.detect(table(labels));
+    }
+
+
+    private Table table(String... labels) {
+        return Table.create("Master").addColumns(StringColumn.create("Label1", labels));
+    }
+
+
+    private List<String> rows(Table result) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < result.rowCount(); i++) {
+            rows.add(result.stringColumn(0).get(i) + "|" + result.intColumn(1).getInt(i)
+                    + "|" + result.stringColumn(2).get(i) + "|" + result.intColumn(3).getInt(i));
+        }
+        return rows;
+    }
+
+}
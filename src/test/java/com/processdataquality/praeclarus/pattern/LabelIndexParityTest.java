@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import com.processdataquality.praeclarus.plugin.Options;
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the label indexes only speed up a detection: each must report the same
+ * pairs, in the same order, as comparing every pair of labels
+ */
+class LabelIndexParityTest {
+
+    private static final String[] WORDS = { "register", "approve", "invoice", "check",
+            "payment", "request", "send", "order", "review", "close", "a", "ok" };
+
+
+    @Test
+    void bkTreeMatchesAllPairs() {
+        for (int threshold = 1; threshold <= 4; threshold++) {
+            assertSameAsAllPairs(new DistortedLabelLevenshtein(), "BK-tree", threshold, 3);
+        }
+    }
+
+
+    @Test
+    void symmetricDeleteMatchesAllPairs() {
+        for (int threshold = 1; threshold <= SymmetricDeleteIndex.MAX_DELETES; threshold++) {
+            assertSameAsAllPairs(new DistortedLabelLevenshtein(), "Symmetric Delete",
+                    threshold, 5);
+        }
+    }
+
+
+    @Test
+    void symmetricDeleteFallsBackToBkTreeForLargeThresholds() {
+        DistortedLabelLevenshtein plugin = new DistortedLabelLevenshtein();
+        Table table = labels(13, 1500);
+        List<String> expected = rows(detect(new DistortedLabelLevenshtein(), table, "None", 4));
+        assertEquals(expected, rows(detect(plugin, table, "Symmetric Delete", 4)));
+        assertEquals(1, plugin.getStatistics().get("Symmetric delete replaced by BK-tree"));
+        assertTrue(plugin.getStatistics().get("BK-tree nodes") > 0);
+    }
+
+
+    @Test
+    void qGramIndexMatchesAllPairsForLevenshtein() {
+        for (int threshold = 1; threshold <= 3; threshold++) {
+            assertSameAsAllPairs(new DistortedLabelLevenshtein(), "Q-gram", threshold, 7);
+        }
+    }
+
+
+    @Test
+    void qGramIndexMatchesAllPairsForJaroWinkler() {
+        for (double threshold : new double[] { 0.7, 0.8, 0.9 }) {
+            assertSameAsAllPairs(new DistortedLabelJaroWinkler(), "Q-gram", threshold, 9);
+        }
+    }
+
+
+    @Test
+    void minHashFindsOnlyPairsThatAllPairsFinds() {
+        // LSH may miss similar pairs, but each pair it reports is verified, so it must
+        // be one of the all-pairs results, in the same relative order
+        for (int threshold = 1; threshold <= 2; threshold++) {
+            Table table = labels(17, 1500);
+            List<String> expected = rows(detect(new DistortedLabelLevenshtein(), table,
+                    "None", threshold));
+            DistortedLabelLevenshtein plugin = new DistortedLabelLevenshtein();
+            List<String> found = rows(detect(plugin, table, "MinHash LSH", threshold));
+            assertTrue(found.size() > 0);
+            int next = 0;
+            for (String row : found) {
+                int at = expected.subList(next, expected.size()).indexOf(row);
+                assertTrue(at >= 0, "not found by all-pairs, or out of order: " + row);
+                next += at + 1;
+            }
+            assertEquals(found.size(), plugin.getStatistics().get("LSH pairs verified"));
+        }
+    }
+
+
+    private void assertSameAsAllPairs(AbstractDistortedLabel plugin, String index,
+                                      Number threshold, long seed) {
+        Table table = labels(seed, 1500);
+        AbstractDistortedLabel allPairs = newInstance(plugin);
+        List<String> expected = rows(detect(allPairs, table, "None", threshold));
+        assertTrue(expected.size() > 20, "too few similar pairs to compare");
+        assertEquals(expected, rows(detect(plugin, table, index, threshold)),
+                index + " at threshold " + threshold);
+    }
+
+
+    private AbstractDistortedLabel newInstance(AbstractDistortedLabel plugin) {
+        return plugin instanceof DistortedLabelJaroWinkler ?
+                new DistortedLabelJaroWinkler() : new DistortedLabelLevenshtein();
+    }
+
+
+    private Table detect(AbstractDistortedLabel plugin, Table table, String index,
+                         Number threshold) {
+        Options options = plugin.getOptions();
+        options.add("Column Name", "Label1");
+        options.add("Index", index);
+        options.add("Threshold", threshold);
+        plugin.setOptions(options);
+        return plugin.detect(table);
+    }
+
+
+    // labels made by editing a few words at random, so that many pairs are similar
+    // at each threshold, with some short labels where any two are close
+    private Table labels(long seed, int rows) {
+        Random random = new Random(seed);
+        StringColumn column = StringColumn.create("Label1");
+        for (int i = 0; i < rows; i++) {
+            StringBuilder label = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+            if (random.nextBoolean()) {
+                label.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            for (int edits = random.nextInt(4); edits > 0 && label.length() > 0; edits--) {
+                int at = random.nextInt(label.length());
+                char c = (char) ('a' + random.nextInt(26));
+                switch (random.nextInt(3)) {
+                    case 0: label.setCharAt(at, c); break;
+                    case 1: label.insert(at, c); break;
+                    default: label.deleteCharAt(at);
+                }
+            }
+            column.append(label.toString());
+        }
+        return Table.create("Master").addColumns(column);
+    }
+
+
+    private List<String> rows(Table result) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < result.rowCount(); i++) {
+            rows.add(result.stringColumn(0).get(i) + "|" + result.stringColumn(2).get(i));
+        }
+        return rows;
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import com.processdataquality.praeclarus.plugin.Options;
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks each normalization step, and that labels with the same normalized form are
+ * reported as similar without being compared
+ */
+class LabelNormalizerTest {
+
+    @Test
+    void noStepsLeaveLabelsUnchanged() {
+        LabelNormalizer normalizer = new LabelNormalizer(false, false, false, false);
+        assertTrue(normalizer.isIdentity());
+        assertEquals(" Send-Invoice\u00A0", normalizer.normalize(" Send-Invoice\u00A0"));
+    }
+
+
+    @Test
+    void unicodeNormalizationFoldsCompatibleForms() {
+        LabelNormalizer normalizer = new LabelNormalizer(true, false, false, false);
+        assertFalse(normalizer.isIdentity());
+        assertEquals("file", normalizer.normalize("\uFB01le"));               // ligature
+        assertEquals("Approve", normalizer.normalize("\uFF21pprove"));        // full width
+        assertEquals("caf\u00E9", normalizer.normalize("cafe\u0301"));        // combining
+    }
+
+
+    @Test
+    void ignoringCaseFoldsFully() {
+        LabelNormalizer normalizer = new LabelNormalizer(false, true, false, false);
+        assertEquals("approve order", normalizer.normalize("APPROVE Order"));
+        assertEquals("strasse", normalizer.normalize("Stra\u00DFe"));
+    }
+
+
+    @Test
+    void punctuationIsStripped() {
+        LabelNormalizer normalizer = new LabelNormalizer(false, false, true, false);
+        assertEquals("sendinvoice v2", normalizer.normalize("send-invoice (v2)!"));
+        assertEquals("dont send", normalizer.normalize("\u201Cdon't\u201D send"));
+    }
+
+
+    @Test
+    void whitespaceIsCollapsedAndTrimmed() {
+        LabelNormalizer normalizer = new LabelNormalizer(false, false, false, true);
+        assertEquals("send invoice", normalizer.normalize("  send \t  invoice \n"));
+        assertEquals("send invoice", normalizer.normalize("send invoice"));
+    }
+
+
+    @Test
+    void stepsApplyInOrder() {
+        // NFKC turns the no-break spaces into spaces before whitespace is collapsed,
+        // and punctuation is stripped before it can leave a double space
+        LabelNormalizer normalizer = new LabelNormalizer(true, true, true, true);
+        assertEquals("send invoice", normalizer.normalize("\u00A0SEND -\u00A0 Invoice."));
+    }
+
+
+    @Test
+    void labelsWithTheSameFormAreSimilarWithoutComparing() {
+        DistortedLabelLevenshtein plugin = new DistortedLabelLevenshtein();
+        Options options = plugin.getOptions();
+        options.add("Column Name", "Label1");
+        options.add("Threshold", 1);
+        options.add("Ignore Case", true);
+        options.add("Collapse Whitespace", true);
+        plugin.setOptions(options);
+        Table result = plugin.detect(Table.create("Master").addColumns(
+                StringColumn.create("Label1", "Approve Order", "approve  order",
+                        "approve order", "aprove order", "close", "approve order")));
+
+        // the first three labels share a form, which is one edit from the fourth's
+        assertEquals(Arrays.asList(
+                "Approve Order|1|approve  order|1",
+                "Approve Order|1|approve order|2",
+                "Approve Order|1|aprove order|1",
+                "approve  order|1|approve order|2",
+                "approve  order|1|aprove order|1",
+                "approve order|2|aprove order|1"), rows(result));
+        DetectionStatistics statistics = plugin.getStatistics();
+        assertEquals(5, statistics.get("Distinct labels"));
+        assertEquals(3, statistics.get("Normalized labels"));
+        assertEquals(5, statistics.get("Pairs grouped by normalization"));
+    }
+
+
+    private List<String> rows(Table result) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < result.rowCount(); i++) {
+            rows.add(result.stringColumn(0).get(i) + "|" + result.intColumn(1).getInt(i)
+                    + "|" + result.stringColumn(2).get(i) + "|" + result.intColumn(3).getInt(i));
+        }
+        return rows;
+    }
+
+}
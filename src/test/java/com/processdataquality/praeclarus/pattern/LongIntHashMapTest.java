@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks the primitive long-to-int map against a HashMap, through growth and reuse
+ */
+class LongIntHashMapTest {
+
+    @Test
+    void firstValueIsKept() {
+        LongIntHashMap map = new LongIntHashMap();
+        assertEquals(-1, map.putIfAbsent(1000L, 0));
+        assertEquals(-1, map.putIfAbsent(-5L, 1));
+        assertEquals(0, map.putIfAbsent(1000L, 2));
+        assertEquals(0, map.get(1000L));
+        assertEquals(1, map.get(-5L));
+        assertEquals(-1, map.get(2000L));
+        assertEquals(2, map.size());
+        assertThrows(IllegalArgumentException.class, () -> map.putIfAbsent(Long.MIN_VALUE, 3));
+    }
+
+
+    @Test
+    void growingKeepsEveryEntryInOrderAdded() {
+        Random random = new Random(13);
+        LongIntHashMap map = new LongIntHashMap(4);
+        Map<Long, Integer> expected = new HashMap<>();
+        List<Long> order = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            long key = random.nextInt(5000) * 1000L;       // close keys, as timestamps are
+            int previous = map.putIfAbsent(key, i);
+            Integer kept = expected.putIfAbsent(key, i);
+            assertEquals(kept != null ? kept : -1, previous);
+            if (kept == null) order.add(key);
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue().intValue(), map.get(entry.getKey()));
+        }
+        List<Long> keys = new ArrayList<>();
+        map.forEach((key, value) -> keys.add(key));
+        assertEquals(order, keys);
+    }
+
+
+    @Test
+    void clearedMapCanBeReused() {
+        LongIntHashMap map = new LongIntHashMap();
+        for (long key = 0; key < 100; key++) {
+            map.putIfAbsent(key, (int) key);
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(-1, map.get(7L));
+        assertEquals(-1, map.putIfAbsent(7L, 70));
+        assertEquals(70, map.get(7L));
+        assertEquals(1, map.size());
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import com.processdataquality.praeclarus.plugin.Options;
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that checking several columns in one detection gives each column's results,
+ * labelled with the column, as checking each column on its own would
+ */
+class MultiColumnDetectionTest {
+
+    private static final String[] WORDS = { "register", "approve", "invoice", "check",
+            "payment", "request", "send", "order", "review", "close" };
+
+
+    @Test
+    void resultsAreLabelledWithTheirColumn() {
+        Table table = Table.create("Master").addColumns(
+                StringColumn.create("Activity", "approve", "aprove", "send", "send"),
+                StringColumn.create("Resource", "alice", "bob", "alicee", "bob"),
+                StringColumn.create("Case ID", "c1", "c1", "c2", "c3"));
+        DistortedLabelLevenshtein plugin = new DistortedLabelLevenshtein();
+        Table result = detect(plugin, table, "Activity, Resource", 1);
+        assertEquals(Arrays.asList("approve|1|aprove|1|Activity", "alice|1|alicee|1|Resource"),
+                rows(result));
+
+        // c1 holds the distorted activity and resource, c2 the distorted resource
+        DetectionMetrics metrics = plugin.getMetrics();
+        assertEquals(4, metrics.getAffectedEvents());
+        assertEquals(8, metrics.getTotalEvents());
+        assertEquals(2, metrics.getAffectedCases());
+        assertEquals(3, metrics.getTotalCases());
+        assertEquals(6, plugin.getStatistics().get("Distinct labels"));
+    }
+
+
+    @Test
+    void sharedScanMatchesOneColumnAtATime() {
+        Table table = Table.create("Master").addColumns(labels("Activity", 3, 1500),
+                labels("Resource", 4, 1500));
+        for (int parallelism : new int[] { 1, 4 }) {
+            List<String> expected = new ArrayList<>();
+            expected.addAll(rows(detect(new DistortedLabelLevenshtein(), table, "Activity", 1)));
+            expected.addAll(rows(detect(new DistortedLabelLevenshtein(), table, "Resource", 1)));
+            assertTrue(expected.size() > 20, "too few similar pairs to compare");
+
+            DistortedLabelLevenshtein plugin = new DistortedLabelLevenshtein();
+            plugin.getOptions().add("Parallelism", parallelism);
+            assertEquals(expected, rows(detect(plugin, table, "Activity, Resource", 1)),
+                    "parallelism " + parallelism);
+        }
+    }
+
+
+    private Table detect(AbstractDistortedLabel plugin, Table table, String columns,
+                         int threshold) {
+        Options options = plugin.getOptions();
+        options.add("Column Name", columns);
+        options.add("Threshold", threshold);
+        plugin.setOptions(options);
+        return plugin.detect(table);
+    }
+
+
+    // labels made by editing a few words at random, so that many pairs are similar
+    private StringColumn labels(String name, long seed, int rows) {
+        Random random = new Random(seed);
+        StringColumn column = StringColumn.create(name);
+        for (int i = 0; i < rows; i++) {
+            StringBuilder label = new StringBuilder(WORDS[random.nextInt(WORDS.length)])
+                    .append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+            for (int edits = random.nextInt(3); edits > 0; edits--) {
+                int at = random.nextInt(label.length());
+                char c = (char) ('a' + random.nextInt(26));
+                switch (random.nextInt(3)) {
+                    case 0: label.setCharAt(at, c); break;
+                    case 1: label.insert(at, c); break;
+                    default: label.deleteCharAt(at);
+                }
+            }
+            column.append(label.toString());
+        }
+        return column;
+    }
+
+
+    private List<String> rows(Table result) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < result.rowCount(); i++) {
+            rows.add(result.stringColumn(0).get(i) + "|" + result.intColumn(1).getInt(i)
+                    + "|" + result.stringColumn(2).get(i) + "|" + result.intColumn(3).getInt(i)
+                    + "|" + result.stringColumn(4).get(i));
+        }
+        return rows;
+    }
+
+}
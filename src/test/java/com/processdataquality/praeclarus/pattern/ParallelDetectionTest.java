@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import com.processdataquality.praeclarus.plugin.Options;
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that comparing labels in parallel blocks gives the same result table, in the
+ * same order, as comparing them on one thread
+ */
+class ParallelDetectionTest {
+
+    private static final String[] WORDS = { "register", "approve", "invoice", "check",
+            "payment", "request", "send", "order", "review", "close" };
+
+
+    @Test
+    void levenshteinBlocksMatchOneThread() {
+        Table table = labels(7, 3000);
+        List<String> expected = rows(detect(new DistortedLabelLevenshtein(), table, 1));
+        assertTrue(expected.size() > 100);
+        for (int parallelism : new int[] { 2, 3, 8 }) {
+            assertEquals(expected, rows(detect(new DistortedLabelLevenshtein(), table,
+                    parallelism)), "parallelism " + parallelism);
+        }
+    }
+
+
+    @Test
+    void jaroWinklerBlocksMatchOneThread() {
+        Table table = labels(11, 2000);
+        List<String> expected = rows(detect(new DistortedLabelJaroWinkler(), table, 1));
+        assertTrue(expected.size() > 100);
+        for (int parallelism : new int[] { 2, 5 }) {
+            assertEquals(expected, rows(detect(new DistortedLabelJaroWinkler(), table,
+                    parallelism)), "parallelism " + parallelism);
+        }
+    }
+
+
+    @Test
+    void stringHookBlocksMatchOneThread() {
+        Table table = labels(13, 1000);
+        List<String> expected = rows(detect(new SharedPrefix(), table, 1));
+        assertTrue(expected.size() > 100);
+        assertEquals(expected, rows(detect(new SharedPrefix(), table, 4)));
+    }
+
+
+    @Test
+    void schedulerMergesBlocksInOrder() {
+        PairBlockScheduler scheduler = new PairBlockScheduler(4);
+        List<int[]> merged = new ArrayList<>();
+        int n = 1000;
+        List<int[]> results = scheduler.run(n, (from, to) -> new int[] { from, to },
+                (result, from, to) -> merged.add(new int[] { from, to }));
+
+        // the blocks cover every row once, and reach the listener in row order
+        int next = 0;
+        for (int i = 0; i < merged.size(); i++) {
+            assertEquals(next, merged.get(i)[0]);
+            assertEquals(next, results.get(i)[0]);
+            next = merged.get(i)[1];
+        }
+        assertEquals(n, next);
+    }
+
+
+    private Table detect(AbstractDistortedLabel plugin, Table table, int parallelism) {
+        Options options = plugin.getOptions();
+        options.add("Column Name", "Label1");
+        options.add("Index", "None");
+        options.add("Parallelism", parallelism);
+        plugin.setOptions(options);
+        return plugin.detect(table);
+    }
+
+
+    // labels made by editing a few words at random, so that many pairs are similar
+    private Table labels(long seed, int rows) {
+        Random random = new Random(seed);
+        StringColumn column = StringColumn.create("Label1");
+        for (int i = 0; i < rows; i++) {
+            StringBuilder label = new StringBuilder(WORDS[random.nextInt(WORDS.length)])
+                    .append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+            for (int edits = random.nextInt(3); edits > 0; edits--) {
+                int at = random.nextInt(label.length());
+                char c = (char) ('a' + random.nextInt(26));
+                switch (random.nextInt(3)) {
+                    case 0: label.setCharAt(at, c); break;
+                    case 1: label.insert(at, c); break;
+                    default: label.deleteCharAt(at);
+                }
+            }
+            column.append(label.toString());
+        }
+        return Table.create("Master").addColumns(column);
+    }
+
+
+    private List<String> rows(Table result) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < result.rowCount(); i++) {
+            rows.add(result.stringColumn(0).get(i) + "|" + result.intColumn(1).getInt(i)
+                    + "|" + result.stringColumn(2).get(i) + "|" + result.intColumn(3).getInt(i));
+        }
+        return rows;
+    }
+
+
+    // a plugin comparing labels only through the string hook, as the simplest
+    // plugins do, finding labels that share their first four characters
+    private static class SharedPrefix extends AbstractDistortedLabel {
+
+        @Override
+        protected void detect(StringColumn column, String s1, String s2) {
+            if (s1.length() >= 4 && s2.length() >= 4 && s1.regionMatches(0, s2, 0, 4)) {
+                addResult(column, s1, s2);
+            }
+        }
+
+        @Override
+        protected boolean isParallelisable() { return true; }
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.LongColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the attribute values reported as recorded almost only with one activity, and
+ * the confidence and support of each, counted in cases
+ */
+class ScatteredEventCoOccurrenceTest {
+
+    @Test
+    void exclusiveAndFrequentValuesAreReported() {
+        ScatteredEventCoOccurrence plugin = new ScatteredEventCoOccurrence();
+        Table result = plugin.detect(tickets());
+
+        // 'Escalated' is on 'Update' in 3 of the 4 cases holding it, below 0.9
+        assertEquals(Arrays.asList(
+                "Status|Open|Create|10|1.0|1.0",
+                "Priority|High|Create|2|1.0|0.2"), rows(result));
+        assertEquals(12, plugin.getMetrics().getAffectedEvents());
+        assertEquals(15, plugin.getMetrics().getTotalEvents());
+        assertEquals(3, plugin.getStatistics().get("Attribute values"));
+        assertEquals(4, plugin.getStatistics().get("Value-activity pairs"));
+    }
+
+
+    @Test
+    void confidenceAndSupportThresholdsApply() {
+        ScatteredEventCoOccurrence plugin = new ScatteredEventCoOccurrence();
+        plugin.getOptions().add("Min Confidence", 0.7);
+        plugin.getOptions().add("Min Support", 0.25);
+
+        // the repeated event in c1 counts once towards the cases, but both are affected
+        assertEquals(Arrays.asList(
+                "Status|Open|Create|10|1.0|1.0",
+                "Status|Escalated|Update|3|0.75|0.3"), rows(plugin.detect(tickets())));
+        assertEquals(14, plugin.getMetrics().getAffectedEvents());
+    }
+
+
+    @Test
+    void onlyTheNamedAttributesAreChecked() {
+        ScatteredEventCoOccurrence plugin = new ScatteredEventCoOccurrence();
+        plugin.getOptions().add("Attribute Columns", "Priority");
+        assertEquals(Arrays.asList("Priority|High|Create|2|1.0|0.2"),
+                rows(plugin.detect(tickets())));
+    }
+
+
+    @Test
+    void casesSplitBetweenThreadsGiveTheSameCounts() {
+        Random random = new Random(9);
+        int rowCount = 20000;
+        String[] cases = new String[rowCount];
+        String[] activities = new String[rowCount];
+        String[] statuses = new String[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            cases[i] = "case" + random.nextInt(1000);
+            int activity = random.nextInt(6);
+            activities[i] = "activity" + activity;
+            statuses[i] = random.nextInt(4) == 0 ? "status" + random.nextInt(40) :
+                    "flag" + activity + "-" + random.nextInt(3);
+        }
+        String[] priorities = new String[rowCount];
+        Arrays.fill(priorities, "");
+        Table table = log(cases, activities, statuses, priorities);
+        List<String> expected = rows(new ScatteredEventCoOccurrence().detect(table));
+        assertTrue(expected.size() > 10, "too few values reported to compare");
+
+        ScatteredEventCoOccurrence plugin = new ScatteredEventCoOccurrence();
+        plugin.getOptions().add("Parallelism", 4);
+        assertEquals(expected, rows(plugin.detect(table)));
+    }
+
+
+    // ten cases, each created 'Open', two with 'High' priority, and four escalated
+    private Table tickets() {
+        List<String> cases = new ArrayList<>();
+        List<String> activities = new ArrayList<>();
+        List<String> statuses = new ArrayList<>();
+        List<String> priorities = new ArrayList<>();
+        for (int c = 1; c <= 10; c++) {
+            add(cases, activities, statuses, priorities, "c" + c, "Create", "Open",
+                    c == 5 || c == 6 ? "High" : "");
+        }
+        for (String c : new String[] { "c1", "c1", "c2", "c3" }) {
+            add(cases, activities, statuses, priorities, c, "Update", "Escalated", "");
+        }
+        add(cases, activities, statuses, priorities, "c4", "Close", "Escalated", "");
+        return log(cases.toArray(new String[0]), activities.toArray(new String[0]),
+                statuses.toArray(new String[0]), priorities.toArray(new String[0]));
+    }
+
+
+    private void add(List<String> cases, List<String> activities, List<String> statuses,
+                     List<String> priorities, String c, String activity, String status,
+                     String priority) {
+        cases.add(c);
+        activities.add(activity);
+        statuses.add(status);
+        priorities.add(priority);
+    }
+
+
+    private Table log(String[] cases, String[] activities, String[] statuses,
+                      String[] priorities) {
+        long[] times = new long[cases.length];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = i * 1000L;
+        }
+        return Table.create("Log").addColumns(
+                StringColumn.create("Case ID", cases),
+                StringColumn.create("concept:name", activities),
+                LongColumn.create("time:timestamp", times),
+                StringColumn.create("Status", statuses),
+                StringColumn.create("Priority", priorities));
+    }
+
+
+    private List<String> rows(Table result) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < result.rowCount(); i++) {
+            rows.add(result.stringColumn(0).get(i) + "|" + result.stringColumn(1).get(i)
+                    + "|" + result.stringColumn(2).get(i) + "|" + result.intColumn(3).getInt(i)
+                    + "|" + result.doubleColumn(4).getDouble(i)
+                    + "|" + result.doubleColumn(5).getDouble(i));
+        }
+        return rows;
+    }
+
+}
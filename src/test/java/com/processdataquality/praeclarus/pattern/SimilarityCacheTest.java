@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks which 'Cache File' values open a cache, and that scores survive reopening it
+ */
+class SimilarityCacheTest {
+
+    private Path directory;
+
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("similarity-cache");
+    }
+
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        Files.deleteIfExists(directory.resolve("cache.bin"));
+        Files.deleteIfExists(directory.resolve("folder"));
+        Files.deleteIfExists(directory);
+    }
+
+
+    @Test
+    void blankNameMeansNoCache() {
+        assertNull(SimilarityCache.open(null, 100));
+        assertNull(SimilarityCache.open("  ", 100));
+    }
+
+
+    @Test
+    void directoryIsRejected() throws IOException {
+        Path folder = Files.createDirectory(directory.resolve("folder"));
+        assertThrows(IllegalArgumentException.class,
+                () -> SimilarityCache.open(folder.toString(), 100));
+    }
+
+
+    @Test
+    void fileInMissingDirectoryIsRejected() {
+        String name = directory.resolve("missing").resolve("cache.bin").toString();
+        assertThrows(IllegalArgumentException.class, () -> SimilarityCache.open(name, 100));
+    }
+
+
+    @Test
+    void scoresSurviveReopening() throws IOException {
+        String name = directory.resolve("cache.bin").toString();
+        try (SimilarityCache cache = SimilarityCache.open(name, 100)) {
+            cache.put("Levenshtein", "house", "hose", 1);
+            cache.putLowerBound("Levenshtein", "house", "rusty", 3);
+        }
+        try (SimilarityCache cache = SimilarityCache.open(name, 100)) {
+            assertNotNull(cache);
+            SimilarityCache.Entry exact = cache.get("Levenshtein", "house", "hose");
+            assertTrue(exact.isExact());
+            assertEquals(1.0, exact.getValue());
+            SimilarityCache.Entry bound = cache.get("Levenshtein", "house", "rusty");
+            assertFalse(bound.isExact());
+            assertEquals(3.0, bound.getValue());
+            assertNull(cache.get("JaroWinkler", "house", "hose"));
+
+            DetectionStatistics statistics = new DetectionStatistics();
+            cache.recordStatistics(statistics);
+            assertEquals(2, statistics.get("Cache hits"));
+            assertEquals(1, statistics.get("Cache misses"));
+        }
+    }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that every similarity backend gives exactly the values of the commons-text
+ * 1.6 distances the distorted label patterns used before, and so the same values as
+ * each other, over edge cases and seeded random label pairs. Those distances are
+ * copied here, so that the check does not depend on the library version resolved.
+ */
+class SimilarityKernelParityTest {
+
+    // Pairs exercising empty and single characters, long common prefixes (which the
+    // library does not cap), odd numbers of half-transpositions, labels of more than
+    // one 64-bit word, and characters outside ASCII
+    private static final String[][] EDGE_CASES = {
+            { "", "" }, { "", "a" }, { "a", "" }, { "a", "a" }, { "a", "b" },
+            { "ab", "ba" }, { "abc", "bca" }, { "martha", "marhta" },
+            { "dwayne", "duane" }, { "dixon", "dicksonx" }, { "crate", "trace" },
+            { "house", "hose" }, { "roust", "rusty" }, { "abcdefgh", "abcdefgx" },
+            { "register request", "register requests" },
+            { "Register Request", "register request" },
+            { "approve purchase order", "purchase order approve" },
+            { "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa",
+              "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaab" },
+            { "café crème", "cafe creme" }, { "été", "ete" }
+    };
+
+
+    @Test
+    void backendsAreListed() {
+        List<SimilarityKernel> kernels = SimilarityKernels.getAll();
+        assertEquals(2, kernels.size());
+        assertEquals(BitParallelSimilarityKernel.NAME, SimilarityKernels.getDefault().getName());
+        assertEquals(kernels.get(0), SimilarityKernels.getDefault());
+        assertTrue(SimilarityKernels.get("Scalar") instanceof ScalarSimilarityKernel);
+        assertThrows(IllegalArgumentException.class, () -> SimilarityKernels.get("vector"));
+    }
+
+
+    @Test
+    void jaroWinklerMatchesReferenceOnEdgeCases() {
+        for (String[] pair : EDGE_CASES) {
+            assertJaroWinkler(pair[0], pair[1]);
+            assertJaroWinkler(pair[1], pair[0]);
+        }
+    }
+
+
+    @Test
+    void jaroWinklerMatchesReferenceOnRandomPairs() {
+        Random random = new Random(17);
+        for (int i = 0; i < 5000; i++) {
+            String s1 = randomLabel(random);
+            String s2 = random.nextBoolean() ? mutate(random, s1) : randomLabel(random);
+            assertJaroWinkler(s1, s2);
+        }
+    }
+
+
+    @Test
+    void distanceMatchesReferenceOnEdgeCases() {
+        for (String[] pair : EDGE_CASES) {
+            for (int threshold = 0; threshold < 4; threshold++) {
+                assertDistance(pair[0], pair[1], threshold);
+            }
+            assertDistance(pair[0], pair[1], Integer.MAX_VALUE);
+        }
+    }
+
+
+    @Test
+    void distanceMatchesReferenceOnRandomPairs() {
+        Random random = new Random(23);
+        for (int i = 0; i < 5000; i++) {
+            String s1 = randomLabel(random);
+            String s2 = random.nextBoolean() ? mutate(random, s1) : randomLabel(random);
+            assertDistance(s1, s2, random.nextInt(6) == 0 ? Integer.MAX_VALUE : random.nextInt(8));
+        }
+    }
+
+
+    @Test
+    void batchDistancesMatchReference() {
+        Random random = new Random(29);
+        for (int round = 0; round < 100; round++) {
+            String query = randomLabel(random);
+            List<String> others = new ArrayList<>();
+            for (int j = 0; j < 16; j++) {
+                others.add(j % 2 == 0 ? mutate(random, query) : randomLabel(random));
+            }
+            char[][] candidates = new char[others.size()][];
+            for (int j = 0; j < candidates.length; j++) {
+                candidates[j] = others.get(j).toCharArray();
+            }
+            int threshold = random.nextInt(6);
+            for (SimilarityKernel kernel : SimilarityKernels.getAll()) {
+                int[] out = new int[candidates.length];
+                kernel.distances(query.toCharArray(), candidates, 0, candidates.length,
+                        threshold, out);
+                for (int j = 0; j < candidates.length; j++) {
+                    assertEquals(levenshtein(query, others.get(j), threshold), out[j],
+                            kernel.getName() + ": '" + query + "' / '" + others.get(j) + "'");
+                }
+            }
+        }
+    }
+
+
+    // the shared utility and every backend must give exactly the reference score
+    private void assertJaroWinkler(String s1, String s2) {
+        double expected = jaroWinkler(s1, s2);
+        String message = "'" + s1 + "' / '" + s2 + "'";
+        assertEquals(expected, JaroWinkler.similarity(s1.toCharArray(), s2.toCharArray()),
+                message);
+        for (SimilarityKernel kernel : SimilarityKernels.getAll()) {
+            assertEquals(expected, kernel.jaroWinkler(s1.toCharArray(), s2.toCharArray()),
+                    kernel.getName() + ": " + message);
+        }
+    }
+
+
+    private void assertDistance(String s1, String s2, int threshold) {
+        int expected = levenshtein(s1, s2, threshold);
+        for (SimilarityKernel kernel : SimilarityKernels.getAll()) {
+            assertEquals(expected, kernel.distance(s1.toCharArray(), s2.toCharArray(), threshold),
+                    kernel.getName() + ": '" + s1 + "' / '" + s2 + "' at " + threshold);
+        }
+    }
+
+
+    // the commons-text 1.6 JaroWinklerDistance, which returns a similarity: matches
+    // are found from the shorter string, transpositions are halved before the Jaro
+    // score, and the prefix is not capped at four characters
+    private double jaroWinkler(String first, String second) {
+        String max = first.length() > second.length() ? first : second;
+        String min = max == first ? second : first;
+        int range = Math.max(max.length() / 2 - 1, 0);
+        int[] matchIndexes = new int[min.length()];
+        Arrays.fill(matchIndexes, -1);
+        boolean[] matchFlags = new boolean[max.length()];
+        int matches = 0;
+        for (int mi = 0; mi < min.length(); mi++) {
+            char c1 = min.charAt(mi);
+            for (int xi = Math.max(mi - range, 0), xn = Math.min(mi + range + 1, max.length());
+                 xi < xn; xi++) {
+                if (!matchFlags[xi] && c1 == max.charAt(xi)) {
+                    matchIndexes[mi] = xi;
+                    matchFlags[xi] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        char[] ms1 = new char[matches];
+        char[] ms2 = new char[matches];
+        for (int i = 0, si = 0; i < min.length(); i++) {
+            if (matchIndexes[i] != -1) ms1[si++] = min.charAt(i);
+        }
+        for (int i = 0, si = 0; i < max.length(); i++) {
+            if (matchFlags[i]) ms2[si++] = max.charAt(i);
+        }
+        int transpositions = 0;
+        for (int mi = 0; mi < ms1.length; mi++) {
+            if (ms1[mi] != ms2[mi]) transpositions++;
+        }
+        int prefix = 0;
+        for (int mi = 0; mi < min.length(); mi++) {
+            if (first.charAt(mi) == second.charAt(mi)) prefix++;
+            else break;
+        }
+
+        double m = matches;
+        if (m == 0) return 0;
+        double j = (m / first.length() + m / second.length() + (m - transpositions / 2) / m) / 3;
+        return j < 0.7 ? j : j + Math.min(0.1, 1D / max.length()) * prefix * (1D - j);
+    }
+
+
+    // the edit distance from the full matrix, or -1 if it is greater than threshold
+    private int levenshtein(String s1, String s2, int threshold) {
+        int[] previous = new int[s2.length() + 1];
+        int[] current = new int[s2.length() + 1];
+        for (int j = 0; j <= s2.length(); j++) previous[j] = j;
+        for (int i = 1; i <= s1.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= s2.length(); j++) {
+                int cost = s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1], previous[j]) + 1,
+                        previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        int distance = previous[s2.length()];
+        return distance > threshold ? -1 : distance;
+    }
+
+
+    // a label of up to 80 characters from a small alphabet, so that random pairs
+    // often share characters out of order
+    private String randomLabel(Random random) {
+        char[] chars = new char[random.nextInt(81)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = "abcde ".charAt(random.nextInt(6));
+        }
+        return new String(chars);
+    }
+
+
+    // a label a few random edits or swaps away from another
+    private String mutate(Random random, String label) {
+        StringBuilder builder = new StringBuilder(label);
+        int edits = random.nextInt(5);
+        for (int e = 0; e < edits && builder.length() > 1; e++) {
+            int position = random.nextInt(builder.length() - 1);
+            switch (random.nextInt(3)) {
+                case 0:                                         // swap neighbours
+                    char c = builder.charAt(position);
+                    builder.setCharAt(position, builder.charAt(position + 1));
+                    builder.setCharAt(position + 1, c);
+                    break;
+                case 1:
+                    builder.deleteCharAt(position);
+                    break;
+                default:
+                    builder.insert(position, 'f');
+            }
+        }
+        return builder.toString();
+    }
+
+}
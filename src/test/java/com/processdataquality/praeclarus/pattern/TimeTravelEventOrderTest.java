@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.LongColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the events reported as out of order within their case, and that a detection
+ * cut short is marked as partial without affecting the next
+ */
+class TimeTravelEventOrderTest {
+
+    @Test
+    void eventsBeforeTheirPredecessorOrStartAreReported() {
+        Table table = log(
+                new String[] { "c1", "c1", "c1", "c2", "c2", "c3", "c3", "c1", "c2" },
+                new String[] { "A", "A", "B", "A", "A", "X", "Y", "C", "A" },
+                new long[] { 1000, 3000, 2000, 5000, 4000, 100, 200, 2500, Long.MIN_VALUE },
+                new String[] { "start", "complete", "complete", "start", "complete",
+                        "complete", "complete", "complete", "complete" });
+        TimeTravelEventOrder plugin = new TimeTravelEventOrder();
+        Table result = plugin.detect(table);
+
+        // row 4 is both earlier than row 3 and completes before row 3 starts it; row 8
+        // has no timestamp, so is not compared
+        assertEquals(Arrays.asList(
+                "2|c1|B|2000|Before predecessor|1",
+                "7|c1|C|2500|Before predecessor|1",
+                "4|c2|A|4000|Before predecessor|3",
+                "4|c2|A|4000|Complete before start|3"), rows(result));
+        DetectionMetrics metrics = plugin.getMetrics();
+        assertEquals(3, metrics.getAffectedEvents());
+        assertEquals(9, metrics.getTotalEvents());
+        assertEquals(2, metrics.getAffectedCases());
+        assertEquals(3, metrics.getTotalCases());
+        assertFalse(plugin.isPartial());
+    }
+
+
+    @Test
+    void casesSplitBetweenThreadsGiveTheSameResults() {
+        Table table = randomLog(5, 20000);
+        List<String> expected = rows(new TimeTravelEventOrder().detect(table));
+        assertTrue(expected.size() > 100, "too few events out of order to compare");
+
+        TimeTravelEventOrder plugin = new TimeTravelEventOrder();
+        plugin.getOptions().add("Parallelism", 4);
+        assertEquals(expected, rows(plugin.detect(table)));
+    }
+
+
+    @Test
+    void cancelledDetectionIsPartial() {
+        Table table = randomLog(7, 2000);
+        TimeTravelEventOrder plugin = new TimeTravelEventOrder();
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        Table result = plugin.detect(table, DetectionListener.NONE, token);
+        assertEquals("Result (partial)", result.name());
+        assertEquals(0, result.rowCount());
+        assertTrue(plugin.isPartial());
+        assertEquals(1, plugin.getStatistics().get("Partial"));
+
+        // the next detection starts afresh
+        assertTrue(plugin.detect(table).rowCount() > 0);
+        assertFalse(plugin.isPartial());
+        assertEquals(0, plugin.getStatistics().get("Partial"));
+    }
+
+
+    private Table log(String[] cases, String[] activities, long[] times, String[] transitions) {
+        return Table.create("Log").addColumns(
+                StringColumn.create("Case ID", cases),
+                StringColumn.create("concept:name", activities),
+                LongColumn.create("time:timestamp", times),
+                StringColumn.create("lifecycle:transition", transitions));
+    }
+
+
+    // events of 200 cases in log order, each a little later than the last, with
+    // some recorded late with an earlier timestamp
+    private Table randomLog(long seed, int rows) {
+        Random random = new Random(seed);
+        String[] cases = new String[rows];
+        String[] activities = new String[rows];
+        long[] times = new long[rows];
+        String[] transitions = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            cases[i] = "case" + random.nextInt(200);
+            activities[i] = "activity" + random.nextInt(5);
+            times[i] = i * 1000L - (random.nextInt(50) == 0 ? 600000 : 0);
+            transitions[i] = random.nextBoolean() ? "start" : "complete";
+        }
+        return log(cases, activities, times, transitions);
+    }
+
+
+    private List<String> rows(Table result) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < result.rowCount(); i++) {
+            rows.add(result.intColumn(0).getInt(i) + "|" + result.stringColumn(1).get(i)
+                    + "|" + result.stringColumn(2).get(i) + "|" + result.stringColumn(3).get(i)
+                    + "|" + result.stringColumn(4).get(i) + "|" + result.intColumn(5).getInt(i));
+        }
+        return rows;
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2021 Queensland University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.processdataquality.praeclarus.pattern;
+
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks the rows reported as holding timestamps in other than the most common format,
+ * and the distribution of formats found
+ */
+class UnanchoredEventFormatTest {
+
+    @Test
+    void rowsOutsideTheCommonFormatAreReported() {
+        Table table = log(new String[] { "c1", "c1", "c2", "c2", "c3", "c3", "c3", "c1" },
+                new String[] { "2021-05-11 10:31:02", "2021-05-11 10:32:00",
+                        "11/05/2021 10:33:00", "2021-05-11 10:34:00", "", "yesterday",
+                        "2021-05-11T10:35:00", "2021-05-11 10:36:00" });
+        UnanchoredEventFormat plugin = new UnanchoredEventFormat();
+        Table result = plugin.detect(table);
+        assertEquals(Arrays.asList(
+                "2|11/05/2021 10:33:00|dd/MM/yyyy HH:mm:ss|99/99/9999 99:99:99",
+                "5|yesterday|Unrecognised|aaaaaaaaa",
+                "6|2021-05-11T10:35:00|yyyy-MM-dd'T'HH:mm:ss|9999-99-99a99:99:99"),
+                rows(result));
+
+        // the row without a timestamp is not counted
+        DetectionMetrics metrics = plugin.getMetrics();
+        assertEquals(3, metrics.getAffectedEvents());
+        assertEquals(7, metrics.getTotalEvents());
+        assertEquals(2, metrics.getAffectedCases());
+        assertEquals(3, metrics.getTotalCases());
+        assertEquals(4, plugin.getStatistics().get("Shapes"));
+        assertEquals(4, plugin.getStatistics().get("Format yyyy-MM-dd HH:mm:ss"));
+
+        Table distribution = plugin.getFormatDistribution();
+        assertEquals(Arrays.asList("yyyy-MM-dd'T'HH:mm:ss|1", "yyyy-MM-dd HH:mm:ss|4",
+                "dd/MM/yyyy HH:mm:ss|1", "Unrecognised|1"), formats(distribution));
+        assertEquals(4.0 / 7, distribution.doubleColumn(2).getDouble(1), 1e-9);
+    }
+
+
+    @Test
+    void laterSamplesRuleOutFormatsForTheWholeShape() {
+        // the first value could be either day or month first; the second can't be
+        UnanchoredEventFormat plugin = new UnanchoredEventFormat();
+        plugin.getOptions().add("Formats", "MM/dd/yyyy | dd/MM/yyyy");
+        Table result = plugin.detect(log(new String[] { "c1", "c1", "c2", "c2" },
+                new String[] { "05/11/2021", "25/11/2021", "12/01/2021", "2021-05-11" }));
+        assertEquals(Arrays.asList("3|2021-05-11|Unrecognised|9999-99-99"), rows(result));
+        assertEquals(Arrays.asList("dd/MM/yyyy|3", "Unrecognised|1"),
+                formats(plugin.getFormatDistribution()));
+    }
+
+
+    @Test
+    void invalidFormatsAreRejected() {
+        UnanchoredEventFormat plugin = new UnanchoredEventFormat();
+        plugin.getOptions().add("Formats", "yyyy-MM-dd | {yyyy}");
+        assertThrows(IllegalArgumentException.class, () -> plugin.detect(
+                log(new String[] { "c1" }, new String[] { "2021-05-11" })));
+    }
+
+
+    private Table log(String[] cases, String[] times) {
+        return Table.create("Log").addColumns(
+                StringColumn.create("Case ID", cases),
+                StringColumn.create("time:timestamp", times));
+    }
+
+
+    private List<String> rows(Table result) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < result.rowCount(); i++) {
+            rows.add(result.intColumn(0).getInt(i) + "|" + result.stringColumn(1).get(i)
+                    + "|" + result.stringColumn(2).get(i) + "|" + result.stringColumn(3).get(i));
+        }
+        return rows;
+    }
+
+
+    private List<String> formats(Table distribution) {
+        List<String> formats = new ArrayList<>();
+        for (int i = 0; i < distribution.rowCount(); i++) {
+            formats.add(distribution.stringColumn(0).get(i) + "|"
+                    + distribution.intColumn(1).getInt(i));
+        }
+        return formats;
+    }
+
+}